@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+/**
+ * Repository shared by the threads of a benchmark, loaded with {@link #SUBJECTS}
+ * people of two statements each in {@link #DATA_GRAPH}.
+ *
+ * Runs against {@link MarkLogicStandInServer} by default, run with
+ * {@code -p server=marklogic} to use the server in gradle.properties instead.
+ */
+@State(Scope.Benchmark)
+public class MarkLogicBenchmarkBackend {
+
+    public static final String DATA_GRAPH = "http://marklogic.com/test/benchmark";
+
+    public static final int SUBJECTS = 10000;
+
+    private static final ValueFactory f = SimpleValueFactory.getInstance();
+
+    public static final IRI NAME = f.createIRI("http://example.org/ontology/name");
+    public static final IRI INDEX = f.createIRI("http://example.org/ontology/index");
+
+    /**
+     * standin or marklogic
+     */
+    @Param({"standin"})
+    public String server;
+
+    /**
+     * latency added to each request by the stand-in
+     */
+    @Param({"0"})
+    public long latencyMillis;
+
+    private MarkLogicStandInServer standIn;
+    private MarkLogicRepository rep;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        if ("marklogic".equals(server)) {
+            Properties props = new Properties();
+            try (FileInputStream in = new FileInputStream("gradle.properties")) {
+                props.load(in);
+            }
+            rep = new MarkLogicRepository(props.getProperty("mlHost"), Integer.parseInt(props.getProperty("mlRestPort")),
+                    new DatabaseClientFactory.DigestAuthContext(props.getProperty("mlUsername"), props.getProperty("mlPassword")));
+        } else {
+            standIn = new MarkLogicStandInServer();
+            standIn.setLatencyMillis(latencyMillis);
+            standIn.start();
+            rep = new MarkLogicRepository(standIn.getHost(), standIn.getPort(),
+                    new DatabaseClientFactory.DigestAuthContext("benchmark", "benchmark"));
+        }
+        rep.initialize();
+        try (MarkLogicRepositoryConnection conn = rep.getConnection()) {
+            conn.clear(dataGraph());
+            conn.add(new ByteArrayInputStream(people(0, SUBJECTS)), "", RDFFormat.NTRIPLES, dataGraph());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        try (MarkLogicRepositoryConnection conn = rep.getConnection()) {
+            conn.clear(dataGraph());
+        }
+        rep.shutDown();
+        if (standIn != null) {
+            standIn.stop();
+        }
+    }
+
+    /**
+     * Opens a connection, each benchmark thread needs its own.
+     *
+     * @return
+     */
+    public MarkLogicRepositoryConnection getConnection() {
+        return rep.getConnection();
+    }
+
+    /**
+     * getter for the graph holding the loaded people
+     *
+     * @return
+     */
+    public static IRI dataGraph() {
+        return f.createIRI(DATA_GRAPH);
+    }
+
+    /**
+     * Returns person i, loaded for i below SUBJECTS.
+     *
+     * @param i
+     * @return
+     */
+    public static IRI person(long i) {
+        return f.createIRI("http://example.org/people/person" + i);
+    }
+
+    /**
+     * Returns N-Triples of the name and index of people from first up to last, exclusive.
+     *
+     * @param first
+     * @param last
+     * @return
+     */
+    public static byte[] people(long first, long last) {
+        StringBuilder sb = new StringBuilder();
+        for (long i = first; i < last; i++) {
+            String person = "<http://example.org/people/person" + i + "> ";
+            sb.append(person).append('<').append(NAME).append("> \"Person ").append(i).append("\" .\n");
+            sb.append(person).append('<').append(INDEX).append("> \"").append(i)
+                    .append("\"^^<http://www.w3.org/2001/XMLSchema#long> .\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import com.marklogic.semantics.rdf4j.client.TripleCacheMXBean;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Flushes a write cache holding cachedStatements, filled before each call with
+ * flushing paused so only the flush itself is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MarkLogicCacheFlushPerfTest {
+
+    private static final AtomicInteger threads = new AtomicInteger();
+
+    @Param({"100", "749"})
+    public int cachedStatements;
+
+    private MarkLogicRepositoryConnection conn;
+    private ValueFactory f;
+    private IRI graph;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp(MarkLogicBenchmarkBackend backend) {
+        conn = backend.getConnection();
+        f = conn.getValueFactory();
+        graph = f.createIRI(MarkLogicBenchmarkBackend.DATA_GRAPH + "/flush/" + threads.incrementAndGet());
+        TripleCacheMXBean cache = conn.getWriteCacheMXBean();
+        cache.setCacheSize(cachedStatements + 1);
+        cache.pause();
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        for (int i = 0; i < cachedStatements; i++) {
+            conn.add(MarkLogicBenchmarkBackend.person(next++), MarkLogicBenchmarkBackend.NAME, f.createLiteral("Person"), graph);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() {
+        conn.sync();
+        conn.clear(graph);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        conn.close();
+    }
+
+    @Benchmark
+    public void flush() {
+        conn.sync();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.semantics.rdf4j.client.ColumnarTupleResult;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryResults;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.ValueComparator;
+import org.eclipse.rdf4j.query.impl.IteratingTupleQueryResult;
+import org.eclipse.rdf4j.query.impl.ListBindingSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.management.ManagementFactory;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a SELECT result materialized as a list of binding sets with the same result
+ * materialized as a {@link ColumnarTupleResult}: building each from a result stream,
+ * scanning every value of every row, row by row and for the columnar result also
+ * column by column, and sorting by two bindings.
+ *
+ * Rows have a subject IRI unique to the row and, in shape
+ * <ul>
+ *     <li>repeated - a class, predicate and label from small sets</li>
+ *     <li>unique - a class, predicate and label unique to the row</li>
+ * </ul>
+ * with new value instances for each row, as parsed results have. The setup of each trial
+ * prints the heap retained per row by both. Rows of 10000000 need a heap of several GB.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MarkLogicColumnarResultPerfTest {
+
+    private static final ValueFactory f = SimpleValueFactory.getInstance();
+
+    private static final List<String> NAMES = Arrays.asList("s", "class", "p", "label");
+
+    /**
+     * repeated or unique
+     */
+    @Param({"repeated", "unique"})
+    public String shape;
+
+    @Param({"100000"})
+    public int rows;
+
+    private List<BindingSet> list;
+    private ColumnarTupleResult columns;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long before = usedHeap();
+        list = QueryResults.asList(stream());
+        long afterList = usedHeap();
+        columns = ColumnarTupleResult.of(stream());
+        long afterColumns = usedHeap();
+        System.out.printf("%s, %d rows: list of binding sets %.1f, columns %.1f bytes retained per row%n",
+                shape, rows, (afterList - before) / (double) rows, (afterColumns - afterList) / (double) rows);
+    }
+
+    @Benchmark
+    public List<BindingSet> materializeList() {
+        return QueryResults.asList(stream());
+    }
+
+    @Benchmark
+    public ColumnarTupleResult materializeColumns() {
+        return ColumnarTupleResult.of(stream());
+    }
+
+    @Benchmark
+    public void scanList(Blackhole bh) {
+        for (BindingSet row : list) {
+            for (String name : NAMES) {
+                bh.consume(row.getValue(name));
+            }
+        }
+    }
+
+    @Benchmark
+    public void scanColumns(Blackhole bh) {
+        try (ColumnarTupleResult result = columns.iterate()) {
+            while (result.hasNext()) {
+                BindingSet row = result.next();
+                for (String name : NAMES) {
+                    bh.consume(row.getValue(name));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void scanColumnsByColumn(Blackhole bh) {
+        for (String name : NAMES) {
+            columns.forEachValue(name, bh::consume);
+        }
+    }
+
+    @Benchmark
+    public List<BindingSet> sortList() {
+        ValueComparator comparator = new ValueComparator();
+        List<BindingSet> sorted = new ArrayList<>(list);
+        sorted.sort(Comparator.<BindingSet, Value>comparing(row -> row.getValue("class"), comparator)
+                .thenComparing(row -> row.getValue("s"), comparator));
+        return sorted;
+    }
+
+    @Benchmark
+    public ColumnarTupleResult sortColumns() {
+        return columns.sort(true, "class", "s");
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns a result of rows rows, creating values as they are read.
+     *
+     * @return
+     */
+    private TupleQueryResult stream() {
+        boolean repeated = "repeated".equals(shape);
+        return new IteratingTupleQueryResult(NAMES, new AbstractList<BindingSet>() {
+            @Override
+            public BindingSet get(int i) {
+                return new ListBindingSet(NAMES,
+                        f.createIRI("http://example.org/people/person" + i),
+                        f.createIRI("http://example.org/ontology/Class" + (repeated ? i % 8 : i)),
+                        f.createIRI("http://example.org/ontology/p" + (repeated ? i % 12 : i)),
+                        f.createLiteral("label " + (repeated ? i % 5 : i), "en"));
+            }
+
+            @Override
+            public int size() {
+                return rows;
+            }
+        });
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Writers, readers, and readers mixed with writers, with all threads sharing one
+ * connection, and so one client and write cache, or each thread using its own.
+ *
+ * Writers add single statements through the write cache, so writers sharing a
+ * connection contend on the cache lock and wait on each other's flushes. Readers
+ * select the statements of one person, syncing the write cache of their connection
+ * first. Mixed groups are three readers to a writer.
+ *
+ * Compare scores across thread counts for scaling curves, {@code gradle contentionBenchmarks}
+ * runs 1 to 64 threads. Groups take threads in multiples of four.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MarkLogicContentionPerfTest {
+
+    private static final AtomicInteger graphs = new AtomicInteger();
+
+    private static final ValueFactory f = SimpleValueFactory.getInstance();
+
+    /**
+     * Connection used by all threads.
+     */
+    @State(Scope.Benchmark)
+    public static class SharedConnection {
+        MarkLogicRepositoryConnection conn;
+        IRI graph;
+        final AtomicLong next = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setUp(MarkLogicBenchmarkBackend backend) {
+            conn = backend.getConnection();
+            graph = f.createIRI(MarkLogicBenchmarkBackend.DATA_GRAPH + "/contention/" + graphs.incrementAndGet());
+        }
+
+        @TearDown(Level.Iteration)
+        public void clear() {
+            conn.sync();
+            conn.clear(graph);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            conn.close();
+        }
+    }
+
+    /**
+     * Connection of a single thread.
+     */
+    @State(Scope.Thread)
+    public static class OwnConnection {
+        MarkLogicRepositoryConnection conn;
+        IRI graph;
+        final AtomicLong next = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setUp(MarkLogicBenchmarkBackend backend) {
+            conn = backend.getConnection();
+            graph = f.createIRI(MarkLogicBenchmarkBackend.DATA_GRAPH + "/contention/" + graphs.incrementAndGet());
+        }
+
+        @TearDown(Level.Iteration)
+        public void clear() {
+            conn.sync();
+            conn.clear(graph);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            conn.close();
+        }
+    }
+
+    @Benchmark
+    public void sharedWriters(SharedConnection shared) {
+        write(shared.conn, shared.graph, shared.next);
+    }
+
+    @Benchmark
+    public void ownWriters(OwnConnection own) {
+        write(own.conn, own.graph, own.next);
+    }
+
+    @Benchmark
+    public void sharedReaders(SharedConnection shared, Blackhole bh) {
+        read(shared.conn, bh);
+    }
+
+    @Benchmark
+    public void ownReaders(OwnConnection own, Blackhole bh) {
+        read(own.conn, bh);
+    }
+
+    @Benchmark
+    @Group("sharedMixed")
+    @GroupThreads(3)
+    public void sharedMixedRead(SharedConnection shared, Blackhole bh) {
+        read(shared.conn, bh);
+    }
+
+    @Benchmark
+    @Group("sharedMixed")
+    @GroupThreads(1)
+    public void sharedMixedWrite(SharedConnection shared) {
+        write(shared.conn, shared.graph, shared.next);
+    }
+
+    @Benchmark
+    @Group("ownMixed")
+    @GroupThreads(3)
+    public void ownMixedRead(OwnConnection own, Blackhole bh) {
+        read(own.conn, bh);
+    }
+
+    @Benchmark
+    @Group("ownMixed")
+    @GroupThreads(1)
+    public void ownMixedWrite(OwnConnection own) {
+        write(own.conn, own.graph, own.next);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static void write(MarkLogicRepositoryConnection conn, IRI graph, AtomicLong next) {
+        long i = next.getAndIncrement();
+        conn.add(MarkLogicBenchmarkBackend.person(i), MarkLogicBenchmarkBackend.INDEX, f.createLiteral(i), graph);
+    }
+
+    private static void read(MarkLogicRepositoryConnection conn, Blackhole bh) {
+        IRI person = MarkLogicBenchmarkBackend.person(ThreadLocalRandom.current().nextInt(MarkLogicBenchmarkBackend.SUBJECTS));
+        try (TupleQueryResult result = conn.prepareTupleQuery("SELECT ?p ?o WHERE { GRAPH <"
+                + MarkLogicBenchmarkBackend.DATA_GRAPH + "> { <" + person + "> ?p ?o } }").evaluate()) {
+            while (result.hasNext()) {
+                bh.consume(result.next());
+            }
+        }
+    }
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.GraphQueryResult;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives a mix of adds, removes, point SELECTs, analytical SELECTs, CONSTRUCTs and
+ * transactions from many threads against a repository loaded with {@link MarkLogicLubmData},
+ * reporting throughput and latency percentiles per operation.
+ *
+ * Arguments are name=value pairs, all optional:
+ * <ul>
+ *     <li>server - standin (default) or marklogic, for the server in gradle.properties</li>
+ *     <li>latencyMillis - added by the stand-in to each request, default 0</li>
+ *     <li>threads - default 4</li>
+ *     <li>repositories - each with its own database client and HTTP connections, threads
+ *     are spread over them, default 1</li>
+ *     <li>scale - universities loaded, default 1</li>
+ *     <li>load - false to use the data already loaded, default true</li>
+ *     <li>warmup and duration - in seconds, default 10 and 60</li>
+ *     <li>mix - weights of add, remove, pointSelect, analyticSelect, construct and
+ *     transaction, default {@link #DEFAULT_MIX}</li>
+ *     <li>results - CSV file to write the results to</li>
+ * </ul>
+ * Each thread sends its next request once the previous one completed, so latencies are
+ * of a closed system. They are recorded in HDR histograms to 3 significant digits, fine
+ * enough to compare p99 and p99.9 between runs.
+ */
+public class MarkLogicLoadGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarkLogicLoadGenerator.class);
+
+    public static final String DATA_GRAPH = "http://marklogic.com/test/lubm";
+
+    public static final String DEFAULT_MIX =
+            "add:10,remove:5,pointSelect:50,analyticSelect:5,construct:20,transaction:10";
+
+    // latencies above are recorded as this
+    private static final long MAX_LATENCY_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    private static final int LATENCY_DIGITS = 3;
+
+    private static final ValueFactory f = SimpleValueFactory.getInstance();
+
+    /**
+     * Operations of the mix.
+     */
+    public enum Operation {
+        add, remove, pointSelect, analyticSelect, construct, transaction
+    }
+
+    private final Properties config;
+    private final int scale;
+    private final IRI graph = f.createIRI(DATA_GRAPH);
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    // students added by threads have numbers from here up
+    private final AtomicLong nextStudent = new AtomicLong(MarkLogicLubmData.GRADUATE_STUDENTS + MarkLogicLubmData.UNDERGRADUATE_STUDENTS);
+
+    private volatile boolean running = true;
+
+    /**
+     * constructor
+     *
+     * @param config name=value arguments
+     */
+    public MarkLogicLoadGenerator(Properties config) {
+        this.config = config;
+        this.scale = Integer.parseInt(config.getProperty("scale", "1"));
+        List<Operation> ops = new ArrayList<>();
+        List<Integer> weights = new ArrayList<>();
+        int total = 0;
+        for (String entry : config.getProperty("mix", DEFAULT_MIX).split(",")) {
+            String[] weight = entry.trim().split(":");
+            int w = Integer.parseInt(weight[1]);
+            if (w > 0) {
+                total += w;
+                ops.add(Operation.valueOf(weight[0]));
+                weights.add(total);
+            }
+        }
+        if (ops.isEmpty()) {
+            throw new IllegalArgumentException("mix has no operation of positive weight");
+        }
+        this.operations = ops.toArray(new Operation[ops.size()]);
+        this.cumulativeWeights = new int[weights.size()];
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            cumulativeWeights[i] = weights.get(i);
+        }
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new ConcurrentHistogram(MAX_LATENCY_NANOS, LATENCY_DIGITS));
+            errors.put(operation, new AtomicLong());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties config = new Properties();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("expected name=value, got " + arg);
+            }
+            config.setProperty(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        new MarkLogicLoadGenerator(config).run();
+    }
+
+    /**
+     * Loads the data if asked to, runs the warmup and measured period and prints the results.
+     *
+     * @throws Exception
+     */
+    public void run() throws Exception {
+        MarkLogicStandInServer standIn = null;
+        List<MarkLogicRepository> repositories = new ArrayList<>();
+        try {
+            if (!"marklogic".equals(config.getProperty("server", "standin"))) {
+                standIn = new MarkLogicStandInServer();
+                standIn.setLatencyMillis(Long.parseLong(config.getProperty("latencyMillis", "0")));
+                standIn.start();
+            }
+            int repositoryCount = Integer.parseInt(config.getProperty("repositories", "1"));
+            for (int i = 0; i < repositoryCount; i++) {
+                MarkLogicRepository rep = newRepository(standIn);
+                rep.initialize();
+                repositories.add(rep);
+            }
+            if (standIn != null || Boolean.parseBoolean(config.getProperty("load", "true"))) {
+                load(repositories.get(0));
+            }
+            measure(repositories);
+            report(System.out);
+            String results = config.getProperty("results");
+            if (results != null) {
+                try (PrintWriter out = new PrintWriter(new FileWriter(results))) {
+                    writeCsv(out);
+                }
+            }
+        } finally {
+            for (MarkLogicRepository rep : repositories) {
+                rep.shutDown();
+            }
+            if (standIn != null) {
+                standIn.stop();
+            }
+        }
+    }
+
+    /**
+     * Returns latencies of operation since the warmup ended, in nanoseconds.
+     *
+     * @param operation
+     * @return
+     */
+    public Histogram getLatencies(Operation operation) {
+        return latencies.get(operation);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private MarkLogicRepository newRepository(MarkLogicStandInServer standIn) throws IOException {
+        if (standIn != null) {
+            return new MarkLogicRepository(DatabaseClientFactory.newClient(standIn.getHost(), standIn.getPort(),
+                    new DatabaseClientFactory.DigestAuthContext("load", "load")));
+        }
+        Properties props = new Properties();
+        try (FileInputStream in = new FileInputStream("gradle.properties")) {
+            props.load(in);
+        }
+        return new MarkLogicRepository(DatabaseClientFactory.newClient(props.getProperty("mlHost"),
+                Integer.parseInt(props.getProperty("mlRestPort")),
+                new DatabaseClientFactory.DigestAuthContext(props.getProperty("mlUsername"), props.getProperty("mlPassword"))));
+    }
+
+    private void load(MarkLogicRepository rep) throws IOException {
+        long start = System.nanoTime();
+        try (MarkLogicRepositoryConnection conn = rep.getConnection()) {
+            conn.clear(graph);
+            for (int u = 0; u < scale; u++) {
+                conn.add(new ByteArrayInputStream(MarkLogicLubmData.universityTriples(u)), "", RDFFormat.NTRIPLES, graph);
+            }
+        }
+        logger.info("loaded {} universities in {} ms", scale, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void measure(List<MarkLogicRepository> repositories) throws InterruptedException {
+        int threads = Integer.parseInt(config.getProperty("threads", "4"));
+        long warmup = Long.parseLong(config.getProperty("warmup", "10"));
+        long duration = Long.parseLong(config.getProperty("duration", "60"));
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            MarkLogicRepository rep = repositories.get(t % repositories.size());
+            Random random = new Random(t);
+            Thread worker = new Thread(() -> {
+                try (MarkLogicRepositoryConnection conn = rep.getConnection()) {
+                    work(conn, random);
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + t);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        logger.info("{} threads over {} repositories, warming up for {} s", threads, repositories.size(), warmup);
+        TimeUnit.SECONDS.sleep(warmup);
+        for (Operation operation : Operation.values()) {
+            latencies.get(operation).reset();
+            errors.get(operation).set(0);
+        }
+        logger.info("measuring for {} s", duration);
+        TimeUnit.SECONDS.sleep(duration);
+        running = false;
+        done.await();
+    }
+
+    private void work(MarkLogicRepositoryConnection conn, Random random) {
+        Deque<List<Statement>> added = new ArrayDeque<>();
+        while (running) {
+            Operation operation = next(random);
+            if (operation == Operation.remove && added.isEmpty()) {
+                operation = Operation.add;
+            }
+            long start = System.nanoTime();
+            try {
+                execute(operation, conn, random, added);
+                record(operation, System.nanoTime() - start);
+            } catch (RuntimeException e) {
+                record(operation, System.nanoTime() - start);
+                errors.get(operation).incrementAndGet();
+                logger.debug("{} failed", operation, e);
+                if (conn.isActive()) {
+                    conn.rollback();
+                }
+            }
+        }
+    }
+
+    private void record(Operation operation, long nanos) {
+        latencies.get(operation).recordValue(Math.min(nanos, MAX_LATENCY_NANOS));
+    }
+
+    private void execute(Operation operation, MarkLogicRepositoryConnection conn, Random random, Deque<List<Statement>> added) {
+        int u = random.nextInt(scale);
+        int d = random.nextInt(MarkLogicLubmData.DEPARTMENTS);
+        switch (operation) {
+            case add:
+                added.add(newStudent(u, d, random));
+                conn.add(added.getLast(), graph);
+                break;
+            case remove:
+                conn.remove(added.removeFirst(), graph);
+                break;
+            case pointSelect:
+                IRI student = MarkLogicLubmData.student(u, d,
+                        random.nextInt(MarkLogicLubmData.GRADUATE_STUDENTS + MarkLogicLubmData.UNDERGRADUATE_STUDENTS));
+                drain(conn.prepareTupleQuery("SELECT ?p ?o WHERE { GRAPH <" + DATA_GRAPH + "> { <" + student + "> ?p ?o } }").evaluate());
+                break;
+            case analyticSelect:
+                drain(conn.prepareTupleQuery("PREFIX ub: <" + MarkLogicLubmData.UB + "> "
+                        + "SELECT ?d (COUNT(DISTINCT ?s) AS ?students) (COUNT(?c) AS ?enrolments) "
+                        + "WHERE { GRAPH <" + DATA_GRAPH + "> { ?s ub:memberOf ?d ; ub:takesCourse ?c . "
+                        + "?d ub:subOrganizationOf <" + MarkLogicLubmData.university(u) + "> } } GROUP BY ?d").evaluate());
+                break;
+            case construct:
+                try (GraphQueryResult result = conn.prepareGraphQuery("PREFIX ub: <" + MarkLogicLubmData.UB + "> "
+                        + "CONSTRUCT { ?p ub:teacherOf ?c . ?s ub:takesCourse ?c } "
+                        + "WHERE { GRAPH <" + DATA_GRAPH + "> { ?p ub:worksFor <" + MarkLogicLubmData.department(u, d) + "> ; "
+                        + "ub:teacherOf ?c . ?s ub:takesCourse ?c } }").evaluate()) {
+                    while (result.hasNext()) {
+                        result.next();
+                    }
+                }
+                break;
+            case transaction:
+                List<Statement> statements = newStudent(u, d, random);
+                conn.begin();
+                conn.add(statements, graph);
+                IRI subject = (IRI) statements.get(0).getSubject();
+                conn.prepareUpdate("PREFIX ub: <" + MarkLogicLubmData.UB + "> WITH <" + DATA_GRAPH + "> "
+                        + "DELETE { <" + subject + "> ub:takesCourse ?c } "
+                        + "INSERT { <" + subject + "> ub:takesCourse <"
+                        + MarkLogicLubmData.course(u, d, random.nextInt(MarkLogicLubmData.COURSES)) + "> } "
+                        + "WHERE { <" + subject + "> ub:takesCourse ?c }").execute();
+                conn.commit();
+                added.add(statements);
+                break;
+            default:
+                throw new IllegalStateException(operation.name());
+        }
+    }
+
+    private List<Statement> newStudent(int u, int d, Random random) {
+        return MarkLogicLubmData.student(u, d, (int) nextStudent.getAndIncrement(), random);
+    }
+
+    private Operation next(Random random) {
+        int r = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; ; i++) {
+            if (r < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+    }
+
+    private static void drain(TupleQueryResult result) {
+        try {
+            while (result.hasNext()) {
+                result.next();
+            }
+        } finally {
+            result.close();
+        }
+    }
+
+    private void report(PrintStream out) {
+        long duration = Long.parseLong(config.getProperty("duration", "60"));
+        out.printf("%-15s %10s %8s %10s %9s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "ops/s", "mean ms", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Operation operation : Operation.values()) {
+            Histogram h = latencies.get(operation);
+            if (h.getTotalCount() == 0) {
+                continue;
+            }
+            out.printf("%-15s %10d %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n", operation, h.getTotalCount(),
+                    errors.get(operation).get(), (double) h.getTotalCount() / duration, h.getMean() / 1e6,
+                    percentileMillis(h, 50), percentileMillis(h, 90), percentileMillis(h, 99),
+                    percentileMillis(h, 99.9), h.getMaxValue() / 1e6);
+        }
+    }
+
+    private void writeCsv(PrintWriter out) {
+        long duration = Long.parseLong(config.getProperty("duration", "60"));
+        out.println("operation,count,errors,opsPerSecond,meanMillis,p50Millis,p90Millis,p99Millis,p999Millis,maxMillis");
+        for (Operation operation : Operation.values()) {
+            Histogram h = latencies.get(operation);
+            out.println(operation + "," + h.getTotalCount() + "," + errors.get(operation).get() + ","
+                    + (double) h.getTotalCount() / duration + "," + h.getMean() / 1e6 + "," + percentileMillis(h, 50) + ","
+                    + percentileMillis(h, 90) + "," + percentileMillis(h, 99) + "," + percentileMillis(h, 99.9) + ","
+                    + h.getMaxValue() / 1e6);
+        }
+    }
+
+    private static double percentileMillis(Histogram h, double percentile) {
+        return h.getValueAtPercentile(percentile) / 1e6;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic university data shaped after the Lehigh University Benchmark (LUBM),
+ * the scale factor being the number of universities.
+ *
+ * Each university has {@link #DEPARTMENTS} departments, each with professors teaching
+ * courses and writing publications, and students taking courses, graduate students
+ * also having an advisor. A university is about 17500 statements. Data is generated
+ * from the university number, so the same scale factor always gives the same data.
+ */
+public class MarkLogicLubmData {
+
+    public static final String UB = "http://swat.cse.lehigh.edu/onto/univ-bench.owl#";
+
+    public static final int DEPARTMENTS = 15;
+    public static final int PROFESSORS = 10;
+    public static final int COURSES = 20;
+    public static final int GRADUATE_STUDENTS = 30;
+    public static final int UNDERGRADUATE_STUDENTS = 100;
+    public static final int PUBLICATIONS = 5;
+
+    private static final ValueFactory f = SimpleValueFactory.getInstance();
+
+    private static final IRI TYPE = f.createIRI("http://www.w3.org/1999/02/22-rdf-syntax-ns#type");
+
+    public static final IRI UNIVERSITY = ub("University");
+    public static final IRI DEPARTMENT = ub("Department");
+    public static final IRI FULL_PROFESSOR = ub("FullProfessor");
+    public static final IRI ASSOCIATE_PROFESSOR = ub("AssociateProfessor");
+    public static final IRI COURSE = ub("Course");
+    public static final IRI GRADUATE_STUDENT = ub("GraduateStudent");
+    public static final IRI UNDERGRADUATE_STUDENT = ub("UndergraduateStudent");
+    public static final IRI PUBLICATION = ub("Publication");
+
+    public static final IRI NAME = ub("name");
+    public static final IRI EMAIL = ub("emailAddress");
+    public static final IRI SUB_ORGANIZATION_OF = ub("subOrganizationOf");
+    public static final IRI WORKS_FOR = ub("worksFor");
+    public static final IRI MEMBER_OF = ub("memberOf");
+    public static final IRI TEACHER_OF = ub("teacherOf");
+    public static final IRI TAKES_COURSE = ub("takesCourse");
+    public static final IRI ADVISOR = ub("advisor");
+    public static final IRI PUBLICATION_AUTHOR = ub("publicationAuthor");
+
+    private MarkLogicLubmData() {
+    }
+
+    /**
+     * Returns N-Triples of university u.
+     *
+     * @param u
+     * @return
+     */
+    public static byte[] universityTriples(int u) {
+        Random random = new Random(u);
+        StringBuilder sb = new StringBuilder();
+        IRI university = university(u);
+        triple(sb, university, TYPE, UNIVERSITY);
+        literal(sb, university, NAME, "University" + u);
+        for (int d = 0; d < DEPARTMENTS; d++) {
+            IRI department = department(u, d);
+            triple(sb, department, TYPE, DEPARTMENT);
+            literal(sb, department, NAME, "Department" + d);
+            triple(sb, department, SUB_ORGANIZATION_OF, university);
+            for (int p = 0; p < PROFESSORS; p++) {
+                IRI professor = professor(u, d, p);
+                triple(sb, professor, TYPE, p % 3 == 0 ? FULL_PROFESSOR : ASSOCIATE_PROFESSOR);
+                literal(sb, professor, NAME, "Professor" + p);
+                literal(sb, professor, EMAIL, "Professor" + p + "@Department" + d + ".University" + u + ".edu");
+                triple(sb, professor, WORKS_FOR, department);
+                triple(sb, professor, TEACHER_OF, course(u, d, 2 * p));
+                triple(sb, professor, TEACHER_OF, course(u, d, 2 * p + 1));
+                for (int i = 0; i < PUBLICATIONS; i++) {
+                    IRI publication = f.createIRI(professor + "/Publication" + i);
+                    triple(sb, publication, TYPE, PUBLICATION);
+                    literal(sb, publication, NAME, "Publication" + i);
+                    triple(sb, publication, PUBLICATION_AUTHOR, professor);
+                }
+            }
+            for (int c = 0; c < COURSES; c++) {
+                IRI course = course(u, d, c);
+                triple(sb, course, TYPE, COURSE);
+                literal(sb, course, NAME, "Course" + c);
+            }
+            for (int s = 0; s < GRADUATE_STUDENTS + UNDERGRADUATE_STUDENTS; s++) {
+                for (Statement st : student(u, d, s, random)) {
+                    statement(sb, st);
+                }
+            }
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the statements of student s of department d of university u, those below
+     * GRADUATE_STUDENTS being graduate students. Students from GRADUATE_STUDENTS +
+     * UNDERGRADUATE_STUDENTS up are not in the generated data and can be added.
+     *
+     * @param u
+     * @param d
+     * @param s
+     * @param random picks courses and advisor
+     * @return
+     */
+    public static List<Statement> student(int u, int d, int s, Random random) {
+        List<Statement> statements = new ArrayList<>();
+        IRI student = student(u, d, s);
+        boolean graduate = s < GRADUATE_STUDENTS;
+        statements.add(f.createStatement(student, TYPE, graduate ? GRADUATE_STUDENT : UNDERGRADUATE_STUDENT));
+        statements.add(f.createStatement(student, NAME, f.createLiteral("Student" + s)));
+        statements.add(f.createStatement(student, EMAIL,
+                f.createLiteral("Student" + s + "@Department" + d + ".University" + u + ".edu")));
+        statements.add(f.createStatement(student, MEMBER_OF, department(u, d)));
+        for (int i = 0; i < (graduate ? 2 : 3); i++) {
+            statements.add(f.createStatement(student, TAKES_COURSE, course(u, d, random.nextInt(COURSES))));
+        }
+        if (graduate) {
+            statements.add(f.createStatement(student, ADVISOR, professor(u, d, random.nextInt(PROFESSORS))));
+        }
+        return statements;
+    }
+
+    public static IRI university(int u) {
+        return f.createIRI("http://www.University" + u + ".edu");
+    }
+
+    public static IRI department(int u, int d) {
+        return f.createIRI("http://www.Department" + d + ".University" + u + ".edu");
+    }
+
+    public static IRI professor(int u, int d, int p) {
+        return f.createIRI(department(u, d) + "/Professor" + p);
+    }
+
+    public static IRI course(int u, int d, int c) {
+        return f.createIRI(department(u, d) + "/Course" + c);
+    }
+
+    public static IRI student(int u, int d, int s) {
+        return f.createIRI(department(u, d) + "/Student" + s);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static IRI ub(String localName) {
+        return f.createIRI(UB + localName);
+    }
+
+    private static void statement(StringBuilder sb, Statement st) {
+        if (st.getObject() instanceof IRI) {
+            triple(sb, (IRI) st.getSubject(), st.getPredicate(), (IRI) st.getObject());
+        } else {
+            literal(sb, (IRI) st.getSubject(), st.getPredicate(), st.getObject().stringValue());
+        }
+    }
+
+    private static void triple(StringBuilder sb, IRI subject, IRI predicate, IRI object) {
+        sb.append('<').append(subject).append("> <").append(predicate).append("> <").append(object).append("> .\n");
+    }
+
+    // generated literals need no escaping
+    private static void literal(StringBuilder sb, IRI subject, IRI predicate, String label) {
+        sb.append('<').append(subject).append("> <").append(predicate).append("> \"").append(label).append("\" .\n");
+    }
+}
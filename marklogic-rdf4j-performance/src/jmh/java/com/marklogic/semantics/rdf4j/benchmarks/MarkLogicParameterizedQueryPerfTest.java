@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.query.QueryResults;
+import org.eclipse.rdf4j.query.TupleQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+/**
+ * Compares repeated parameterized SELECTs sent with values spliced into the query
+ * text against the same query sent with server-side bindings, where the query text
+ * stays constant and the server can reuse its query plan.
+ */
+@State(Scope.Benchmark)
+public class MarkLogicParameterizedQueryPerfTest {
+
+    private static final int SUBJECTS = 1000;
+
+    private static final String QUERY = "SELECT ?p ?o { GRAPH <http://marklogic.com/test/param> { ?s ?p ?o } } ";
+
+    private MarkLogicRepository rep;
+    private MarkLogicRepositoryConnection conn;
+    private IRI[] subjects;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        Properties props = new Properties();
+        try {
+            props.load(new FileInputStream("gradle.properties"));
+        } catch (IOException e) {
+            System.err.println("problem loading properties file.");
+            System.exit(1);
+        }
+        String host = props.getProperty("mlHost");
+        int port = Integer.parseInt(props.getProperty("mlRestPort"));
+        String user = props.getProperty("mlUsername");
+        String pass = props.getProperty("mlPassword");
+
+        rep = new MarkLogicRepository(host, port, new DatabaseClientFactory.DigestAuthContext(user, pass));
+        rep.initialize();
+        conn = rep.getConnection();
+
+        ValueFactory f = conn.getValueFactory();
+        Resource context = f.createIRI("http://marklogic.com/test/param");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        subjects = new IRI[SUBJECTS];
+        conn.begin();
+        for (int i = 0; i < SUBJECTS; i++) {
+            subjects[i] = f.createIRI("http://example.org/people/person" + i);
+            conn.add(subjects[i], name, f.createLiteral("Person" + i), context);
+        }
+        conn.commit();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        conn.clear(conn.getValueFactory().createIRI("http://marklogic.com/test/param"));
+        conn.close();
+        rep.shutDown();
+    }
+
+    @Benchmark
+    public int perfSplicedQuery() throws Exception {
+        IRI subject = nextSubject();
+        TupleQuery tupleQuery = conn.prepareTupleQuery(
+                "SELECT ?p ?o { GRAPH <http://marklogic.com/test/param> { <" + subject.stringValue() + "> ?p ?o } } ");
+        return QueryResults.asList(tupleQuery.evaluate()).size();
+    }
+
+    @Benchmark
+    public int perfBoundQuery() throws Exception {
+        TupleQuery tupleQuery = conn.prepareTupleQuery(QUERY);
+        tupleQuery.setBinding("s", nextSubject());
+        return QueryResults.asList(tupleQuery.evaluate()).size();
+    }
+
+    private IRI nextSubject() {
+        next = (next + 1) % SUBJECTS;
+        return subjects[next];
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the adapter benchmarks once per thread count with the gc profiler, writing
+ * JSON results per thread count, as the baseline to compare changes against.
+ *
+ * Arguments are the result directory, then optionally comma separated thread
+ * counts and a benchmark include pattern.
+ */
+public class MarkLogicPerfSuite {
+
+    public static final String DEFAULT_THREADS = "1,4,16";
+
+    public static final String DEFAULT_INCLUDE =
+            "MarkLogic(Write|CacheFlush|QueryResult|Read)PerfTest";
+
+    public static void main(String[] args) throws Exception {
+        File results = new File(args.length > 0 ? args[0] : "build/reports/jmh");
+        String threads = args.length > 1 ? args[1] : DEFAULT_THREADS;
+        String include = args.length > 2 ? args[2] : DEFAULT_INCLUDE;
+        results.mkdirs();
+        for (String count : threads.split(",")) {
+            int t = Integer.parseInt(count.trim());
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(t)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(results, "suite-" + t + "-threads.json").getPath())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import org.eclipse.rdf4j.query.GraphQueryResult;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads SELECT and CONSTRUCT results of resultSize rows to the end.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MarkLogicQueryResultPerfTest {
+
+    @Param({"1", "100", "10000"})
+    public int resultSize;
+
+    private MarkLogicRepositoryConnection conn;
+    private String select;
+    private String construct;
+
+    @Setup(Level.Trial)
+    public void setUp(MarkLogicBenchmarkBackend backend) {
+        conn = backend.getConnection();
+        String where = " WHERE { GRAPH <" + MarkLogicBenchmarkBackend.DATA_GRAPH + "> { ?s ?p ?o } } LIMIT " + resultSize;
+        select = "SELECT ?s ?p ?o" + where;
+        construct = "CONSTRUCT { ?s ?p ?o }" + where;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        conn.close();
+    }
+
+    @Benchmark
+    public int tupleQuery(Blackhole bh) {
+        int rows = 0;
+        try (TupleQueryResult result = conn.prepareTupleQuery(select).evaluate()) {
+            while (result.hasNext()) {
+                bh.consume(result.next());
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    @Benchmark
+    public int graphQuery(Blackhole bh) {
+        int statements = 0;
+        try (GraphQueryResult result = conn.prepareGraphQuery(construct).evaluate()) {
+            while (result.hasNext()) {
+                bh.consume(result.next());
+                statements++;
+            }
+        }
+        return statements;
+    }
+}
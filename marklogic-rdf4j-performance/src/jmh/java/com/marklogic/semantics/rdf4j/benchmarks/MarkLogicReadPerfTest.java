@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.repository.RepositoryResult;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ASK, getStatements of one subject, size and export of the loaded graph.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MarkLogicReadPerfTest {
+
+    private MarkLogicRepositoryConnection conn;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp(MarkLogicBenchmarkBackend backend) {
+        conn = backend.getConnection();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        conn.close();
+    }
+
+    @Benchmark
+    public boolean ask() {
+        return conn.prepareBooleanQuery("ASK { <" + nextPerson() + "> ?p ?o }").evaluate();
+    }
+
+    @Benchmark
+    public int getStatements(Blackhole bh) {
+        int statements = 0;
+        try (RepositoryResult<Statement> result = conn.getStatements(MarkLogicBenchmarkBackend.person(nextIndex()), null, null, false,
+                MarkLogicBenchmarkBackend.dataGraph())) {
+            while (result.hasNext()) {
+                bh.consume(result.next());
+                statements++;
+            }
+        }
+        return statements;
+    }
+
+    @Benchmark
+    public long size() {
+        return conn.size(MarkLogicBenchmarkBackend.dataGraph());
+    }
+
+    @Benchmark
+    public void export(Blackhole bh) {
+        conn.export(new AbstractRDFHandler() {
+            @Override
+            public void handleStatement(Statement st) {
+                bh.consume(st);
+            }
+        }, MarkLogicBenchmarkBackend.dataGraph());
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private long nextIndex() {
+        next = (next + 1) % MarkLogicBenchmarkBackend.SUBJECTS;
+        return next;
+    }
+
+    private String nextPerson() {
+        return MarkLogicBenchmarkBackend.person(nextIndex()).stringValue();
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
+import com.marklogic.semantics.rdf4j.client.MarkLogicRequestContext;
+import com.marklogic.semantics.rdf4j.utils.InterningValueFactory;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.query.Binding;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.GraphQueryResult;
+import org.eclipse.rdf4j.query.QueryResults;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.query.algebra.evaluation.QueryBindingSet;
+import org.eclipse.rdf4j.query.resultio.QueryResultIO;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultFormat;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultWriter;
+import org.eclipse.rdf4j.repository.RepositoryResult;
+import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFWriter;
+import org.eclipse.rdf4j.rio.Rio;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays SELECT and CONSTRUCT responses, in the SPARQL JSON and N-Triples the client
+ * requests, through the client's result parsing and the statement conversion of
+ * getStatements, with no server. The primary score is responses per second, the
+ * {@code rows} counter rows per second; with {@code -prof gc}, bytes allocated per row
+ * is {@code gc.alloc.rate.norm} divided by rows.
+ *
+ * Responses of rows rows are built before measuring, in shapes
+ * <ul>
+ *     <li>narrow - a single IRI per row</li>
+ *     <li>wide - twelve IRIs, typed and language tagged literals per row</li>
+ *     <li>longLiterals - about 2KB of text needing escapes per row</li>
+ *     <li>blankNodes - blank node subjects and objects</li>
+ *     <li>repeated - a subject IRI per row, then classes, predicates and literals from small sets</li>
+ * </ul>
+ * CONSTRUCT responses are a statement per row. Responses are held in memory, so rows
+ * of 10000000 needs a heap of several GB.
+ *
+ * Run with {@code -p interning=none,result,client} to compare parsing with an
+ * {@link InterningValueFactory} per result or per client. For rows of 1000 or more, the
+ * setup of each trial also prints the value instances and heap retained per row by the
+ * materialized SELECT result.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MarkLogicResultParsingPerfTest {
+
+    private static final ValueFactory f = SimpleValueFactory.getInstance();
+
+    private static final IRI DEFAULT_GRAPH = f.createIRI("http://marklogic.com/semantics#default-graph");
+
+    @Param({"narrow", "wide", "longLiterals", "blankNodes", "repeated"})
+    public String shape;
+
+    @Param({"1", "1000", "100000"})
+    public int rows;
+
+    /**
+     * none, result or client
+     */
+    @Param({"none"})
+    public String interning;
+
+    private MarkLogicRepository repository;
+    private ReplayClient client;
+    private MarkLogicRepositoryConnection conn;
+    private byte[] tupleResponse;
+    private byte[] graphResponse;
+    private byte[] statementsResponse;
+
+    /**
+     * Counts rows read, reported per second next to responses per second.
+     */
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class RowCounter {
+        public long rows;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        tupleResponse = tupleResponse(shape, rows);
+        graphResponse = graphResponse(shape, rows);
+        statementsResponse = statementsResponse(shape, rows);
+
+        // no request is sent, the client only needs somewhere to point
+        DatabaseClient databaseClient = DatabaseClientFactory.newClient("localhost", 8000,
+                new DatabaseClientFactory.DigestAuthContext("replay", "replay"));
+        repository = new MarkLogicRepository(databaseClient);
+        repository.initialize();
+        client = new ReplayClient(databaseClient);
+        client.setResultInterning("none".equals(interning) ? null : InterningValueFactory.Scope.valueOf(interning.toUpperCase()));
+        conn = new MarkLogicRepositoryConnection(repository, client, true);
+        if (rows >= 1000) {
+            printFootprint();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        conn.close();
+        client.stopTimer();
+        repository.shutDown();
+    }
+
+    @Benchmark
+    public void tupleResult(RowCounter counter, Blackhole bh) {
+        try (TupleQueryResult result = client.parseTupleQueryResult(new ByteArrayInputStream(tupleResponse))) {
+            while (result.hasNext()) {
+                bh.consume(result.next());
+                counter.rows++;
+            }
+        }
+    }
+
+    @Benchmark
+    public void graphResult(RowCounter counter, Blackhole bh) {
+        try (GraphQueryResult result = client.parseGraphQueryResult(new ByteArrayInputStream(graphResponse), null)) {
+            while (result.hasNext()) {
+                bh.consume(result.next());
+                counter.rows++;
+            }
+        }
+    }
+
+    @Benchmark
+    public void getStatements(RowCounter counter, Blackhole bh) {
+        client.replay(statementsResponse);
+        try (RepositoryResult<Statement> result = conn.getStatements(null, null, null, true)) {
+            while (result.hasNext()) {
+                bh.consume(result.next());
+                counter.rows++;
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Materializes the SELECT result, printing its distinct value instances and the heap it
+     * holds on to per row.
+     */
+    private void printFootprint() {
+        long before = usedHeap();
+        List<BindingSet> materialized;
+        try (TupleQueryResult result = client.parseTupleQueryResult(new ByteArrayInputStream(tupleResponse))) {
+            materialized = QueryResults.asList(result);
+        }
+        long after = usedHeap();
+        Set<Value> instances = Collections.newSetFromMap(new IdentityHashMap<>());
+        long values = 0;
+        for (BindingSet row : materialized) {
+            for (Binding binding : row) {
+                instances.add(binding.getValue());
+                values++;
+            }
+        }
+        System.out.printf("%s, %d rows, interning %s: %d value instances for %d values, %.1f bytes retained per row%n",
+                shape, materialized.size(), interning, instances.size(), values, (after - before) / (double) materialized.size());
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Answers every SELECT with the response given to replay.
+     */
+    private static class ReplayClient extends MarkLogicClient {
+        private byte[] response;
+
+        ReplayClient(DatabaseClient databaseClient) {
+            super(databaseClient);
+        }
+
+        void replay(byte[] response) {
+            this.response = response;
+        }
+
+        @Override
+        public TupleQueryResult sendTupleQuery(String queryString, SPARQLQueryBindingSet bindings, long start, long pageLength,
+                                               boolean includeInferred, String baseURI, MarkLogicRequestContext context) {
+            return parseTupleQueryResult(new ByteArrayInputStream(response));
+        }
+    }
+
+    private static byte[] tupleResponse(String shape, int rows) throws Exception {
+        List<String> names = new ArrayList<>();
+        int columns = "wide".equals(shape) ? 12 : "narrow".equals(shape) ? 1 : "repeated".equals(shape) ? 5 : 2;
+        for (int c = 0; c < columns; c++) {
+            names.add("v" + c);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TupleQueryResultWriter writer = QueryResultIO.createTupleWriter(TupleQueryResultFormat.JSON, out);
+        writer.startQueryResult(names);
+        for (int i = 0; i < rows; i++) {
+            QueryBindingSet row = new QueryBindingSet();
+            for (int c = 0; c < columns; c++) {
+                row.addBinding(names.get(c), value(shape, i, c));
+            }
+            writer.handleSolution(row);
+        }
+        writer.endQueryResult();
+        return out.toByteArray();
+    }
+
+    private static byte[] statementsResponse(String shape, int rows) throws Exception {
+        List<String> names = Arrays.asList("s", "p", "o", "ctx");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TupleQueryResultWriter writer = QueryResultIO.createTupleWriter(TupleQueryResultFormat.JSON, out);
+        writer.startQueryResult(names);
+        for (int i = 0; i < rows; i++) {
+            Statement st = statement(shape, i);
+            QueryBindingSet row = new QueryBindingSet();
+            row.addBinding("s", st.getSubject());
+            row.addBinding("p", st.getPredicate());
+            row.addBinding("o", st.getObject());
+            row.addBinding("ctx", i % 2 == 0 ? DEFAULT_GRAPH : f.createIRI("http://marklogic.com/test/graph" + (i % 10)));
+            writer.handleSolution(row);
+        }
+        writer.endQueryResult();
+        return out.toByteArray();
+    }
+
+    private static byte[] graphResponse(String shape, int rows) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RDFWriter writer = Rio.createWriter(RDFFormat.NTRIPLES, out);
+        writer.startRDF();
+        for (int i = 0; i < rows; i++) {
+            writer.handleStatement(statement(shape, i));
+        }
+        writer.endRDF();
+        return out.toByteArray();
+    }
+
+    private static Statement statement(String shape, int i) {
+        if ("narrow".equals(shape)) {
+            return f.createStatement(person(i), f.createIRI("http://example.org/ontology/knows"), person(i + 1));
+        }
+        return f.createStatement((Resource) value(shape, i, 0),
+                f.createIRI("http://example.org/ontology/p" + (i % 12)), value(shape, i, 1 + i % 11));
+    }
+
+    private static Value value(String shape, int i, int column) {
+        switch (shape) {
+            case "longLiterals":
+                return column == 0 ? person(i) : f.createLiteral(longText(i));
+            case "blankNodes":
+                return f.createBNode("b" + (i + column));
+            case "repeated":
+                switch (column % 5) {
+                    case 0:
+                        return person(i);
+                    case 1:
+                        return f.createIRI("http://example.org/ontology/Class" + (i % 8));
+                    case 2:
+                        return f.createIRI("http://example.org/ontology/p" + (i % 12));
+                    case 3:
+                        return f.createLiteral("status " + (i % 5), "en");
+                    default:
+                        return f.createLiteral("2017-01-" + (10 + i % 20), XMLSchema.DATE);
+                }
+            case "wide":
+                switch (column % 4) {
+                    case 0:
+                        return person(i + column);
+                    case 1:
+                        return f.createLiteral(i * column);
+                    case 2:
+                        return f.createLiteral("Person " + i, column % 8 == 2 ? "en" : "fr-CA");
+                    default:
+                        return f.createLiteral("2017-01-" + (10 + column), XMLSchema.DATE);
+                }
+            default:
+                return person(i);
+        }
+    }
+
+    private static IRI person(int i) {
+        return f.createIRI("http://example.org/people/person" + i);
+    }
+
+    private static String longText(int i) {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 2048) {
+            sb.append("Entry ").append(i).append(" said \"caf\u00e9 \u00fcber\"\tand\nleft a \\ backslash. ");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,833 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.query.BooleanQuery;
+import org.eclipse.rdf4j.query.GraphQuery;
+import org.eclipse.rdf4j.query.MalformedQueryException;
+import org.eclipse.rdf4j.query.Operation;
+import org.eclipse.rdf4j.query.Query;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.TupleQuery;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.query.Update;
+import org.eclipse.rdf4j.query.impl.SimpleDataset;
+import org.eclipse.rdf4j.query.resultio.BooleanQueryResultFormat;
+import org.eclipse.rdf4j.query.resultio.QueryResultFormat;
+import org.eclipse.rdf4j.query.resultio.QueryResultIO;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultFormat;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultWriter;
+import org.eclipse.rdf4j.query.resultio.TupleQueryResultWriterRegistry;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.RDFWriter;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the MarkLogic REST endpoints the adapter uses, backed by an
+ * in-memory RDF4J store, to benchmark the client side without a MarkLogic server.
+ *
+ * Serves SPARQL queries and updates on /v1/graphs/sparql, the graph store on /v1/graphs
+ * and multi-statement transactions on /v1/transactions. Statements without a graph go to
+ * the MarkLogic default graph and queries see the union of all graphs, as on MarkLogic.
+ * Rulesets, permissions, collections and constraining queries are accepted and ignored,
+ * and any credentials are accepted.
+ *
+ * Latency is added before handling each request, and request and response bodies of
+ * each request can be throttled to a bandwidth. Run {@link #main(String[])} to serve
+ * from another JVM, keeping server work off the benchmarked machine's cores.
+ */
+public class MarkLogicStandInServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarkLogicStandInServer.class);
+
+    public static final String DEFAULT_GRAPH = "http://marklogic.com/semantics#default-graph";
+
+    private static final int CHUNK = 8192;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final Map<String, IRI> xsdTypes = new HashMap<>();
+
+    static {
+        // read once by the JDK server, without it small responses wait for delayed ACKs
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        for (Field field : XMLSchema.class.getFields()) {
+            try {
+                Object value = field.get(null);
+                if (value instanceof IRI) {
+                    IRI type = (IRI) value;
+                    xsdTypes.put(type.getLocalName().toLowerCase(Locale.ROOT), type);
+                }
+            } catch (IllegalAccessException e) {
+                // not a datatype
+            }
+        }
+    }
+
+    private final Repository store;
+    private final boolean ownsStore;
+    private final IRI defaultGraph;
+
+    private final Map<String, RepositoryConnection> transactions = new ConcurrentHashMap<>();
+    private final AtomicLong transactionIds = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    private volatile long latencyMillis;
+    private volatile long bytesPerSecond;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Constructor, serving a new empty in-memory store.
+     */
+    public MarkLogicStandInServer() {
+        this(new SailRepository(new MemoryStore()), true);
+    }
+
+    /**
+     * Constructor, serving store which is left running on stop.
+     *
+     * @param store
+     */
+    public MarkLogicStandInServer(Repository store) {
+        this(store, false);
+    }
+
+    private MarkLogicStandInServer(Repository store, boolean ownsStore) {
+        this.store = store;
+        this.ownsStore = ownsStore;
+        this.defaultGraph = SimpleValueFactory.getInstance().createIRI(DEFAULT_GRAPH);
+    }
+
+    /**
+     * Starts serving on a free loopback port.
+     *
+     * @throws IOException
+     */
+    public void start() throws IOException {
+        start(0);
+    }
+
+    /**
+     * Starts serving on port of the loopback interface, 0 for a free port.
+     *
+     * @param port
+     * @throws IOException
+     */
+    public synchronized void start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("stand-in server already started");
+        }
+        if (!store.isInitialized()) {
+            store.initialize();
+        }
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "marklogic-standin-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/v1/graphs/sparql", exchange -> handle(exchange, this::sparql));
+        server.createContext("/v1/graphs", exchange -> handle(exchange, this::graphs));
+        server.createContext("/v1/transactions", exchange -> handle(exchange, this::transactions));
+        server.createContext("/", exchange -> handle(exchange, e -> {
+            throw new StandInException(404, "REST-UNSUPPORTEDMETHOD", "Endpoint not implemented by the stand-in: " + e.getRequestURI().getPath());
+        }));
+        server.start();
+    }
+
+    /**
+     * Stops serving, rolling back open transactions.
+     */
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        for (String txid : new ArrayList<>(transactions.keySet())) {
+            RepositoryConnection conn = transactions.remove(txid);
+            try {
+                conn.rollback();
+            } finally {
+                conn.close();
+            }
+        }
+        if (ownsStore) {
+            store.shutDown();
+        }
+    }
+
+    /**
+     * getter for host to connect to
+     *
+     * @return
+     */
+    public String getHost() {
+        return InetAddress.getLoopbackAddress().getHostAddress();
+    }
+
+    /**
+     * getter for port, once started
+     *
+     * @return
+     */
+    public synchronized int getPort() {
+        if (server == null) {
+            throw new IllegalStateException("stand-in server not started");
+        }
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * getter for the store served, to load or inspect data directly
+     *
+     * @return
+     */
+    public Repository getStore() {
+        return store;
+    }
+
+    /**
+     * getter for number of requests received
+     *
+     * @return
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * getter for latencyMillis
+     *
+     * @return
+     */
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * setter for milliseconds to wait before handling each request
+     *
+     * @param latencyMillis
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * getter for bytesPerSecond
+     *
+     * @return
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * setter for bandwidth of each request and response body, 0 for unlimited
+     *
+     * @param bytesPerSecond
+     */
+    public void setBytesPerSecond(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * Serves until the JVM is stopped.
+     *
+     * @param args port [latencyMillis [bytesPerSecond]]
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        MarkLogicStandInServer server = new MarkLogicStandInServer();
+        if (args.length > 1) {
+            server.setLatencyMillis(Long.parseLong(args[1]));
+        }
+        if (args.length > 2) {
+            server.setBytesPerSecond(Long.parseLong(args[2]));
+        }
+        server.start(args.length > 0 ? Integer.parseInt(args[0]) : 8200);
+        logger.info("MarkLogic stand-in listening on {}:{}", server.getHost(), server.getPort());
+        Thread.currentThread().join();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void sparql(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        Map<String, List<String>> params = parameters(exchange.getRequestURI().getRawQuery());
+        String contentType = mediaType(exchange.getRequestHeaders().getFirst("Content-Type"));
+        String query = null;
+        String update = null;
+        if ("GET".equals(method)) {
+            query = first(params, "query");
+        } else if ("POST".equals(method)) {
+            String body = readBody(exchange);
+            if ("application/sparql-update".equals(contentType)) {
+                update = body;
+            } else if ("application/x-www-form-urlencoded".equals(contentType)) {
+                params.putAll(parameters(body));
+                query = first(params, "query");
+                update = first(params, "update");
+            } else {
+                query = body;
+            }
+        } else {
+            throw new StandInException(405, "REST-UNSUPPORTEDMETHOD", method + " not supported on /v1/graphs/sparql");
+        }
+        if (query == null && update == null) {
+            throw new StandInException(400, "REST-REQUIREDPARAM", "no query or update");
+        }
+        String sparqlUpdate = update;
+        String sparqlQuery = query;
+        withConnection(first(params, "txid"), conn -> {
+            if (sparqlUpdate != null) {
+                update(exchange, conn, sparqlUpdate, params);
+            } else {
+                query(exchange, conn, sparqlQuery, params);
+            }
+        });
+    }
+
+    private void query(HttpExchange exchange, RepositoryConnection conn, String queryString, Map<String, List<String>> params) throws IOException {
+        Query query = conn.prepareQuery(QueryLanguage.SPARQL, queryString, first(params, "base"));
+        bind(query, params);
+        SimpleDataset dataset = dataset(params, "default-graph-uri", "named-graph-uri");
+        if (dataset != null) {
+            query.setDataset(dataset);
+        }
+        if (query instanceof TupleQuery) {
+            QueryResultFormat format = TupleQueryResultWriterRegistry.getInstance().getFileFormatForMIMEType(accept(exchange))
+                    .orElse(TupleQueryResultFormat.JSON);
+            long start = Math.max(1, Long.parseLong(Optional.ofNullable(first(params, "start")).orElse("1")));
+            long pageLength = Long.parseLong(Optional.ofNullable(first(params, "pageLength")).orElse("-1"));
+            try (TupleQueryResult result = ((TupleQuery) query).evaluate();
+                 OutputStream out = respond(exchange, format.getDefaultMIMEType())) {
+                TupleQueryResultWriter writer = QueryResultIO.createTupleWriter(format, out);
+                writer.startQueryResult(result.getBindingNames());
+                for (long i = 1; result.hasNext() && (pageLength < 0 || i < start + pageLength); i++) {
+                    if (i < start) {
+                        result.next();
+                    } else {
+                        writer.handleSolution(result.next());
+                    }
+                }
+                writer.endQueryResult();
+            }
+        } else if (query instanceof GraphQuery) {
+            RDFFormat format = Rio.getWriterFormatForMIMEType(accept(exchange)).orElse(RDFFormat.NTRIPLES);
+            try (OutputStream out = respond(exchange, format.getDefaultMIMEType())) {
+                ((GraphQuery) query).evaluate(Rio.createWriter(format, out));
+            }
+        } else {
+            boolean value = ((BooleanQuery) query).evaluate();
+            try (OutputStream out = respond(exchange, BooleanQueryResultFormat.JSON.getDefaultMIMEType())) {
+                QueryResultIO.writeBoolean(value, BooleanQueryResultFormat.JSON, out);
+            }
+        }
+    }
+
+    private void update(HttpExchange exchange, RepositoryConnection conn, String updateString, Map<String, List<String>> params) throws IOException {
+        Update update = conn.prepareUpdate(QueryLanguage.SPARQL, updateString, first(params, "base"));
+        bind(update, params);
+        SimpleDataset dataset = dataset(params, "using-graph-uri", "using-named-graph-uri");
+        if (dataset == null) {
+            dataset = new SimpleDataset();
+        }
+        dataset.setDefaultInsertGraph(defaultGraph);
+        dataset.addDefaultRemoveGraph(defaultGraph);
+        update.setDataset(dataset);
+        update.execute();
+        exchange.sendResponseHeaders(204, -1);
+    }
+
+    private void graphs(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        Map<String, List<String>> params = parameters(exchange.getRequestURI().getRawQuery());
+        Resource context = null;
+        if (first(params, "graph") != null) {
+            context = store.getValueFactory().createIRI(first(params, "graph"));
+        } else if (params.containsKey("default")) {
+            context = defaultGraph;
+        }
+        Resource graph = context;
+        withConnection(first(params, "txid"), conn -> {
+            switch (method) {
+                case "GET":
+                    RDFFormat format = Rio.getWriterFormatForMIMEType(accept(exchange))
+                            .orElse(graph == null ? RDFFormat.NQUADS : RDFFormat.NTRIPLES);
+                    try (OutputStream out = respond(exchange, format.getDefaultMIMEType())) {
+                        RDFWriter writer = Rio.createWriter(format, out);
+                        if (graph == null) {
+                            conn.export(writer);
+                        } else {
+                            conn.export(writer, graph);
+                        }
+                    }
+                    return;
+                case "PUT":
+                case "POST":
+                    RDFFormat dataFormat = Rio.getParserFormatForMIMEType(mediaType(exchange.getRequestHeaders().getFirst("Content-Type")))
+                            .orElseThrow(() -> new StandInException(400, "REST-INVALIDMIMETYPE", "unsupported RDF content type"));
+                    inTransaction(conn, () -> {
+                        if ("PUT".equals(method)) {
+                            if (graph == null) {
+                                conn.clear();
+                            } else {
+                                conn.clear(graph);
+                            }
+                        }
+                        merge(conn, throttle(exchange.getRequestBody()), dataFormat, graph);
+                    });
+                    exchange.sendResponseHeaders(204, -1);
+                    return;
+                case "HEAD":
+                    exchange.sendResponseHeaders(200, -1);
+                    return;
+                case "DELETE":
+                    if (graph == null) {
+                        conn.clear();
+                    } else {
+                        conn.clear(graph);
+                    }
+                    exchange.sendResponseHeaders(204, -1);
+                    return;
+                default:
+                    throw new StandInException(405, "REST-UNSUPPORTEDMETHOD", method + " not supported on /v1/graphs");
+            }
+        });
+    }
+
+    private void transactions(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        String txid = path.length() > "/v1/transactions/".length() ? path.substring("/v1/transactions/".length()) : null;
+        Map<String, List<String>> params = parameters(exchange.getRequestURI().getRawQuery());
+        String method = exchange.getRequestMethod();
+        if (txid == null && "POST".equals(method)) {
+            txid = String.valueOf(transactionIds.incrementAndGet());
+            RepositoryConnection conn = store.getConnection();
+            conn.begin();
+            transactions.put(txid, conn);
+            exchange.getResponseHeaders().set("Location", "/v1/transactions/" + txid);
+            exchange.sendResponseHeaders(303, -1);
+        } else if (txid != null && "POST".equals(method)) {
+            String result = first(params, "result");
+            RepositoryConnection conn = transactions.remove(txid);
+            if (conn == null) {
+                throw new StandInException(400, "XDMP-NOTXN", "No transaction with identifier " + txid);
+            }
+            synchronized (conn) {
+                try {
+                    if ("commit".equals(result)) {
+                        conn.commit();
+                    } else {
+                        conn.rollback();
+                    }
+                } finally {
+                    conn.close();
+                }
+            }
+            exchange.sendResponseHeaders(204, -1);
+        } else if (txid != null && "GET".equals(method)) {
+            if (!transactions.containsKey(txid)) {
+                throw new StandInException(400, "XDMP-NOTXN", "No transaction with identifier " + txid);
+            }
+            ObjectNode status = mapper.createObjectNode();
+            status.putObject("transaction-status").put("transaction-id", txid);
+            try (OutputStream out = respond(exchange, "application/json")) {
+                mapper.writeValue(out, status);
+            }
+        } else {
+            throw new StandInException(405, "REST-UNSUPPORTEDMETHOD", method + " not supported on " + path);
+        }
+    }
+
+    /**
+     * Adds statements parsed from in, to graph if given, else to their own graph or the default graph.
+     */
+    private void merge(RepositoryConnection conn, InputStream in, RDFFormat format, Resource graph) throws IOException {
+        RDFParser parser = Rio.createParser(format, conn.getValueFactory());
+        parser.setRDFHandler(new AbstractRDFHandler() {
+            @Override
+            public void handleStatement(Statement st) {
+                Resource target = graph != null ? graph : st.getContext() != null ? st.getContext() : defaultGraph;
+                conn.add(st.getSubject(), st.getPredicate(), st.getObject(), target);
+            }
+        });
+        parser.parse(in, "");
+    }
+
+    private void bind(Operation operation, Map<String, List<String>> params) {
+        ValueFactory vf = store.getValueFactory();
+        for (Map.Entry<String, List<String>> param : params.entrySet()) {
+            if (!param.getKey().startsWith("bind:")) {
+                continue;
+            }
+            String name = param.getKey().substring("bind:".length());
+            String label = param.getValue().get(0);
+            Value value;
+            int at = name.indexOf('@');
+            int colon = name.indexOf(':');
+            if (at > 0) {
+                value = vf.createLiteral(label, name.substring(at + 1));
+                name = name.substring(0, at);
+            } else if (colon > 0) {
+                String type = name.substring(colon + 1);
+                IRI datatype = xsdTypes.get(type.toLowerCase(Locale.ROOT));
+                value = vf.createLiteral(label, datatype != null ? datatype : vf.createIRI(type));
+                name = name.substring(0, colon);
+            } else {
+                value = vf.createIRI(label);
+            }
+            operation.setBinding(name, value);
+        }
+    }
+
+    private SimpleDataset dataset(Map<String, List<String>> params, String defaultParam, String namedParam) {
+        if (!params.containsKey(defaultParam) && !params.containsKey(namedParam)) {
+            return null;
+        }
+        ValueFactory vf = store.getValueFactory();
+        SimpleDataset dataset = new SimpleDataset();
+        for (String graph : params.getOrDefault(defaultParam, new ArrayList<>())) {
+            dataset.addDefaultGraph(vf.createIRI(graph));
+        }
+        for (String graph : params.getOrDefault(namedParam, new ArrayList<>())) {
+            dataset.addNamedGraph(vf.createIRI(graph));
+        }
+        return dataset;
+    }
+
+    /**
+     * Runs request on the connection of transaction txid, or on a new autocommit connection.
+     */
+    private void withConnection(String txid, ConnectionHandler handler) throws IOException {
+        if (txid == null) {
+            try (RepositoryConnection conn = store.getConnection()) {
+                handler.handle(conn);
+            }
+            return;
+        }
+        RepositoryConnection conn = transactions.get(txid);
+        if (conn == null) {
+            throw new StandInException(400, "XDMP-NOTXN", "No transaction with identifier " + txid);
+        }
+        synchronized (conn) {
+            handler.handle(conn);
+        }
+    }
+
+    /**
+     * Runs writes as one store transaction unless conn already has one open.
+     */
+    private static void inTransaction(RepositoryConnection conn, Writes writes) throws IOException {
+        if (conn.isActive()) {
+            writes.run();
+            return;
+        }
+        conn.begin();
+        boolean committed = false;
+        try {
+            writes.run();
+            conn.commit();
+            committed = true;
+        } finally {
+            if (!committed) {
+                conn.rollback();
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange, ExchangeHandler handler) throws IOException {
+        requests.incrementAndGet();
+        try {
+            long latency = latencyMillis;
+            if (latency > 0) {
+                TimeUnit.MILLISECONDS.sleep(latency);
+            }
+            handler.handle(exchange);
+        } catch (StandInException e) {
+            fail(exchange, e.status, e.messageCode, e.getMessage());
+        } catch (MalformedQueryException | RDFParseException e) {
+            fail(exchange, 400, "XDMP-UNEXPECTED", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(exchange, 500, "XDMP-CANCELED", "stand-in server stopping");
+        } catch (Exception e) {
+            logger.debug("stand-in request {} failed", exchange.getRequestURI(), e);
+            fail(exchange, 500, "XDMP-INTERNAL", String.valueOf(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Sends MarkLogic's JSON error response, unless a response already started.
+     */
+    private static void fail(HttpExchange exchange, int status, String messageCode, String message) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            return;
+        }
+        ObjectNode error = mapper.createObjectNode();
+        error.putObject("errorResponse")
+                .put("statusCode", status)
+                .put("status", reason(status))
+                .put("messageCode", messageCode)
+                .put("message", message);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] body = mapper.writeValueAsBytes(error);
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static String reason(int status) {
+        switch (status) {
+            case 400:
+                return "Bad Request";
+            case 404:
+                return "Not Found";
+            case 405:
+                return "Method Not Allowed";
+            default:
+                return "Internal Server Error";
+        }
+    }
+
+    /**
+     * Starts a chunked 200 response, returning its throttled body.
+     */
+    private OutputStream respond(HttpExchange exchange, String contentType) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        long bandwidth = bytesPerSecond;
+        if (bandwidth > 0) {
+            out = new ThrottledOutputStream(out, new Throttle(bandwidth));
+        }
+        return new BufferedOutputStream(out, CHUNK);
+    }
+
+    private InputStream throttle(InputStream in) {
+        long bandwidth = bytesPerSecond;
+        return bandwidth > 0 ? new ThrottledInputStream(in, new Throttle(bandwidth)) : in;
+    }
+
+    private String readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[CHUNK];
+        try (InputStream in = throttle(exchange.getRequestBody())) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                body.write(buffer, 0, n);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String accept(HttpExchange exchange) {
+        return mediaType(exchange.getRequestHeaders().getFirst("Accept"));
+    }
+
+    private static String mediaType(String header) {
+        if (header == null) {
+            return "";
+        }
+        String first = header.split(",")[0];
+        int semicolon = first.indexOf(';');
+        return (semicolon < 0 ? first : first.substring(0, semicolon)).trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Map<String, List<String>> parameters(String rawQuery) throws IOException {
+        Map<String, List<String>> params = new LinkedHashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), "UTF-8");
+            String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), "UTF-8");
+            params.computeIfAbsent(name, k -> new ArrayList<>()).add(value);
+        }
+        return params;
+    }
+
+    private static String first(Map<String, List<String>> params, String name) {
+        List<String> values = params.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private interface ExchangeHandler {
+        void handle(HttpExchange exchange) throws Exception;
+    }
+
+    private interface ConnectionHandler {
+        void handle(RepositoryConnection conn) throws IOException;
+    }
+
+    private interface Writes {
+        void run() throws IOException;
+    }
+
+    private static class StandInException extends RuntimeException {
+        private static final long serialVersionUID = -4215906537612840961L;
+
+        private final int status;
+        private final String messageCode;
+
+        StandInException(int status, String messageCode, String message) {
+            super(message);
+            this.status = status;
+            this.messageCode = messageCode;
+        }
+    }
+
+    /**
+     * Paces bytes of one body to a bandwidth.
+     */
+    private static class Throttle {
+        private final double nanosPerByte;
+        private final long started = System.nanoTime();
+        private long bytes;
+
+        Throttle(long bytesPerSecond) {
+            this.nanosPerByte = 1e9 / bytesPerSecond;
+        }
+
+        void acquire(int n) throws IOException {
+            bytes += n;
+            long wait = started + (long) (bytes * nanosPerByte) - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+        }
+    }
+
+    private static class ThrottledOutputStream extends FilterOutputStream {
+        private final Throttle throttle;
+
+        ThrottledOutputStream(OutputStream out, Throttle throttle) {
+            super(out);
+            this.throttle = throttle;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            throttle.acquire(1);
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, CHUNK);
+                throttle.acquire(n);
+                out.write(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+    }
+
+    private static class ThrottledInputStream extends FilterInputStream {
+        private final Throttle throttle;
+
+        ThrottledInputStream(InputStream in, Throttle throttle) {
+            super(in);
+            this.throttle = throttle;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                throttle.acquire(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, Math.min(len, CHUNK));
+            if (n > 0) {
+                throttle.acquire(n);
+            }
+            return n;
+        }
+    }
+}
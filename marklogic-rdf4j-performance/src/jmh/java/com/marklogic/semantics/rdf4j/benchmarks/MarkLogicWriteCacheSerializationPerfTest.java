@@ -0,0 +1,190 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.semantics.rdf4j.client.TripleDeleteCache;
+import com.marklogic.semantics.rdf4j.client.TripleWriteCache;
+import com.marklogic.semantics.rdf4j.utils.Util;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns a cache full of statements into the update a flush sends, with the update
+ * discarded instead of sent, so no server is needed. Scores are per statement, run
+ * with {@code -prof gc} for bytes allocated per statement ({@code gc.alloc.rate.norm}).
+ *
+ * Each flush adds the statements, skolemized as the client does, to an empty cache
+ * and flushes it, so cache bookkeeping is included as it is on the write path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MarkLogicWriteCacheSerializationPerfTest {
+
+    /**
+     * statements per flush, the default cache size
+     */
+    public static final int STATEMENTS = 750;
+
+    private static final ValueFactory f = SimpleValueFactory.getInstance();
+
+    /**
+     * iris, longLiterals, languageTags, blankNodes, manyContexts or mixed
+     */
+    @Param({"iris", "longLiterals", "languageTags", "blankNodes", "manyContexts", "mixed"})
+    public String mix;
+
+    private Statement[] statements;
+    private NullSinkWriteCache writeCache;
+    private NullSinkDeleteCache deleteCache;
+    private final Util util = Util.getInstance();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        statements = new Statement[STATEMENTS];
+        String[] mixes = {"iris", "longLiterals", "languageTags", "blankNodes", "manyContexts"};
+        for (int i = 0; i < STATEMENTS; i++) {
+            statements[i] = statement("mixed".equals(mix) ? mixes[i % mixes.length] : mix, i);
+        }
+        writeCache = new NullSinkWriteCache();
+        deleteCache = new NullSinkDeleteCache();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STATEMENTS)
+    public int writeCacheFlush() throws Exception {
+        return writeCache.flush(statements, util);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STATEMENTS)
+    public int deleteCacheFlush() throws Exception {
+        return deleteCache.flush(statements, util);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STATEMENTS)
+    public void skolemize(Blackhole bh) {
+        for (Statement st : statements) {
+            bh.consume(util.skolemize(st.getSubject()));
+            bh.consume(util.skolemize(st.getPredicate()));
+            bh.consume(util.skolemize(st.getObject()));
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static Statement statement(String kind, int i) {
+        IRI person = f.createIRI("http://example.org/people/person" + i);
+        IRI graph = f.createIRI("http://marklogic.com/test/serialization");
+        switch (kind) {
+            case "longLiterals":
+                return f.createStatement(person, f.createIRI("http://example.org/ontology/description"),
+                        f.createLiteral(longText(i)), graph);
+            case "languageTags":
+                return f.createStatement(person, f.createIRI("http://example.org/ontology/name"),
+                        f.createLiteral("Person " + i, i % 2 == 0 ? "en" : "fr-CA"), graph);
+            case "blankNodes":
+                return f.createStatement(f.createBNode("b" + i), f.createIRI("http://example.org/ontology/knows"),
+                        f.createBNode("b" + (i + 1)), graph);
+            case "manyContexts":
+                return f.createStatement(person, f.createIRI("http://example.org/ontology/index"),
+                        f.createLiteral(i), f.createIRI("http://marklogic.com/test/serialization/" + (i % 100)));
+            default:
+                return f.createStatement(person, f.createIRI("http://example.org/ontology/knows"),
+                        f.createIRI("http://example.org/people/person" + (i + 1)), graph);
+        }
+    }
+
+    /**
+     * Returns about 2KB of text with quotes, line breaks, tabs and non-ASCII characters to escape.
+     */
+    private static String longText(int i) {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 2048) {
+            sb.append("Entry ").append(i).append(" said \"caf\u00e9 \u00fcber\"\tand\nleft a \\ backslash. ");
+        }
+        return sb.toString();
+    }
+
+    private static class NullSinkWriteCache extends TripleWriteCache {
+        private int sent;
+
+        NullSinkWriteCache() {
+            super(null);
+        }
+
+        int flush(Statement[] statements, Util util) throws Exception {
+            for (Statement st : statements) {
+                cache.add((Resource) util.skolemize(st.getSubject()), (IRI) util.skolemize(st.getPredicate()),
+                        util.skolemize(st.getObject()), st.getContext());
+            }
+            flush();
+            return sent;
+        }
+
+        @Override
+        protected void send(String update) {
+            sent = update.length();
+        }
+    }
+
+    private static class NullSinkDeleteCache extends TripleDeleteCache {
+        private int sent;
+
+        NullSinkDeleteCache() {
+            super(null);
+        }
+
+        int flush(Statement[] statements, Util util) throws Exception {
+            for (Statement st : statements) {
+                Value object = util.skolemize(st.getObject());
+                cache.add((Resource) util.skolemize(st.getSubject()), (IRI) util.skolemize(st.getPredicate()),
+                        object, st.getContext());
+            }
+            flush();
+            return sent;
+        }
+
+        @Override
+        protected void send(String update) {
+            sent = update.length();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adds statements one at a time through the write cache, as a batch through the
+ * write cache, and as a serialized batch sent in one request. Each thread writes
+ * to its own graph, cleared after each iteration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MarkLogicWritePerfTest {
+
+    private static final AtomicInteger threads = new AtomicInteger();
+
+    @Param({"1000"})
+    public int batchSize;
+
+    private MarkLogicRepositoryConnection conn;
+    private ValueFactory f;
+    private IRI graph;
+    private byte[] serializedBatch;
+    private long next;
+
+    @Setup(Level.Trial)
+    public void setUp(MarkLogicBenchmarkBackend backend) {
+        conn = backend.getConnection();
+        f = conn.getValueFactory();
+        graph = f.createIRI(MarkLogicBenchmarkBackend.DATA_GRAPH + "/write/" + threads.incrementAndGet());
+        serializedBatch = MarkLogicBenchmarkBackend.people(0, batchSize / 2);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() {
+        conn.sync();
+        conn.clear(graph);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        conn.close();
+    }
+
+    /**
+     * One statement into the write cache, flushed in the background.
+     */
+    @Benchmark
+    public void singleAdd() {
+        conn.add(MarkLogicBenchmarkBackend.person(next++), MarkLogicBenchmarkBackend.NAME, f.createLiteral("Person"), graph);
+    }
+
+    /**
+     * batchSize statements through the write cache, then waits for them to be flushed.
+     */
+    @Benchmark
+    public void batchedAdd() {
+        Model batch = new LinkedHashModel();
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(MarkLogicBenchmarkBackend.person(next++), MarkLogicBenchmarkBackend.NAME, f.createLiteral("Person"));
+        }
+        conn.add(batch, graph);
+        conn.sync();
+    }
+
+    /**
+     * batchSize statements of N-Triples in one request.
+     */
+    @Benchmark
+    public void bulkAdd() throws Exception {
+        conn.add(new ByteArrayInputStream(serializedBatch), "", RDFFormat.NTRIPLES, graph);
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.benchmarks;
+
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.client.io.StringHandle;
+import com.marklogic.client.semantics.GraphManager;
+import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.QueryResults;
+import org.eclipse.rdf4j.query.TupleQuery;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * tests the stand-in server through a MarkLogicRepository, as the benchmarks use it
+ */
+public class MarkLogicStandInServerTest {
+
+    private MarkLogicStandInServer server;
+    private MarkLogicRepository rep;
+    private MarkLogicRepositoryConnection conn;
+    private ValueFactory f;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MarkLogicStandInServer();
+        server.start();
+        rep = new MarkLogicRepository(server.getHost(), server.getPort(), new DatabaseClientFactory.DigestAuthContext("admin", "admin"));
+        rep.initialize();
+        f = rep.getValueFactory();
+        conn = rep.getConnection();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+        rep.shutDown();
+        server.stop();
+    }
+
+    @Test
+    public void testAsk() throws Exception {
+        IRI subject = f.createIRI("http://example.org/ask");
+        Assert.assertFalse(conn.prepareBooleanQuery("ASK { <http://example.org/ask> ?p ?o }").evaluate());
+        conn.add(subject, f.createIRI("http://example.org/p"), f.createLiteral("o"));
+        Assert.assertTrue(conn.prepareBooleanQuery("ASK { <http://example.org/ask> ?p ?o }").evaluate());
+    }
+
+    @Test
+    public void testSelect() throws Exception {
+        IRI predicate = f.createIRI("http://example.org/p");
+        IRI graph = f.createIRI("http://example.org/select");
+        for (int i = 0; i < 3; i++) {
+            conn.add(f.createIRI("http://example.org/s" + i), predicate, f.createLiteral(i), graph);
+        }
+        TupleQuery query = conn.prepareTupleQuery(QueryLanguage.SPARQL, "SELECT ?s ?o WHERE { GRAPH <http://example.org/select> { ?s ?p ?o } } ORDER BY ?o");
+        List<BindingSet> rows = QueryResults.asList(query.evaluate());
+        Assert.assertEquals(3, rows.size());
+        Assert.assertEquals("http://example.org/s0", rows.get(0).getValue("s").stringValue());
+        Assert.assertEquals(2, ((Literal) rows.get(2).getValue("o")).intValue());
+    }
+
+    @Test
+    public void testGraphPut() throws Exception {
+        GraphManager graphManager = rep.getDatabaseClient().newGraphManager();
+        graphManager.setDefaultMimetype(RDFFormat.NTRIPLES.getDefaultMIMEType());
+        graphManager.write("http://example.org/put", new StringHandle(
+                "<http://example.org/a> <http://example.org/p> \"1\" .\n<http://example.org/b> <http://example.org/p> \"2\" .\n"));
+        Assert.assertEquals(2, conn.size(f.createIRI("http://example.org/put")));
+
+        // a put replaces the graph
+        graphManager.write("http://example.org/put", new StringHandle(
+                "<http://example.org/c> <http://example.org/p> \"3\" .\n"));
+        Assert.assertEquals(1, conn.size(f.createIRI("http://example.org/put")));
+        Assert.assertTrue(conn.prepareBooleanQuery("ASK { GRAPH <http://example.org/put> { <http://example.org/c> ?p \"3\" } }").evaluate());
+    }
+
+    @Test
+    public void testTransaction() throws Exception {
+        IRI subject = f.createIRI("http://example.org/tx");
+        IRI predicate = f.createIRI("http://example.org/p");
+
+        conn.begin();
+        conn.add(subject, predicate, f.createLiteral("rolled back"));
+        conn.rollback();
+        Assert.assertFalse(conn.hasStatement(subject, predicate, null, false));
+
+        conn.begin();
+        conn.add(subject, predicate, f.createLiteral("committed"));
+        Assert.assertTrue(conn.hasStatement(subject, predicate, null, false));
+        conn.commit();
+        Assert.assertTrue(conn.hasStatement(subject, predicate, f.createLiteral("committed"), false));
+        Assert.assertFalse(conn.hasStatement(subject, predicate, f.createLiteral("rolled back"), false));
+    }
+}
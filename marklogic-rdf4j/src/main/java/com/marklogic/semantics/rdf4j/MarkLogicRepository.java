@@ -22,9 +22,19 @@ package com.marklogic.semantics.rdf4j;
 
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.semantics.rdf4j.client.ClusterHost;
+import com.marklogic.semantics.rdf4j.client.DatabaseClientRegistry;
+import com.marklogic.semantics.rdf4j.client.HedgingPolicy;
+import com.marklogic.semantics.rdf4j.client.HostSelectionPolicy;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClientDependent;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
-import com.marklogic.semantics.rdf4j.utils.Util;
+import com.marklogic.semantics.rdf4j.client.MarkLogicCluster;
+import com.marklogic.semantics.rdf4j.client.RequestTraceListener;
+import com.marklogic.semantics.rdf4j.client.SlowOperationLog;
+import com.marklogic.semantics.rdf4j.metrics.JmxMetrics;
+import com.marklogic.semantics.rdf4j.metrics.MarkLogicMetrics;
+import com.marklogic.semantics.rdf4j.query.QueryTemplateCache;
+import com.marklogic.semantics.rdf4j.utils.InterningValueFactory;
 import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.repository.Repository;
@@ -35,6 +45,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  *
@@ -50,6 +63,8 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
 
     // MarkLogicClient vars
     private MarkLogicClient client;
+    // true once client is handed to a connection, which then stops its timer
+    private boolean clientInUse;
     private String host;
     private int port;
     private String user;
@@ -58,14 +73,38 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
     private String database;
     private DatabaseClientFactory.SecurityContext securityContext;
 
+    // set when connecting to several hosts of a cluster
+    private List<String> hosts;
+    private HostSelectionPolicy hostSelectionPolicy;
+    private MarkLogicCluster cluster;
+    private HedgingPolicy hedgingPolicy;
+    private Executor asyncExecutor;
+
+    // registered as an MBean while initialized, unless replaced by setMetrics
+    private MarkLogicMetrics metrics = new JmxMetrics();
+
+    private SlowOperationLog slowOperationLog;
+
+    private boolean deskolemizeResults;
+
+    private InterningValueFactory.Scope resultInterning;
+
     private boolean quadMode;
 
+    private volatile int defaultMaxExecutionTime;
+
+    private volatile RequestTraceListener defaultTraceListener;
+
     private ValueFactory f;
 
     private DatabaseClient databaseClient;
 
-    private Util util = Util.getInstance();
+    // true if databaseClient is held from the registry rather than supplied by the caller
+    private boolean sharedClient;
+
+    private DatabaseClientRegistry registry = DatabaseClientRegistry.getInstance();
 
+    private final QueryTemplateCache queryTemplateCache = new QueryTemplateCache();
 
     /**
      * Constructor initialized with connection URL
@@ -83,7 +122,8 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
         this.user = cred[0];
         this.password = cred[1];
         this.auth = "DIGEST";
-        this.client = getMarkLogicClient();
+        acquireDatabaseClient();
+        this.client = newMarkLogicClient();
     }
 
     /**
@@ -125,8 +165,8 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
         this.password = password;
         this.auth = auth;
         this.database = database;
-        this.databaseClient = util.getClientBasedOnAuth(this.host, this.port, this.user, this.password, this.database, this.auth);
-        this.client = new MarkLogicClient(databaseClient);
+        acquireDatabaseClient();
+        this.client = newMarkLogicClient();
     }
 
     /**
@@ -158,8 +198,49 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
         this.port = port;
         this.database = database;
         this.securityContext = securityContext;
-        this.databaseClient = util.getClientBasedOnAuth(this.host, this.port, this.database, this.securityContext);
-        this.client = new MarkLogicClient(databaseClient);
+        acquireDatabaseClient();
+        this.client = newMarkLogicClient();
+    }
+
+    /**
+     *
+     * Constructor initialized with the hosts of a cluster, sending requests to each in turn.
+     *
+     * @param hosts the hosts with the REST server
+     * @param port the port for the REST server, same on all hosts
+     * @param database the MarkLogic database to be used.
+     * @param securityContext a Java Client API SecurityContext. Can be made with com.marklogic.client.DatabaseClientFactory
+     */
+    public MarkLogicRepository(List<String> hosts, int port, String database, DatabaseClientFactory.SecurityContext securityContext) {
+        this(hosts, port, database, securityContext, HostSelectionPolicy.roundRobin());
+    }
+
+    /**
+     *
+     * Constructor initialized with the hosts of a cluster. Requests go to the host chosen
+     * by hostSelectionPolicy and fail over to other hosts if a host cannot be reached.
+     *
+     * @param hosts the hosts with the REST server
+     * @param port the port for the REST server, same on all hosts
+     * @param database the MarkLogic database to be used.
+     * @param securityContext a Java Client API SecurityContext. Can be made with com.marklogic.client.DatabaseClientFactory
+     * @param hostSelectionPolicy the policy balancing requests over hosts
+     */
+    public MarkLogicRepository(List<String> hosts, int port, String database, DatabaseClientFactory.SecurityContext securityContext, HostSelectionPolicy hostSelectionPolicy) {
+        super();
+        if (hosts == null || hosts.isEmpty()) {
+            throw new IllegalArgumentException("At least one host is required.");
+        }
+        this.f = SimpleValueFactory.getInstance();
+        this.quadMode = true;
+        this.hosts = new ArrayList<>(hosts);
+        this.hostSelectionPolicy = hostSelectionPolicy;
+        this.host = hosts.get(0);
+        this.port = port;
+        this.database = database;
+        this.securityContext = securityContext;
+        acquireDatabaseClient();
+        this.client = newMarkLogicClient();
     }
 
     /**
@@ -209,16 +290,12 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
     {
         if(this.databaseClient == null || this.client == null || this.databaseClient.getClientImplementation() == null)
         {
-            if(this.securityContext == null)
-            {
-                this.databaseClient = util.getClientBasedOnAuth(this.host, this.port, this.user, this.password, this.database, this.auth);
-                this.client = new MarkLogicClient(databaseClient);
-            }
-            else
-            {
-                this.databaseClient = util.getClientBasedOnAuth(this.host, this.port, this.database, this.securityContext);
-                this.client = new MarkLogicClient(databaseClient);
-            }
+            acquireDatabaseClient();
+            replaceUnusedClient();
+            this.client = newMarkLogicClient();
+        }
+        if (metrics instanceof JmxMetrics) {
+            ((JmxMetrics) metrics).register(metricsName());
         }
     }
 
@@ -231,7 +308,26 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
     @Override
     @Deprecated
     protected void shutDownInternal() throws RepositoryException {
-        client.release();
+        client.stopTimer();
+        if (metrics instanceof JmxMetrics) {
+            ((JmxMetrics) metrics).unregister();
+        }
+        if (cluster != null) {
+            cluster.stopHealthChecks();
+            for (ClusterHost clusterHost : cluster.getHosts()) {
+                registry.release(clusterHost.getDatabaseClient());
+            }
+            this.cluster = null;
+            this.databaseClient = null;
+            this.sharedClient = false;
+        } else if (sharedClient) {
+            // released only once the last repository sharing it shuts down
+            registry.release(databaseClient);
+            this.databaseClient = null;
+            this.sharedClient = false;
+        } else {
+            client.release();
+        }
     }
 
     /**
@@ -289,27 +385,33 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
         return new MarkLogicRepositoryConnection(this, getMarkLogicClient(), quadMode);
     }
 
-    //TODO: Check and refactor.
     /**
      * Returns MarkLogicClient object which manages communication to ML server via Java api client
      *
+     * Each call returns a new MarkLogicClient, as it holds the transaction and write cache
+     * of a single connection, all sharing the DatabaseClient (and its connection pool) of
+     * this repository.
+     *
      * @return MarkLogicClient
      */
     @Override
     public synchronized MarkLogicClient getMarkLogicClient() {
-        if(this.securityContext == null)
-        {
-            this.databaseClient = util.getClientBasedOnAuth(this.host, this.port, this.user, this.password, this.database, this.auth);
-            this.client = new MarkLogicClient(databaseClient);
-        }
-        else
-        {
-            this.databaseClient = util.getClientBasedOnAuth(this.host, this.port, this.database, this.securityContext);
-            this.client = new MarkLogicClient(databaseClient);
-        }
+        replaceUnusedClient();
+        this.client = newMarkLogicClient();
+        this.clientInUse = true;
         return this.client;
     }
 
+    /**
+     * Returns the Java Client API DatabaseClient used by this repository's connections,
+     * of the first host if connected to several.
+     *
+     * @return DatabaseClient
+     */
+    public synchronized DatabaseClient getDatabaseClient() {
+        return this.databaseClient;
+    }
+
     /**
      * Sets MarkLogicClient used by this repository.
      *
@@ -318,6 +420,210 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
     @Override
     public synchronized void setMarkLogicClient(MarkLogicClient client) {
         this.client = client;
+        this.clientInUse = true;
+    }
+
+    /**
+     * Returns the cluster balancing requests over hosts, or null if connected to a single host.
+     *
+     * @return MarkLogicCluster
+     */
+    public synchronized MarkLogicCluster getCluster() {
+        return this.cluster;
+    }
+
+    /**
+     * getter for hedging policy
+     *
+     * @return
+     */
+    public synchronized HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * Sets policy for hedging reads over the hosts of a multi-host repository, null to disable hedging.
+     *
+     * @param hedgingPolicy
+     */
+    public synchronized void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+        if (this.cluster != null) {
+            this.cluster.setHedgingPolicy(hedgingPolicy);
+        }
+    }
+
+    /**
+     * getter for the executor running async queries, null if connections use the shared default
+     *
+     * @return
+     */
+    public synchronized Executor getAsyncExecutor() {
+        return asyncExecutor;
+    }
+
+    /**
+     * Sets executor running evaluateAsync and executeAsync of queries, for connections opened after this call.
+     *
+     * @param asyncExecutor null for the shared default
+     */
+    public synchronized void setAsyncExecutor(Executor asyncExecutor) {
+        this.asyncExecutor = asyncExecutor;
+    }
+
+    /**
+     * getter for metrics
+     *
+     * @return
+     */
+    public synchronized MarkLogicMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets metrics receiving measurements of queries, writes and write cache flushes, replacing
+     * the default JmxMetrics; use MarkLogicMetrics.composite to keep it. Applies to connections
+     * opened after this call.
+     *
+     * @param metrics null to discard measurements
+     */
+    public synchronized void setMetrics(MarkLogicMetrics metrics) {
+        if (this.metrics instanceof JmxMetrics && this.metrics != metrics) {
+            ((JmxMetrics) this.metrics).unregister();
+        }
+        this.metrics = metrics == null ? MarkLogicMetrics.NOOP : metrics;
+        if (this.metrics instanceof JmxMetrics && isInitialized()) {
+            ((JmxMetrics) this.metrics).register(metricsName());
+        }
+    }
+
+    /**
+     * getter for the slow operation log, null if slow operations are not logged
+     *
+     * @return
+     */
+    public synchronized SlowOperationLog getSlowOperationLog() {
+        return slowOperationLog;
+    }
+
+    /**
+     * Sets log of slow queries, updates, write cache flushes and bulk adds, for connections
+     * opened after this call.
+     *
+     * @param slowOperationLog null to not log slow operations
+     */
+    public synchronized void setSlowOperationLog(SlowOperationLog slowOperationLog) {
+        this.slowOperationLog = slowOperationLog;
+    }
+
+    /**
+     * getter for deskolemizeResults
+     *
+     * @return
+     */
+    public synchronized boolean isDeskolemizeResults() {
+        return deskolemizeResults;
+    }
+
+    /**
+     * Sets whether query results return blank nodes in place of the skolem IRIs MarkLogic
+     * stores them as, for connections opened after this call. Blank nodes added through
+     * this JVM come back as the same blank nodes while cached, see {@link com.marklogic.semantics.rdf4j.utils.SkolemCache}.
+     *
+     * @param deskolemizeResults false by default
+     */
+    public synchronized void setDeskolemizeResults(boolean deskolemizeResults) {
+        this.deskolemizeResults = deskolemizeResults;
+    }
+
+    /**
+     * getter for resultInterning
+     *
+     * @return
+     */
+    public synchronized InterningValueFactory.Scope getResultInterning() {
+        return resultInterning;
+    }
+
+    /**
+     * Sets whether query results are parsed with an {@link InterningValueFactory}, so IRIs and
+     * literals repeated in a result share one instance, for connections opened after this call.
+     * A table per result starts small and grows with the result, a table per connection is
+     * kept for the life of the connection.
+     *
+     * @param resultInterning null by default, for no interning
+     */
+    public synchronized void setResultInterning(InterningValueFactory.Scope resultInterning) {
+        this.resultInterning = resultInterning;
+    }
+
+    /**
+     * Returns the cache of analysed query strings shared by connections of this repository.
+     *
+     * @return QueryTemplateCache
+     */
+    public QueryTemplateCache getQueryTemplateCache() {
+        return queryTemplateCache;
+    }
+
+    /**
+     * Takes a reference on the shared DatabaseClient for this repository's connection vars,
+     * one per host if connecting to several hosts.
+     */
+    private void acquireDatabaseClient() {
+        if(this.hosts != null)
+        {
+            List<DatabaseClient> clients = new ArrayList<>(this.hosts.size());
+            for (String clusterHost : this.hosts) {
+                clients.add(acquireDatabaseClient(clusterHost));
+            }
+            this.cluster = new MarkLogicCluster(clients, this.hostSelectionPolicy);
+            this.cluster.setHedgingPolicy(this.hedgingPolicy);
+            this.cluster.startHealthChecks(MarkLogicCluster.DEFAULT_HEALTH_CHECK_MILLIS);
+            this.databaseClient = clients.get(0);
+        }
+        else
+        {
+            this.databaseClient = acquireDatabaseClient(this.host);
+        }
+        this.sharedClient = true;
+    }
+
+    private DatabaseClient acquireDatabaseClient(String host) {
+        if(this.securityContext == null)
+        {
+            return registry.acquire(host, this.port, this.user, this.password, this.database, this.auth);
+        }
+        else
+        {
+            return registry.acquire(host, this.port, this.database, this.securityContext);
+        }
+    }
+
+    /**
+     * Stops the write cache timer of a client no connection was given before it is
+     * replaced, as nothing else would, leaving its thread running.
+     */
+    private void replaceUnusedClient() {
+        if (this.client != null && !this.clientInUse) {
+            this.client.stopTimer();
+        }
+        this.clientInUse = false;
+    }
+
+    private MarkLogicClient newMarkLogicClient() {
+        MarkLogicClient newClient = cluster != null ? new MarkLogicClient(cluster) : new MarkLogicClient(databaseClient);
+        newClient.setAsyncExecutor(asyncExecutor);
+        newClient.setMetrics(metrics);
+        newClient.setSlowOperationLog(slowOperationLog);
+        newClient.setDeskolemizeResults(deskolemizeResults);
+        newClient.setResultInterning(resultInterning);
+        return newClient;
+    }
+
+    private String metricsName() {
+        String hostNames = hosts != null ? String.join(",", hosts) : host;
+        return hostNames + ":" + port + (database != null ? "/" + database : "");
     }
 
     /**
@@ -338,4 +644,42 @@ public class MarkLogicRepository extends AbstractRepository implements Repositor
         this.quadMode = quadMode;
     }
 
+    /**
+     * getter for maximum execution time of queries, in seconds, 0 if unlimited.
+     *
+     * @return int
+     */
+    public int getDefaultMaxExecutionTime() {
+        return defaultMaxExecutionTime;
+    }
+
+    /**
+     * Sets maximum execution time in seconds for queries prepared by connections opened after this call,
+     * queries may override it with setMaxExecutionTime.
+     *
+     * @param maxExecutionTime 0 or less for no limit
+     */
+    public void setDefaultMaxExecutionTime(int maxExecutionTime) {
+        this.defaultMaxExecutionTime = maxExecutionTime;
+    }
+
+    /**
+     * getter for the trace listener of queries, null if queries are not traced by default.
+     *
+     * @return
+     */
+    public RequestTraceListener getDefaultTraceListener() {
+        return defaultTraceListener;
+    }
+
+    /**
+     * Sets listener tracing each query and update prepared by connections opened after this call,
+     * queries may override it with setTraceListener.
+     *
+     * @param traceListener null to not trace by default
+     */
+    public void setDefaultTraceListener(RequestTraceListener traceListener) {
+        this.defaultTraceListener = traceListener;
+    }
+
 }
\ No newline at end of file
@@ -26,6 +26,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.net.URL;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Iterator;
 
 import com.marklogic.client.Transaction;
@@ -59,7 +61,7 @@ import org.eclipse.rdf4j.query.TupleQueryResult;
 import org.eclipse.rdf4j.query.UnsupportedQueryLanguageException;
 
 import org.eclipse.rdf4j.query.impl.SimpleDataset;
-import org.eclipse.rdf4j.query.parser.QueryParserUtil;
+import org.eclipse.rdf4j.query.parser.sparql.SPARQLUtil;
 import org.eclipse.rdf4j.repository.RepositoryConnection;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.RepositoryResult;
@@ -77,11 +79,16 @@ import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
+import com.marklogic.semantics.rdf4j.client.QueryResultCache;
+import com.marklogic.semantics.rdf4j.client.RequestTraceListener;
+import com.marklogic.semantics.rdf4j.client.TripleCacheMXBean;
 import com.marklogic.semantics.rdf4j.query.MarkLogicBooleanQuery;
 import com.marklogic.semantics.rdf4j.query.MarkLogicGraphQuery;
 import com.marklogic.semantics.rdf4j.query.MarkLogicQuery;
 import com.marklogic.semantics.rdf4j.query.MarkLogicTupleQuery;
 import com.marklogic.semantics.rdf4j.query.MarkLogicUpdateQuery;
+import com.marklogic.semantics.rdf4j.query.QueryTemplate;
+import com.marklogic.semantics.rdf4j.query.QueryTemplateCache;
 
 /**
  * RepositoryConnection to MarkLogic triplestore
@@ -104,6 +111,8 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
 
     private static final String GET_STATEMENTS = "SELECT * {GRAPH ?ctx { ?s ?p ?o . }}";
 
+    private static final int HAS_STATEMENTS_CHUNK_SIZE = 500;
+
     private final boolean quadMode;
 
     private MarkLogicClient client;
@@ -112,6 +121,12 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     private SPARQLRuleset[] defaultRulesets;
     private QueryDefinition defaultQueryDef;
 
+    private final QueryTemplateCache templateCache;
+
+    private final int defaultMaxExecutionTime;
+
+    private final RequestTraceListener defaultTraceListener;
+
     private Util util = Util.getInstance();
 
     /**
@@ -126,6 +141,9 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
         this.client = client;
         this.quadMode = true;
         this.defaultGraphPerms = client.emptyGraphPerms();
+        this.templateCache = repository.getQueryTemplateCache();
+        this.defaultMaxExecutionTime = repository.getDefaultMaxExecutionTime();
+        this.defaultTraceListener = repository.getDefaultTraceListener();
         client.setValueFactory(repository.getValueFactory());
     }
 
@@ -228,11 +246,11 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     {
         // function routing based on query form
         if (SPARQL.equals(queryLanguage)) {
-            String queryStringWithoutProlog = QueryParserUtil.removeSPARQLQueryProlog(queryString).toUpperCase();
-            if (queryStringWithoutProlog.startsWith("SELECT")) {
+            QueryTemplate template = templateCache.getTemplate(queryString);
+            if (template.getForm() == QueryTemplate.Form.TUPLE) {
                 return prepareTupleQuery(queryLanguage, queryString, baseURI);   //must be a TupleQuery
             }
-            else if (queryStringWithoutProlog.startsWith("ASK")) {
+            else if (template.getForm() == QueryTemplate.Form.BOOLEAN) {
                 return prepareBooleanQuery(queryLanguage, queryString, baseURI); //must be a BooleanQuery
             }
             else {
@@ -296,7 +314,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     @Override
     public MarkLogicTupleQuery prepareTupleQuery(QueryLanguage queryLanguage, String queryString, String baseURI) throws RepositoryException, MalformedQueryException {
         if (QueryLanguage.SPARQL.equals(queryLanguage)) {
-            return new MarkLogicTupleQuery(this.client, new SPARQLQueryBindingSet(), baseURI, queryString, defaultGraphPerms, defaultQueryDef, defaultRulesets);
+            return withDefaults(new MarkLogicTupleQuery(this.client, new SPARQLQueryBindingSet(), baseURI, queryString, defaultGraphPerms, defaultQueryDef, defaultRulesets));
         }
         throw new UnsupportedQueryLanguageException("Unsupported query language " + queryLanguage.getName());
     }
@@ -357,7 +375,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
             throws RepositoryException, MalformedQueryException
     {
         if (QueryLanguage.SPARQL.equals(queryLanguage)) {
-            return new MarkLogicGraphQuery(this.client, new SPARQLQueryBindingSet(), baseURI, queryString, defaultGraphPerms, defaultQueryDef, defaultRulesets);
+            return withDefaults(new MarkLogicGraphQuery(this.client, new SPARQLQueryBindingSet(), baseURI, queryString, defaultGraphPerms, defaultQueryDef, defaultRulesets));
         }
         throw new UnsupportedQueryLanguageException("Unsupported query language " + queryLanguage.getName());
     }
@@ -416,7 +434,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     @Override
     public MarkLogicBooleanQuery prepareBooleanQuery(QueryLanguage queryLanguage, String queryString, String baseURI) throws RepositoryException, MalformedQueryException {
         if (QueryLanguage.SPARQL.equals(queryLanguage)) {
-            return new MarkLogicBooleanQuery(this.client, new SPARQLQueryBindingSet(), baseURI, queryString, defaultGraphPerms, defaultQueryDef, defaultRulesets);
+            return withDefaults(new MarkLogicBooleanQuery(this.client, new SPARQLQueryBindingSet(), baseURI, queryString, defaultGraphPerms, defaultQueryDef, defaultRulesets));
         }
         throw new UnsupportedQueryLanguageException("Unsupported query language " + queryLanguage.getName());
     }
@@ -475,7 +493,7 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
     @Override
     public MarkLogicUpdateQuery prepareUpdate(QueryLanguage queryLanguage, String queryString, String baseURI) throws RepositoryException, MalformedQueryException {
         if (QueryLanguage.SPARQL.equals(queryLanguage)) {
-            return new MarkLogicUpdateQuery(this.client, new SPARQLQueryBindingSet(), baseURI, queryString, defaultGraphPerms, defaultQueryDef, defaultRulesets);
+            return withDefaults(new MarkLogicUpdateQuery(this.client, new SPARQLQueryBindingSet(), baseURI, queryString, defaultGraphPerms, defaultQueryDef, defaultRulesets));
         }
         throw new UnsupportedQueryLanguageException("Unsupported query language " + queryLanguage.getName());
     }
@@ -716,6 +734,46 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
         }
     }
 
+    /**
+     * Checks which of the given statements exist in repository / context, sending one
+     * query per chunk of statements instead of one query per statement.
+     *
+     * Statements are matched the same way as by hasStatement: the context of each statement
+     * is ignored in favour of contexts, and null subject, predicate or object act as wildcards.
+     *
+     * @param statements The statements to be checked.
+     * @param includeInferred if false returns only explicit statements. If true returns both explicit and implicit statements.
+     * @param contexts Var-arg for specified contexts.
+     * @return BitSet with a bit set for each position, in iteration order of statements, whose statement exists
+     * @throws RepositoryException
+     */
+    @Override
+    public BitSet hasStatements(Collection<? extends Statement> statements, boolean includeInferred, Resource... contexts) throws RepositoryException {
+        if(!this.isOpen()){throw new RepositoryException("Connection is closed.");}
+        verifyContextNotNull(contexts);
+        BitSet present = new BitSet(statements.size());
+        StringBuilder rows = new StringBuilder();
+        int index = 0;
+        int chunkStart = 0;
+        for (Statement st : statements) {
+            rows.append("(").append(index).append(" ");
+            appendValuesTerm(rows, st.getSubject());
+            appendValuesTerm(rows, st.getPredicate());
+            appendValuesTerm(rows, st.getObject());
+            rows.append(") ");
+            index++;
+            if (index - chunkStart == HAS_STATEMENTS_CHUNK_SIZE) {
+                findStatements(rows, includeInferred, present, contexts);
+                rows.setLength(0);
+                chunkStart = index;
+            }
+        }
+        if (index > chunkStart) {
+            findStatements(rows, includeInferred, present, contexts);
+        }
+        return present;
+    }
+
     /**
      * Exports statements via RDFHandler.
      *
@@ -1300,6 +1358,8 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
         }else{
             this.defaultGraphPerms = client.emptyGraphPerms();
         }
+        // queries carry their own perms, the client's are used by adds and the write cache
+        client.setGraphPerms(this.defaultGraphPerms);
     }
 
     /**
@@ -1378,6 +1438,49 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
         client.initTimer(initDelay, delayCache,cacheSize);
     }
 
+    /**
+     * Returns management of the write cache, to inspect it or change its size and
+     * interval without losing cached statements. The same bean is registered with
+     * the platform MBean server while the connection is open.
+     *
+     * @return TripleCacheMXBean
+     */
+    public TripleCacheMXBean getWriteCacheMXBean() {
+        return client.getWriteCacheMXBean();
+    }
+
+    /**
+     * Enables caching of SELECT and ASK results for this connection. Cached results are
+     * dropped whenever this connection writes, and are not used inside a transaction.
+     *
+     * @param maxEntries maximum number of cached results
+     * @param ttlMillis time a result stays valid after being stored
+     * @param maxRows tuple results with more rows than this are not cached
+     */
+    @Override
+    public void configureResultCache(int maxEntries, long ttlMillis, int maxRows){
+        client.setResultCache(new QueryResultCache(maxEntries, ttlMillis, maxRows));
+    }
+
+    /**
+     * Disables the query result cache, dropping any cached results.
+     */
+    @Override
+    public void disableResultCache(){
+        client.setResultCache(null);
+    }
+
+    /**
+     * Returns the query result cache, with its hit, eviction and invalidation counts,
+     * or null if caching is not enabled.
+     *
+     * @return QueryResultCache
+     */
+    @Override
+    public QueryResultCache getResultCache(){
+        return client.getResultCache();
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////////
     // private ////////////////////////////////////////////////////////////////////////////////////
     ///////////////////////////////////////////////////////////////////////////////////////////////
@@ -1395,6 +1498,21 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
         }
     }
 
+    /**
+     * apply repository defaults to newly prepared query
+     *
+     * @param query
+     */
+    private <Q extends MarkLogicQuery> Q withDefaults(Q query) {
+        if (defaultMaxExecutionTime > 0) {
+            query.setMaxExecutionTime(defaultMaxExecutionTime);
+        }
+        if (defaultTraceListener != null) {
+            query.setTraceListener(defaultTraceListener);
+        }
+        return query;
+    }
+
     /**
      * set bindings ?s, ?p and special handling of Value ?o (and ?ctx)
      *
@@ -1436,6 +1554,76 @@ public class MarkLogicRepositoryConnection extends AbstractRepositoryConnection
         query.setDataset(dataset);
     }
 
+    /**
+     * evaluates one chunk of VALUES rows for hasStatements, setting the bit of each row found
+     *
+     * @param rows
+     * @param includeInferred
+     * @param present
+     * @param contexts
+     * @throws RepositoryException
+     */
+    private void findStatements(StringBuilder rows, boolean includeInferred, BitSet present, Resource... contexts)
+            throws RepositoryException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SELECT DISTINCT ?i { VALUES (?i ?s ?p ?o) { ").append(rows).append("} ");
+        if (contexts.length == 0) {
+            sb.append("?s ?p ?o }");
+        } else {
+            sb.append("GRAPH ?ctx { ?s ?p ?o } filter (?ctx IN (");
+            boolean first = true;
+            for (Resource context : contexts) {
+                if (first) {
+                    first = false;
+                } else {
+                    sb.append(",");
+                }
+                if (context == null) {
+                    sb.append("<" + DEFAULT_GRAPH_URI + ">");
+                } else {
+                    sb.append("<" + context.stringValue() + ">");
+                }
+            }
+            sb.append(") ) }");
+        }
+        String queryString = sb.toString();
+        logger.debug(queryString);
+        try {
+            MarkLogicTupleQuery query = prepareTupleQuery(queryString);
+            query.setIncludeInferred(includeInferred);
+            try (TupleQueryResult result = query.evaluate()) {
+                while (result.hasNext()) {
+                    present.set(((Literal) result.next().getValue("i")).intValue());
+                }
+            }
+        } catch (MalformedQueryException | QueryEvaluationException e) {
+            throw new RepositoryException(e);
+        }
+    }
+
+    /**
+     * append a skolemized term of a VALUES row, null becomes UNDEF
+     *
+     * @param sb
+     * @param value
+     */
+    private void appendValuesTerm(StringBuilder sb, Value value) {
+        value = util.skolemize(value);
+        if (value == null) {
+            sb.append("UNDEF ");
+        } else if (value instanceof Literal) {
+            Literal lit = (Literal) value;
+            sb.append("\"").append(SPARQLUtil.encodeString(lit.getLabel())).append("\"");
+            if (lit.getLanguage().isPresent()) {
+                sb.append("@").append(lit.getLanguage().get()).append(" ");
+            } else {
+                sb.append("^^<").append(lit.getDatatype().stringValue()).append("> ");
+            }
+        } else {
+            sb.append("<").append(value.stringValue()).append("> ");
+        }
+    }
+
     public Transaction getTransaction()
     {
         return this.client.getTransaction();
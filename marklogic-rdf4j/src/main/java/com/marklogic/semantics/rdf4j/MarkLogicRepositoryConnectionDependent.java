@@ -22,11 +22,16 @@ package com.marklogic.semantics.rdf4j;
 import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.SPARQLRuleset;
+import com.marklogic.semantics.rdf4j.client.QueryResultCache;
 import org.eclipse.rdf4j.common.iteration.Iteration;
+import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.query.*;
 import org.eclipse.rdf4j.repository.RepositoryException;
 
+import java.util.BitSet;
+import java.util.Collection;
+
 /**
  * Interface defining MarkLogic semantic features.
  *
@@ -49,6 +54,8 @@ interface MarkLogicRepositoryConnectionDependent {
     GraphQuery prepareGraphQuery(String queryString) throws RepositoryException, MalformedQueryException;
     GraphQuery prepareGraphQuery(String queryString, String baseURI) throws RepositoryException, MalformedQueryException;
 
+    BitSet hasStatements(Collection<? extends Statement> statements, boolean includeInferred, Resource... contexts) throws RepositoryException;
+
     void clear() throws RepositoryException;
     long size() throws RepositoryException;
 
@@ -68,4 +75,8 @@ interface MarkLogicRepositoryConnectionDependent {
 
     void configureWriteCache(long initDelay, long delayCache, long cacheSize);
 
+    void configureResultCache(int maxEntries, long ttlMillis, int maxRows);
+    void disableResultCache();
+    QueryResultCache getResultCache();
+
 }
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import com.marklogic.client.DatabaseClient;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import org.eclipse.rdf4j.query.QueryInterruptedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One execution of a query, which can be cancelled from another thread or once
+ * its maximum execution time has passed.
+ *
+ * Cancelling aborts the HTTP call if it is still waiting on the server, or closes
+ * the response if results are being read, so the pooled connection is released
+ * either way. The HTTP call is found by a request id sent as an extra, unused
+ * SPARQL binding.
+ *
+ * A request may be sent as several attempts, for example when hedging reads,
+ * each attempt cancellable on its own and all cancelled with the request.
+ *
+ */
+public class CancellableRequest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CancellableRequest.class);
+
+    static final String REQUEST_ID_VARIABLE = "mlRdf4jRequestId";
+
+    private static final String REQUEST_ID_PARAMETER = "bind:" + REQUEST_ID_VARIABLE;
+
+    private static final String REQUEST_ID_PREFIX = "urn:x-marklogic-rdf4j-request:" + Long.toHexString(System.nanoTime()) + ":";
+
+    // a call may only show up among running calls just after it is sent, so cancel looks again
+    private static final long CANCEL_RETRY_MILLIS = 50;
+
+    // gives up looking after 5 s, a response arriving later is still closed by track
+    private static final int MAX_CANCEL_RETRIES = 100;
+
+    private static final AtomicLong nextId = new AtomicLong();
+
+    private static final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "marklogic-rdf4j-request-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    private final String id = REQUEST_ID_PREFIX + nextId.incrementAndGet();
+
+    private final long maxExecutionTimeMillis;
+
+    private final CancellableRequest parent;
+
+    private final List<DatabaseClient> clients = new ArrayList<>(1);
+    private final List<InputStream> streams = new ArrayList<>(1);
+    private final List<CancellableRequest> attempts = new ArrayList<>(0);
+    private int openExchanges;
+    private int runningCalls;
+    private ScheduledFuture<?> deadline;
+
+    private volatile boolean cancelled;
+    private volatile boolean timedOut;
+
+    /**
+     * Constructor, the maximum execution time counts from now.
+     *
+     * @param maxExecutionTimeMillis 0 or less for no limit
+     */
+    public CancellableRequest(long maxExecutionTimeMillis) {
+        this.maxExecutionTimeMillis = maxExecutionTimeMillis;
+        this.parent = null;
+        if (maxExecutionTimeMillis > 0) {
+            this.deadline = timer.schedule(this::timeOut, maxExecutionTimeMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private CancellableRequest(CancellableRequest parent) {
+        this.maxExecutionTimeMillis = parent.maxExecutionTimeMillis;
+        this.parent = parent;
+    }
+
+    /**
+     * getter for request id
+     *
+     * @return
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * getter for maximum execution time
+     *
+     * @return
+     */
+    public long getMaxExecutionTimeMillis() {
+        return maxExecutionTimeMillis;
+    }
+
+    /**
+     * Returns true once cancelled or timed out.
+     *
+     * @return
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns true if cancelled because the maximum execution time passed.
+     *
+     * @return
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Aborts the request, callers waiting on it or reading its results get a QueryInterruptedException.
+     */
+    public void cancel() {
+        List<InputStream> open;
+        List<CancellableRequest> running;
+        synchronized (this) {
+            cancelled = true;
+            stopDeadline();
+            open = new ArrayList<>(streams);
+            streams.clear();
+            running = new ArrayList<>(attempts);
+            attempts.clear();
+        }
+        for (CancellableRequest attempt : running) {
+            attempt.cancel();
+        }
+        for (InputStream in : open) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                logger.debug("closing cancelled response failed", e);
+            }
+        }
+        cancelRunningCalls(0);
+    }
+
+    /**
+     * Called once the query call returned, stops the deadline unless results are still being read.
+     */
+    public synchronized void returned() {
+        if (openExchanges == 0) {
+            stopDeadline();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Marks start of an HTTP exchange with client.
+     *
+     * @param client
+     */
+    synchronized void begin(DatabaseClient client) {
+        open();
+        if (!clients.contains(client)) {
+            clients.add(client);
+        }
+        runningCalls++;
+    }
+
+    /**
+     * Marks end of the HTTP call started by begin, its response may still be read.
+     */
+    synchronized void finish() {
+        runningCalls--;
+        end();
+    }
+
+    /**
+     * Keeps the deadline running across several exchanges, until matched by end.
+     */
+    synchronized void hold() {
+        open();
+    }
+
+    /**
+     * Marks end of an exchange, the deadline stops once none are open.
+     */
+    synchronized void end() {
+        if (--openExchanges == 0) {
+            stopDeadline();
+        }
+        if (parent != null) {
+            parent.end();
+        }
+    }
+
+    /**
+     * Returns a new attempt at this request, cancelled along with it and keeping its deadline running.
+     *
+     * @return
+     */
+    synchronized CancellableRequest newAttempt() {
+        checkNotCancelled();
+        CancellableRequest attempt = new CancellableRequest(this);
+        attempts.add(attempt);
+        return attempt;
+    }
+
+    /**
+     * Wraps a response stream, so cancel closes it and the exchange ends when it is closed.
+     *
+     * @param in
+     * @return
+     */
+    synchronized InputStream track(InputStream in) {
+        if (cancelled) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                logger.debug("closing cancelled response failed", e);
+            }
+            throw interrupted(null);
+        }
+        open();
+        TrackedInputStream tracked = new TrackedInputStream(in);
+        streams.add(tracked);
+        return tracked;
+    }
+
+    /**
+     * Throws QueryInterruptedException if cancelled.
+     */
+    void checkNotCancelled() {
+        if (cancelled) {
+            throw interrupted(null);
+        }
+    }
+
+    /**
+     * Returns exception reporting the cancellation.
+     *
+     * @param cause
+     * @return
+     */
+    QueryInterruptedException interrupted(Throwable cause) {
+        String message = timedOut
+                ? "Query exceeded maximum execution time of " + maxExecutionTimeMillis + " ms."
+                : "Query was cancelled.";
+        return cause == null ? new QueryInterruptedException(message) : new QueryInterruptedException(message, cause);
+    }
+
+    private void open() {
+        checkNotCancelled();
+        if (parent != null) {
+            parent.hold();
+        }
+        openExchanges++;
+    }
+
+    private void timeOut() {
+        timedOut = true;
+        logger.debug("request {} timed out", id);
+        cancel();
+    }
+
+    private void stopDeadline() {
+        if (deadline != null) {
+            deadline.cancel(false);
+            deadline = null;
+        }
+    }
+
+    private void cancelRunningCalls(int retries) {
+        List<DatabaseClient> targets;
+        synchronized (this) {
+            if (runningCalls == 0) {
+                return;
+            }
+            targets = new ArrayList<>(clients);
+        }
+        boolean found = false;
+        for (DatabaseClient client : targets) {
+            Object implementation = client.getClientImplementation();
+            if (implementation instanceof OkHttpClient) {
+                for (Call call : ((OkHttpClient) implementation).dispatcher().runningCalls()) {
+                    if (id.equals(call.request().url().queryParameter(REQUEST_ID_PARAMETER))) {
+                        call.cancel();
+                        found = true;
+                    }
+                }
+            }
+        }
+        if (found) {
+            return;
+        }
+        if (retries < MAX_CANCEL_RETRIES) {
+            timer.schedule(() -> cancelRunningCalls(retries + 1), CANCEL_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+        } else {
+            logger.debug("request {} call not found to cancel after {} retries", id, retries);
+        }
+    }
+
+    private class TrackedInputStream extends FilterInputStream {
+        private boolean closed;
+
+        private TrackedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (CancellableRequest.this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                streams.remove(this);
+                end();
+            }
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import com.marklogic.client.DatabaseClient;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One host of a {@link MarkLogicCluster}, with its DatabaseClient, availability
+ * and number of requests currently in flight.
+ *
+ */
+public class ClusterHost {
+
+    private final int index;
+    private final DatabaseClient databaseClient;
+    private final AtomicInteger outstandingRequests = new AtomicInteger();
+    private volatile boolean available = true;
+
+    ClusterHost(int index, DatabaseClient databaseClient) {
+        this.index = index;
+        this.databaseClient = databaseClient;
+    }
+
+    /**
+     * getter for position of host in cluster
+     *
+     * @return
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * getter for host name
+     *
+     * @return
+     */
+    public String getHost() {
+        return databaseClient.getHost();
+    }
+
+    /**
+     * getter for port
+     *
+     * @return
+     */
+    public int getPort() {
+        return databaseClient.getPort();
+    }
+
+    /**
+     * getter for DatabaseClient
+     *
+     * @return
+     */
+    public DatabaseClient getDatabaseClient() {
+        return databaseClient;
+    }
+
+    /**
+     * Returns false once a request to this host failed to connect, until a health check succeeds.
+     *
+     * @return
+     */
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * getter for number of requests in flight
+     *
+     * @return
+     */
+    public int getOutstandingRequests() {
+        return outstandingRequests.get();
+    }
+
+    @Override
+    public String toString() {
+        return getHost() + ":" + getPort();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    void requestStarted() {
+        outstandingRequests.incrementAndGet();
+    }
+
+    void requestFinished() {
+        outstandingRequests.decrementAndGet();
+    }
+}
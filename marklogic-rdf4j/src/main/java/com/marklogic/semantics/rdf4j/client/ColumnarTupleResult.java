@@ -0,0 +1,511 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import org.eclipse.rdf4j.common.iteration.AbstractCloseableIteration;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.query.AbstractBindingSet;
+import org.eclipse.rdf4j.query.AbstractTupleQueryResultHandler;
+import org.eclipse.rdf4j.query.Binding;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.query.TupleQueryResultHandlerException;
+import org.eclipse.rdf4j.query.algebra.evaluation.util.ValueComparator;
+import org.eclipse.rdf4j.query.impl.MapBindingSet;
+import org.eclipse.rdf4j.query.impl.SimpleBinding;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Tuple result held by column: for each binding name a dictionary of the distinct values
+ * bound to it and an int per row indexing into the dictionary, so a value repeated across
+ * rows is held once and each row costs an int per binding name.
+ *
+ * Each instance iterates over a view of the rows. Columns are immutable and shared by
+ * views, so {@link #iterate()}, {@link #slice(int, int)} and {@link #sort(boolean, String...)}
+ * return new iterations without copying values, and may be called from any thread while
+ * each iteration is consumed by one.
+ *
+ * Built from a result stream with {@link #of(TupleQueryResult)}, or by passing a
+ * {@link Builder} as the handler of a query or result parser.
+ *
+ */
+public class ColumnarTupleResult extends AbstractCloseableIteration<BindingSet, QueryEvaluationException> implements TupleQueryResult {
+
+    private static final int UNBOUND = -1;
+
+    private final Columns columns;
+
+    // row of each position of this view, null for rows in stored order
+    private final int[] order;
+    private final int from;
+    private final int to;
+
+    private int next;
+
+    private ColumnarTupleResult(Columns columns, int[] order, int from, int to) {
+        this.columns = columns;
+        this.order = order;
+        this.from = from;
+        this.to = to;
+        this.next = from;
+    }
+
+    /**
+     * Reads all of result into columns, closing it.
+     *
+     * @param result
+     * @return ColumnarTupleResult
+     * @throws QueryEvaluationException
+     */
+    public static ColumnarTupleResult of(TupleQueryResult result) throws QueryEvaluationException {
+        try {
+            Builder builder = new Builder();
+            builder.startQueryResult(result.getBindingNames());
+            while (result.hasNext()) {
+                builder.handleSolution(result.next());
+            }
+            return builder.build();
+        } finally {
+            result.close();
+        }
+    }
+
+    @Override
+    public List<String> getBindingNames() {
+        return columns.names;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !isClosed() && next < to;
+    }
+
+    @Override
+    public BindingSet next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return new Row(columns, row(next++));
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns number of rows of this view.
+     *
+     * @return
+     */
+    public int size() {
+        return to - from;
+    }
+
+    /**
+     * Returns row at index of this view.
+     *
+     * @param index
+     * @return BindingSet
+     */
+    public BindingSet get(int index) {
+        checkIndex(index);
+        return new Row(columns, row(from + index));
+    }
+
+    /**
+     * Returns value bound to bindingName in row at index of this view.
+     *
+     * @param index
+     * @param bindingName
+     * @return null if unbound
+     */
+    public Value getValue(int index, String bindingName) {
+        checkIndex(index);
+        int column = columns.names.indexOf(bindingName);
+        return column < 0 ? null : columns.value(column, row(from + index));
+    }
+
+    /**
+     * Passes the value bound to bindingName in each row of this view, in order, to action,
+     * reading the column without creating a binding set per row.
+     *
+     * @param bindingName
+     * @param action receives null for rows where bindingName is unbound
+     */
+    public void forEachValue(String bindingName, Consumer<? super Value> action) {
+        int column = columns.names.indexOf(bindingName);
+        int[] ids = column < 0 ? null : columns.ids[column];
+        Value[] dictionary = column < 0 ? null : columns.dictionaries[column];
+        for (int position = from; position < to; position++) {
+            int id = ids == null ? UNBOUND : ids[row(position)];
+            action.accept(id == UNBOUND ? null : dictionary[id]);
+        }
+    }
+
+    /**
+     * Returns the distinct values bound to bindingName, in order of first occurrence.
+     *
+     * @param bindingName
+     * @return empty if bindingName is not in the result
+     */
+    public List<Value> getDistinctValues(String bindingName) {
+        int column = columns.names.indexOf(bindingName);
+        return column < 0 ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(columns.dictionaries[column]));
+    }
+
+    /**
+     * Returns a new iteration over the rows of this view, from the first.
+     *
+     * @return ColumnarTupleResult
+     */
+    public ColumnarTupleResult iterate() {
+        return new ColumnarTupleResult(columns, order, from, to);
+    }
+
+    /**
+     * Returns a new iteration over rows fromIndex, inclusive, to toIndex, exclusive, of this view.
+     *
+     * @param fromIndex
+     * @param toIndex
+     * @return ColumnarTupleResult
+     */
+    public ColumnarTupleResult slice(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("fromIndex " + fromIndex + ", toIndex " + toIndex + ", size " + size());
+        }
+        return new ColumnarTupleResult(columns, order, from + fromIndex, from + toIndex);
+    }
+
+    /**
+     * Returns a new iteration over the rows of this view ordered by the values of bindingNames,
+     * compared as by SPARQL ORDER BY, with unbound values lowest. The sort is stable.
+     *
+     * @param ascending
+     * @param bindingNames
+     * @return ColumnarTupleResult
+     */
+    public ColumnarTupleResult sort(boolean ascending, String... bindingNames) {
+        int[] rows = new int[size()];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = row(from + i);
+        }
+        long[] keys = new long[rows.length];
+        // least significant binding first, each pass keeping the order of equal keys
+        for (int k = bindingNames.length - 1; k >= 0; k--) {
+            int column = columns.names.indexOf(bindingNames[k]);
+            if (column < 0) {
+                throw new IllegalArgumentException("No binding named " + bindingNames[k] + ".");
+            }
+            int[] ids = columns.ids[column];
+            int[] ranks = columns.ranks(column);
+            int highest = ranks.length + 1;
+            for (int i = 0; i < rows.length; i++) {
+                int id = ids[rows[i]];
+                int rank = id == UNBOUND ? 0 : ranks[id] + 1;
+                keys[i] = ((long) (ascending ? rank : highest - rank) << 32) | i;
+            }
+            Arrays.sort(keys);
+            int[] sorted = new int[rows.length];
+            for (int i = 0; i < rows.length; i++) {
+                sorted[i] = rows[(int) keys[i]];
+            }
+            rows = sorted;
+        }
+        return new ColumnarTupleResult(columns, rows, 0, rows.length);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private int row(int position) {
+        return order == null ? position : order[position];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size());
+        }
+    }
+
+    /**
+     * Handler reading solutions into columns, usable as the handler of a query or of a result parser.
+     */
+    public static class Builder extends AbstractTupleQueryResultHandler {
+
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> columnIndex = new HashMap<>();
+        private final List<ColumnBuilder> columns = new ArrayList<>();
+        private int rows;
+
+        @Override
+        public void startQueryResult(List<String> bindingNames) throws TupleQueryResultHandlerException {
+            for (String name : bindingNames) {
+                column(name);
+            }
+        }
+
+        @Override
+        public void handleSolution(BindingSet bindingSet) throws TupleQueryResultHandlerException {
+            if (rows == Integer.MAX_VALUE) {
+                throw new TupleQueryResultHandlerException("Too many rows for a columnar result.");
+            }
+            int bound = 0;
+            for (int c = 0; c < names.size(); c++) {
+                Value value = bindingSet.getValue(names.get(c));
+                if (value != null) {
+                    columns.get(c).set(rows, value);
+                    bound++;
+                }
+            }
+            if (bound < bindingSet.size()) {
+                // bindings not named by the result
+                for (Binding binding : bindingSet) {
+                    if (!columnIndex.containsKey(binding.getName())) {
+                        columns.get(column(binding.getName())).set(rows, binding.getValue());
+                    }
+                }
+            }
+            rows++;
+        }
+
+        /**
+         * Returns the rows handled so far, the builder should not be used afterwards.
+         *
+         * @return ColumnarTupleResult
+         */
+        public ColumnarTupleResult build() {
+            Value[][] dictionaries = new Value[columns.size()][];
+            int[][] ids = new int[columns.size()][];
+            for (int c = 0; c < columns.size(); c++) {
+                ColumnBuilder column = columns.get(c);
+                dictionaries[c] = column.values.toArray(new Value[column.values.size()]);
+                ids[c] = column.ids(rows);
+            }
+            return new ColumnarTupleResult(new Columns(names, dictionaries, ids), null, 0, rows);
+        }
+
+        private int column(String name) {
+            Integer index = columnIndex.get(name);
+            if (index == null) {
+                index = names.size();
+                names.add(name);
+                columnIndex.put(name, index);
+                columns.add(new ColumnBuilder());
+            }
+            return index;
+        }
+    }
+
+    private static class ColumnBuilder {
+        private final List<Value> values = new ArrayList<>();
+        // open addressing table of value hash in the high and dictionary id + 1 in the low half, 0 for empty slots
+        private long[] slots = new long[16];
+        private int[] ids = new int[0];
+
+        private void set(int row, Value value) {
+            int hash = spread(value.hashCode());
+            int mask = slots.length - 1;
+            int slot = hash & mask;
+            int id;
+            while (true) {
+                long entry = slots[slot];
+                if (entry == 0) {
+                    id = values.size();
+                    values.add(value);
+                    slots[slot] = ((long) hash << 32) | (id + 1);
+                    if (values.size() > slots.length >> 1) {
+                        rehash();
+                    }
+                    break;
+                }
+                if ((int) (entry >>> 32) == hash && values.get((int) entry - 1).equals(value)) {
+                    id = (int) entry - 1;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            ensureCapacity(row + 1);
+            ids[row] = id;
+        }
+
+        private void rehash() {
+            long[] rehashed = new long[slots.length << 1];
+            int mask = rehashed.length - 1;
+            for (long entry : slots) {
+                if (entry != 0) {
+                    int slot = (int) (entry >>> 32) & mask;
+                    while (rehashed[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    rehashed[slot] = entry;
+                }
+            }
+            slots = rehashed;
+        }
+
+        private static int spread(int hash) {
+            int h = hash * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        private int[] ids(int rows) {
+            ensureCapacity(rows);
+            return ids.length == rows ? ids : Arrays.copyOf(ids, rows);
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (ids.length < capacity) {
+                int length = ids.length;
+                ids = Arrays.copyOf(ids, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(capacity, length + (length >> 1) + 16L)));
+                Arrays.fill(ids, length, ids.length, UNBOUND);
+            }
+        }
+    }
+
+    private static class Columns {
+        private final List<String> names;
+        private final Value[][] dictionaries;
+        private final int[][] ids;
+
+        // ORDER BY rank of each dictionary entry, computed on first sort
+        private final int[][] ranks;
+
+        private Columns(List<String> names, Value[][] dictionaries, int[][] ids) {
+            this.names = Collections.unmodifiableList(new ArrayList<>(names));
+            this.dictionaries = dictionaries;
+            this.ids = ids;
+            this.ranks = new int[dictionaries.length][];
+        }
+
+        private Value value(int column, int row) {
+            int id = ids[column][row];
+            return id == UNBOUND ? null : dictionaries[column][id];
+        }
+
+        private synchronized int[] ranks(int column) {
+            if (ranks[column] == null) {
+                Value[] dictionary = dictionaries[column];
+                Integer[] sorted = new Integer[dictionary.length];
+                for (int i = 0; i < sorted.length; i++) {
+                    sorted[i] = i;
+                }
+                ValueComparator comparator = new ValueComparator();
+                Arrays.sort(sorted, (a, b) -> comparator.compare(dictionary[a], dictionary[b]));
+                int[] columnRanks = new int[dictionary.length];
+                int rank = 0;
+                for (int i = 0; i < sorted.length; i++) {
+                    if (i > 0 && comparator.compare(dictionary[sorted[i - 1]], dictionary[sorted[i]]) != 0) {
+                        rank++;
+                    }
+                    columnRanks[sorted[i]] = rank;
+                }
+                ranks[column] = columnRanks;
+            }
+            return ranks[column];
+        }
+    }
+
+    /**
+     * Binding set reading a row from the columns.
+     */
+    private static class Row extends AbstractBindingSet {
+        private static final long serialVersionUID = 6512390421935378563L;
+
+        private final transient Columns columns;
+        private final int row;
+
+        private Row(Columns columns, int row) {
+            this.columns = columns;
+            this.row = row;
+        }
+
+        // the columns are not serializable, so a copy of the row is written instead
+        private Object writeReplace() {
+            MapBindingSet copy = new MapBindingSet(columns.names.size());
+            for (Binding binding : this) {
+                copy.addBinding(binding);
+            }
+            return copy;
+        }
+
+        @Override
+        public Iterator<Binding> iterator() {
+            List<Binding> bindings = new ArrayList<>(columns.names.size());
+            for (int c = 0; c < columns.names.size(); c++) {
+                Value value = columns.value(c, row);
+                if (value != null) {
+                    bindings.add(new SimpleBinding(columns.names.get(c), value));
+                }
+            }
+            return bindings.iterator();
+        }
+
+        @Override
+        public Set<String> getBindingNames() {
+            Set<String> bound = new LinkedHashSet<>();
+            for (int c = 0; c < columns.names.size(); c++) {
+                if (columns.ids[c][row] != UNBOUND) {
+                    bound.add(columns.names.get(c));
+                }
+            }
+            return bound;
+        }
+
+        @Override
+        public Binding getBinding(String bindingName) {
+            Value value = getValue(bindingName);
+            return value == null ? null : new SimpleBinding(bindingName, value);
+        }
+
+        @Override
+        public boolean hasBinding(String bindingName) {
+            return getValue(bindingName) != null;
+        }
+
+        @Override
+        public Value getValue(String bindingName) {
+            int column = columns.names.indexOf(bindingName);
+            return column < 0 ? null : columns.value(column, row);
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (int c = 0; c < columns.names.size(); c++) {
+                if (columns.ids[c][row] != UNBOUND) {
+                    size++;
+                }
+            }
+            return size;
+        }
+    }
+}
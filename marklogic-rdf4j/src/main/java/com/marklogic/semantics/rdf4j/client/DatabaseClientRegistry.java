@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.semantics.rdf4j.utils.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reference counted registry of DatabaseClients, keyed by host, port, database
+ * and credentials, so that repositories pointing at the same server share one
+ * DatabaseClient and its HTTP connection pool.
+ *
+ * Every acquire must be matched by a release; the DatabaseClient is released
+ * once the last holder releases it.
+ *
+ */
+public class DatabaseClientRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseClientRegistry.class);
+
+    private static final DatabaseClientRegistry registry = new DatabaseClientRegistry();
+
+    private final Map<Key, Registration> byKey = new HashMap<>();
+    private final Map<DatabaseClient, Registration> byClient = new IdentityHashMap<>();
+
+    private Util util = Util.getInstance();
+
+    private DatabaseClientRegistry() {
+    }
+
+    /**
+     * Method to obtain instance of DatabaseClientRegistry class.
+     * @return DatabaseClientRegistry
+     */
+    public static DatabaseClientRegistry getInstance() {
+        return registry;
+    }
+
+    /**
+     * Returns the shared DatabaseClient for a security context, creating it on first use.
+     *
+     * Basic and digest contexts without SSL are matched by user and password, other
+     * security contexts only match the same SecurityContext instance.
+     *
+     * @param host
+     * @param port
+     * @param database
+     * @param securityContext
+     * @return DatabaseClient
+     */
+    public synchronized DatabaseClient acquire(String host, int port, String database, DatabaseClientFactory.SecurityContext securityContext) {
+        Key key = new Key(host, port, database, credentialsOf(securityContext));
+        Registration registration = byKey.get(key);
+        if (registration == null) {
+            registration = register(key, util.getClientBasedOnAuth(host, port, database, securityContext));
+        }
+        registration.references++;
+        return registration.client;
+    }
+
+    /**
+     * Returns the shared DatabaseClient for user, password and auth type, creating it on first use.
+     *
+     * @param host
+     * @param port
+     * @param user
+     * @param password
+     * @param database
+     * @param auth
+     * @return DatabaseClient or null if auth is not supported
+     */
+    public synchronized DatabaseClient acquire(String host, int port, String user, String password, String database, String auth) {
+        Key key = new Key(host, port, database, Arrays.asList(auth == null ? null : auth.toUpperCase(), user, password));
+        Registration registration = byKey.get(key);
+        if (registration == null) {
+            DatabaseClient client = util.getClientBasedOnAuth(host, port, user, password, database, auth);
+            if (client == null) {
+                return null;
+            }
+            registration = register(key, client);
+        }
+        registration.references++;
+        return registration.client;
+    }
+
+    /**
+     * Drops one reference to a DatabaseClient obtained from acquire, releasing the
+     * client when no references remain. Clients not obtained from this registry are ignored.
+     *
+     * @param client
+     * @return true if the client was released
+     */
+    public synchronized boolean release(DatabaseClient client) {
+        Registration registration = byClient.get(client);
+        if (registration == null) {
+            return false;
+        }
+        if (--registration.references > 0) {
+            return false;
+        }
+        byClient.remove(client);
+        byKey.remove(registration.key);
+        try {
+            client.release();
+        } catch (Exception e) {
+            logger.info("Failed releasing DB client", e);
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if client was obtained from this registry and is still held.
+     *
+     * @param client
+     * @return
+     */
+    public synchronized boolean isRegistered(DatabaseClient client) {
+        return byClient.containsKey(client);
+    }
+
+    /**
+     * getter for number of holders of client
+     *
+     * @param client
+     * @return
+     */
+    public synchronized int getReferenceCount(DatabaseClient client) {
+        Registration registration = byClient.get(client);
+        return registration == null ? 0 : registration.references;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private Registration register(Key key, DatabaseClient client) {
+        logger.debug("creating shared DatabaseClient for {}:{}", key.host, key.port);
+        Registration registration = new Registration(key, client);
+        byKey.put(key, registration);
+        byClient.put(client, registration);
+        return registration;
+    }
+
+    private static Object credentialsOf(DatabaseClientFactory.SecurityContext securityContext) {
+        if (securityContext != null && securityContext.getSSLContext() == null) {
+            if (securityContext instanceof DatabaseClientFactory.BasicAuthContext) {
+                DatabaseClientFactory.BasicAuthContext basic = (DatabaseClientFactory.BasicAuthContext) securityContext;
+                return Arrays.asList("BASIC", basic.getUser(), basic.getPassword());
+            }
+            if (securityContext instanceof DatabaseClientFactory.DigestAuthContext) {
+                DatabaseClientFactory.DigestAuthContext digest = (DatabaseClientFactory.DigestAuthContext) securityContext;
+                return Arrays.asList("DIGEST", digest.getUser(), digest.getPassword());
+            }
+        }
+        return securityContext;
+    }
+
+    private static class Registration {
+        private final Key key;
+        private final DatabaseClient client;
+        private int references;
+
+        private Registration(Key key, DatabaseClient client) {
+            this.key = key;
+            this.client = client;
+        }
+    }
+
+    private static final class Key {
+        private final String host;
+        private final int port;
+        private final String database;
+        private final Object credentials;
+
+        private Key(String host, int port, String database, Object credentials) {
+            this.host = host;
+            this.port = port;
+            this.database = database;
+            this.credentials = credentials;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return port == key.port &&
+                    Objects.equals(host, key.host) &&
+                    Objects.equals(database, key.database) &&
+                    Objects.equals(credentials, key.credentials);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(host, port, database, credentials);
+        }
+    }
+}
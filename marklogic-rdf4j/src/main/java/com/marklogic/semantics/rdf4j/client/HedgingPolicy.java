@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Settings and statistics for hedged reads on a {@link MarkLogicCluster}.
+ *
+ * A read that has not answered after the given percentile of recent read
+ * latencies is sent again to another host, the first answer is used and the
+ * other request cancelled. Each read earns maxExtraLoad of a hedge, so hedges
+ * stay within that fraction of reads apart from a small burst. Reads are sent
+ * from the calling thread, hedges from a small shared pool; a hedge finding
+ * the pool busy is skipped.
+ *
+ */
+public class HedgingPolicy {
+
+    public static final double DEFAULT_PERCENTILE = 95.0;
+
+    public static final double DEFAULT_MAX_EXTRA_LOAD = 0.05;
+
+    // latencies kept, and how many are needed before hedging starts
+    private static final int WINDOW = 1024;
+    private static final int MIN_SAMPLES = 32;
+
+    // the delay is recomputed after this many new latencies
+    private static final int RECOMPUTE_INTERVAL = 64;
+
+    private static final double MAX_BURST = 10;
+
+    private final double percentile;
+    private final double maxExtraLoad;
+    private final long minDelayNanos;
+
+    private final long[] latencies = new long[WINDOW];
+    private int recorded;
+    private int sinceRecompute;
+    private volatile long delayNanos = -1;
+
+    private double budget;
+
+    private final AtomicLong hedgedRequests = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong skippedHedges = new AtomicLong();
+
+    /**
+     * Constructor hedging reads slower than the 95th percentile, adding at most 5% extra requests.
+     */
+    public HedgingPolicy() {
+        this(DEFAULT_PERCENTILE, DEFAULT_MAX_EXTRA_LOAD, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param percentile of recent read latencies after which a read is hedged, between 0 and 100
+     * @param maxExtraLoad largest fraction of reads that may be hedged, between 0 and 1
+     * @param minDelayMillis reads are never hedged sooner than this
+     */
+    public HedgingPolicy(double percentile, double maxExtraLoad, long minDelayMillis) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be above 0 and at most 100.");
+        }
+        if (maxExtraLoad < 0 || maxExtraLoad > 1) {
+            throw new IllegalArgumentException("maxExtraLoad must be between 0 and 1.");
+        }
+        this.percentile = percentile;
+        this.maxExtraLoad = maxExtraLoad;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, minDelayMillis));
+    }
+
+    /**
+     * getter for percentile
+     *
+     * @return
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * getter for maxExtraLoad
+     *
+     * @return
+     */
+    public double getMaxExtraLoad() {
+        return maxExtraLoad;
+    }
+
+    /**
+     * getter for minDelayMillis
+     *
+     * @return
+     */
+    public long getMinDelayMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(minDelayNanos);
+    }
+
+    /**
+     * Returns current hedging delay, -1 until enough reads were timed.
+     *
+     * @return
+     */
+    public long getDelayMillis() {
+        long delay = delayNanos;
+        return delay < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(delay);
+    }
+
+    /**
+     * getter for number of hedges sent
+     *
+     * @return
+     */
+    public long getHedgedRequests() {
+        return hedgedRequests.get();
+    }
+
+    /**
+     * getter for number of hedges that answered first
+     *
+     * @return
+     */
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    /**
+     * getter for number of hedges not sent because too many were already running
+     *
+     * @return
+     */
+    public long getSkippedHedges() {
+        return skippedHedges.get();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns delay after which a read is hedged, or -1 if it must not be.
+     *
+     * @return
+     */
+    long delayNanos() {
+        return delayNanos;
+    }
+
+    /**
+     * Counts a read, adding to the hedging budget.
+     */
+    synchronized void readStarted() {
+        budget = Math.min(MAX_BURST, budget + maxExtraLoad);
+    }
+
+    /**
+     * Takes a hedge from the budget.
+     *
+     * @return false if the budget is spent
+     */
+    synchronized boolean tryHedge() {
+        if (budget < 1) {
+            return false;
+        }
+        budget -= 1;
+        hedgedRequests.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns a hedge taken by tryHedge but not sent to the budget.
+     */
+    synchronized void hedgeSkipped() {
+        budget = Math.min(MAX_BURST, budget + 1);
+        hedgedRequests.decrementAndGet();
+        skippedHedges.incrementAndGet();
+    }
+
+    void hedgeWon() {
+        hedgeWins.incrementAndGet();
+    }
+
+    /**
+     * Records time from sending a read to its first answer.
+     *
+     * @param nanos
+     */
+    synchronized void recordLatency(long nanos) {
+        latencies[recorded % WINDOW] = nanos;
+        recorded++;
+        if (recorded == Integer.MAX_VALUE) {
+            recorded = WINDOW;
+        }
+        if (recorded >= MIN_SAMPLES && (++sinceRecompute >= RECOMPUTE_INTERVAL || delayNanos < 0)) {
+            sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(latencies, Math.min(recorded, WINDOW));
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+            delayNanos = Math.max(minDelayNanos, sorted[Math.max(0, index)]);
+        }
+    }
+}
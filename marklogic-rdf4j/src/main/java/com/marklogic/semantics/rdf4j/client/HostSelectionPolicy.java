@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the host of a {@link MarkLogicCluster} a request is sent to.
+ *
+ */
+public interface HostSelectionPolicy {
+
+    /**
+     * Picks one of candidates, called concurrently for every request.
+     *
+     * @param candidates available hosts, never empty
+     * @return ClusterHost
+     */
+    ClusterHost select(List<ClusterHost> candidates);
+
+    /**
+     * Returns policy sending each request to the next host in turn.
+     *
+     * @return HostSelectionPolicy
+     */
+    static HostSelectionPolicy roundRobin() {
+        AtomicInteger next = new AtomicInteger();
+        return candidates -> candidates.get((next.getAndIncrement() & Integer.MAX_VALUE) % candidates.size());
+    }
+
+    /**
+     * Returns policy sending each request to the host with fewest requests in flight,
+     * ties going to the earlier host.
+     *
+     * @return HostSelectionPolicy
+     */
+    static HostSelectionPolicy leastOutstandingRequests() {
+        return candidates -> {
+            ClusterHost selected = candidates.get(0);
+            for (ClusterHost host : candidates) {
+                if (host.getOutstandingRequests() < selected.getOutstandingRequests()) {
+                    selected = host;
+                }
+            }
+            return selected;
+        };
+    }
+
+    /**
+     * Returns built in policy by name, either "round-robin" or "least-outstanding".
+     *
+     * @param name
+     * @return HostSelectionPolicy
+     */
+    static HostSelectionPolicy forName(String name) {
+        if (name == null || "round-robin".equalsIgnoreCase(name)) {
+            return roundRobin();
+        } else if ("least-outstanding".equalsIgnoreCase(name)) {
+            return leastOutstandingRequests();
+        }
+        throw new IllegalArgumentException("Unknown host selection policy: " + name);
+    }
+}
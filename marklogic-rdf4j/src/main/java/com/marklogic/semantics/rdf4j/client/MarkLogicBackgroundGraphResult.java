@@ -15,10 +15,13 @@
  */
 package com.marklogic.semantics.rdf4j.client;
 
+import com.marklogic.semantics.rdf4j.utils.SkolemCache;
 import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.impl.BackgroundGraphResult;
 import org.eclipse.rdf4j.query.impl.QueueCursor;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
 import org.eclipse.rdf4j.rio.RDFParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,10 +35,19 @@ import java.nio.charset.Charset;
  *
  */
 
-class MarkLogicBackgroundGraphResult extends BackgroundGraphResult
+class MarkLogicBackgroundGraphResult extends BackgroundGraphResult implements TracedQueryResult
 {
     private static final Logger logger = LoggerFactory.getLogger(MarkLogicBackgroundGraphResult.class);
 
+    private CancellableRequest request;
+
+    // counts results when the response is wrapped for metrics
+    private ResultCounter counter;
+
+    // maps skolem IRIs back to blank nodes when set
+    private SkolemCache skolemCache;
+    private ValueFactory vf;
+
     /**
      *  constructor
      *
@@ -45,7 +57,22 @@ class MarkLogicBackgroundGraphResult extends BackgroundGraphResult
      * @param baseURI
      */
     public MarkLogicBackgroundGraphResult(RDFParser parser, InputStream in, Charset charset, String baseURI) {
+        this(parser, in, charset, baseURI, null);
+    }
+
+    /**
+     *  constructor for results of a cancellable request
+     *
+     * @param parser
+     * @param in
+     * @param charset
+     * @param baseURI
+     * @param request
+     */
+    public MarkLogicBackgroundGraphResult(RDFParser parser, InputStream in, Charset charset, String baseURI, CancellableRequest request) {
         super(parser, in, charset, baseURI);
+        this.request = request;
+        this.counter = in instanceof ResultCounter ? (ResultCounter) in : null;
     }
 
     /**
@@ -61,6 +88,30 @@ class MarkLogicBackgroundGraphResult extends BackgroundGraphResult
         super(queue, parser, in, charset, baseURI);
     }
 
+    /**
+     * setter for the cache mapping skolem IRIs of statements back to blank nodes, set before parsing starts
+     *
+     * @param skolemCache null to return skolem IRIs as they are
+     * @param vf creates statements with blank nodes
+     */
+    void setSkolemCache(SkolemCache skolemCache, ValueFactory vf) {
+        this.skolemCache = skolemCache;
+        this.vf = vf;
+    }
+
+    @Override
+    public void handleStatement(Statement st) throws RDFHandlerException {
+        super.handleStatement(skolemCache != null ? skolemCache.deskolemize(st, vf) : st);
+        if (counter != null) {
+            counter.row();
+        }
+    }
+
+    @Override
+    public RequestTrace getTrace() {
+        return counter != null ? counter.getTrace() : null;
+    }
+
     /**
      * Wrap exception to return false instead of throwing error.
      * Check debug log.
@@ -74,6 +125,9 @@ class MarkLogicBackgroundGraphResult extends BackgroundGraphResult
             return super.hasNext();
 
         }catch(QueryEvaluationException e){
+            if (request != null && request.isCancelled()) {
+                throw request.interrupted(e);
+            }
             logger.info("MarkLogicBackgroundGraphResult hasNext() stream closed");
             return false;
         }
@@ -15,8 +15,10 @@
  */
 package com.marklogic.semantics.rdf4j.client;
 
+import com.marklogic.semantics.rdf4j.utils.SkolemCache;
 import org.eclipse.rdf4j.query.BindingSet;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.TupleQueryResultHandlerException;
 import org.eclipse.rdf4j.query.impl.QueueCursor;
 import org.eclipse.rdf4j.query.resultio.TupleQueryResultParser;
 import org.eclipse.rdf4j.query.resultio.helpers.BackgroundTupleResult;
@@ -30,10 +32,18 @@ import java.io.InputStream;
  *
  *
  */
-class MarkLogicBackgroundTupleResult extends BackgroundTupleResult {
+class MarkLogicBackgroundTupleResult extends BackgroundTupleResult implements TracedQueryResult {
 
     private static final Logger logger = LoggerFactory.getLogger(MarkLogicBackgroundGraphResult.class);
 
+    private CancellableRequest request;
+
+    // counts results when the response is wrapped for metrics
+    private ResultCounter counter;
+
+    // maps skolem IRIs back to blank nodes when set
+    private SkolemCache skolemCache;
+
     /**
      *  constructor
      *
@@ -41,7 +51,20 @@ class MarkLogicBackgroundTupleResult extends BackgroundTupleResult {
      * @param in
      */
     public MarkLogicBackgroundTupleResult(TupleQueryResultParser parser, InputStream in) {
+        this(parser, in, null);
+    }
+
+    /**
+     *  constructor for results of a cancellable request
+     *
+     * @param parser
+     * @param in
+     * @param request
+     */
+    public MarkLogicBackgroundTupleResult(TupleQueryResultParser parser, InputStream in, CancellableRequest request) {
         super(parser, in);
+        this.request = request;
+        this.counter = in instanceof ResultCounter ? (ResultCounter) in : null;
     }
 
     /**
@@ -55,6 +78,28 @@ class MarkLogicBackgroundTupleResult extends BackgroundTupleResult {
         super(queue, parser, in);
     }
 
+    /**
+     * setter for the cache mapping skolem IRIs of solutions back to blank nodes, set before parsing starts
+     *
+     * @param skolemCache null to return skolem IRIs as they are
+     */
+    void setSkolemCache(SkolemCache skolemCache) {
+        this.skolemCache = skolemCache;
+    }
+
+    @Override
+    public void handleSolution(BindingSet bindingSet) throws TupleQueryResultHandlerException {
+        super.handleSolution(skolemCache != null ? skolemCache.deskolemize(bindingSet) : bindingSet);
+        if (counter != null) {
+            counter.row();
+        }
+    }
+
+    @Override
+    public RequestTrace getTrace() {
+        return counter != null ? counter.getTrace() : null;
+    }
+
     /**
      * Wrap exception to return false instead of throwing error.
      * Check debug log.
@@ -66,6 +111,9 @@ class MarkLogicBackgroundTupleResult extends BackgroundTupleResult {
         try {
             return super.hasNext();
         }catch(Exception e){
+            if (request != null && request.isCancelled()) {
+                throw request.interrupted(e);
+            }
             logger.info("MarkLogicBackgroundTupleResult hasNext() stream closed");
             return false;
         }
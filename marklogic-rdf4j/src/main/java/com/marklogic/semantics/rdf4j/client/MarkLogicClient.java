@@ -28,18 +28,25 @@ import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
 import com.marklogic.semantics.rdf4j.MarkLogicTransactionException;
+import com.marklogic.semantics.rdf4j.metrics.MarkLogicMetrics;
+import com.marklogic.semantics.rdf4j.metrics.MarkLogicMetrics.Operation;
+import com.marklogic.semantics.rdf4j.utils.InterningValueFactory;
 import com.marklogic.semantics.rdf4j.utils.Util;
+import org.apache.commons.io.input.CountingInputStream;
 import org.apache.commons.io.input.ReaderInputStream;
 import org.eclipse.rdf4j.http.protocol.UnauthorizedException;
 import org.eclipse.rdf4j.model.*;
 import org.eclipse.rdf4j.query.*;
+import org.eclipse.rdf4j.query.impl.TupleQueryResultBuilder;
 import org.eclipse.rdf4j.query.resultio.QueryResultIO;
 import org.eclipse.rdf4j.query.resultio.TupleQueryResultFormat;
 import org.eclipse.rdf4j.query.resultio.TupleQueryResultParser;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
 import org.eclipse.rdf4j.rio.*;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
 import org.eclipse.rdf4j.rio.helpers.ParseErrorLogger;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,9 +56,14 @@ import java.io.InputStream;
 import java.io.Reader;
 import java.nio.charset.Charset;
 import java.util.Arrays;
-import java.util.Timer;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * An internal class that straddles Rdf4j and MarkLogic Java client API.
@@ -69,7 +81,30 @@ public class MarkLogicClient {
 	protected static final RDFFormat rdfFormat = RDFFormat.NTRIPLES;
 	private MarkLogicClientImpl _client;
 
-	private final Executor executor = Executors.newCachedThreadPool();
+	// shared by all clients, so creating a client per connection does not create threads
+	private static final Executor executor = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "marklogic-rdf4j-worker");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public static final int DEFAULT_ASYNC_THREADS = 32;
+
+	public static final int DEFAULT_ASYNC_QUEUE_SIZE = 1024;
+
+	// runs async queries of all clients, the Java Client API blocks a thread per request so this bounds them
+	private static final ExecutorService defaultAsyncExecutor = newAsyncExecutor(DEFAULT_ASYNC_THREADS);
+
+	private volatile Executor asyncExecutor = defaultAsyncExecutor;
+
+	private volatile SlowOperationLog slowOperationLog;
+
+	private volatile boolean deskolemizeResults;
+
+	private volatile InterningValueFactory.Scope resultInterning;
+
+	// term table of results when interning per client, replaced if the value factory changes
+	private volatile InterningValueFactory clientInterningFactory;
 
 	private ValueFactory f;
 
@@ -77,18 +112,24 @@ public class MarkLogicClient {
 
 	private Transaction tx = null;
 
-	private SPARQLRuleset[] defaultRulesets;
+	private volatile SPARQLRuleset[] defaultRulesets;
+
+	private static final AtomicLong clientIds = new AtomicLong();
+
+	private final long clientId = clientIds.incrementAndGet();
 
 	private TripleWriteCache timerWriteCache;
-	private Timer writeTimer;
+	private TripleCacheManager writeCacheManager;
 	private TripleDeleteCache timerDeleteCache;
-	private Timer deleteTimer;
+	private TripleCacheManager deleteCacheManager;
 
 	private static boolean WRITE_CACHE_ENABLED = true;
 	private static boolean DELETE_CACHE_ENABLED = false;
 
 	private Util util = Util.getInstance();
 
+	private QueryResultCache resultCache;
+
 	/**
 	 * Constructor initialized with connection parameters.
 	 *
@@ -107,6 +148,15 @@ public class MarkLogicClient {
 		this.initTimer();
 	}
 
+	/**
+	 * Constructor initialized with MarkLogicCluster, balancing requests over its hosts.
+	 *
+	 */
+	public MarkLogicClient(MarkLogicCluster cluster) {
+		this._client = new MarkLogicClientImpl(cluster);
+		this.initTimer();
+	}
+
 	/**
 	 * start Timer task (write cache)
 	 */
@@ -115,14 +165,12 @@ public class MarkLogicClient {
 		if(WRITE_CACHE_ENABLED) {
 			logger.debug("configuring write cache with defaults");
 			timerWriteCache = new TripleWriteCache(this);
-			writeTimer = new Timer();
-			writeTimer.scheduleAtFixedRate(timerWriteCache, TripleWriteCache.DEFAULT_INITIAL_DELAY, TripleWriteCache.DEFAULT_CACHE_MILLIS);
+			writeCacheManager = new TripleCacheManager(timerWriteCache, clientId, TripleWriteCache.DEFAULT_INITIAL_DELAY, TripleWriteCache.DEFAULT_CACHE_MILLIS);
 		}
 		if(DELETE_CACHE_ENABLED) {
 			logger.debug("configuring delete cache with defaults");
 			timerDeleteCache = new TripleDeleteCache(this);
-			deleteTimer = new Timer();
-			deleteTimer.scheduleAtFixedRate(timerDeleteCache, TripleDeleteCache.DEFAULT_INITIAL_DELAY, TripleDeleteCache.DEFAULT_CACHE_MILLIS);
+			deleteCacheManager = new TripleCacheManager(timerDeleteCache, clientId, TripleDeleteCache.DEFAULT_INITIAL_DELAY, TripleDeleteCache.DEFAULT_CACHE_MILLIS);
 		}
 	}
 
@@ -131,36 +179,47 @@ public class MarkLogicClient {
 		if(WRITE_CACHE_ENABLED) {
 			logger.debug("configuring write cache");
 			timerWriteCache = new TripleWriteCache(this,cacheSize);
-			writeTimer = new Timer();
-			writeTimer.scheduleAtFixedRate(timerWriteCache, initDelay, delayCache);
+			writeCacheManager = new TripleCacheManager(timerWriteCache, clientId, initDelay, delayCache);
 		}
 		if(DELETE_CACHE_ENABLED) {
 			logger.debug("configuring delete cache");
 			timerDeleteCache = new TripleDeleteCache(this);
-			deleteTimer = new Timer();
-			deleteTimer.scheduleAtFixedRate(timerDeleteCache, initDelay, delayCache);
+			deleteCacheManager = new TripleCacheManager(timerDeleteCache, clientId, initDelay, delayCache);
 		}
 	}
 	/**
 	 * stop Timer task (write cache)
 	 */
 	public void stopTimer() {
-		if(WRITE_CACHE_ENABLED) {
-			if(timerWriteCache != null) {
-				timerWriteCache.cancel();
-			}
-			if(writeTimer != null){
-				writeTimer.cancel();
-			}
-			if(timerDeleteCache != null) {
-				timerDeleteCache.cancel();
-			}
-			if(deleteTimer != null){
-				deleteTimer.cancel();
-			}
+		if(writeCacheManager != null) {
+			writeCacheManager.stop();
+			writeCacheManager = null;
+		}
+		if(deleteCacheManager != null) {
+			deleteCacheManager.stop();
+			deleteCacheManager = null;
 		}
 	}
 
+	/**
+	 * Returns management of the write cache, which is also registered as a platform
+	 * MXBean, null if the timer is stopped.
+	 *
+	 * @return TripleCacheMXBean
+	 */
+	public TripleCacheMXBean getWriteCacheMXBean() {
+		return writeCacheManager;
+	}
+
+	/**
+	 * Returns management of the delete cache, null unless the delete cache is enabled.
+	 *
+	 * @return TripleCacheMXBean
+	 */
+	public TripleCacheMXBean getDeleteCacheMXBean() {
+		return deleteCacheManager;
+	}
+
 	/**
 	 *  Forces write cache to flush triples.
 	 *
@@ -208,17 +267,97 @@ public class MarkLogicClient {
 	 */
 	public TupleQueryResult sendTupleQuery(String queryString,SPARQLQueryBindingSet bindings, long start, long pageLength, boolean includeInferred, String baseURI) throws RepositoryException, MalformedQueryException,
 			QueryInterruptedException {
+		return sendTupleQuery(queryString, bindings, start, pageLength, includeInferred, baseURI, getRequestContext());
+	}
+
+	/**
+	 * TupleQuery with its own rulesets, graph permissions and constraining query.
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param start
+	 * @param pageLength
+	 * @param includeInferred
+	 * @param baseURI
+	 * @param context
+	 * @return
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws QueryInterruptedException
+	 */
+	public TupleQueryResult sendTupleQuery(String queryString,SPARQLQueryBindingSet bindings, long start, long pageLength, boolean includeInferred, String baseURI, MarkLogicRequestContext context) throws RepositoryException, MalformedQueryException,
+			QueryInterruptedException {
+		QueryResultCache cache = this.resultCache;
+		if (cache != null && !isActiveTransaction()) {
+			QueryResultCache.Key key = new QueryResultCache.Key(queryString, bindings, baseURI, context.getRulesets(), context.getConstrainingQueryDefinition(), includeInferred, start, pageLength);
+			TupleQueryResult cached = cache.getTupleResult(key);
+			if (cached != null) {
+				return cached;
+			}
+			long generation = cache.getGeneration();
+			return cache.putTupleResult(key, generation, sendTupleQueryUncached(queryString, bindings, start, pageLength, includeInferred, baseURI, context));
+		}
+		return sendTupleQueryUncached(queryString, bindings, start, pageLength, includeInferred, baseURI, context);
+	}
+
+	private TupleQueryResult sendTupleQueryUncached(String queryString,SPARQLQueryBindingSet bindings, long start, long pageLength, boolean includeInferred, String baseURI, MarkLogicRequestContext requestContext) throws RepositoryException, MalformedQueryException,
+			QueryInterruptedException {
+		MarkLogicRequestContext context = observed(requestContext);
 		InputStream stream = null;
 		try {
-			stream = getClient().performSPARQLQuery(queryString, bindings, start, pageLength, this.tx, includeInferred, baseURI);
+			stream = send(context, Operation.SELECT, queryString, bindings, true, () -> getClient().performSPARQLQuery(queryString, bindings, start, pageLength, this.tx, includeInferred, baseURI, context));
 		} catch (JsonProcessingException e) {
 			logger.error(e.getLocalizedMessage());
 			throw new MarkLogicRdf4jException("Issue processing json.");
+		} catch (IOException e) {
+			throw new MarkLogicRdf4jException(e);
 		}
-		TupleQueryResultParser parser = QueryResultIO.createTupleParser(format, getValueFactory());
-		MarkLogicBackgroundTupleResult tRes = new MarkLogicBackgroundTupleResult(parser,stream);
-		execute(tRes);
-		return tRes;
+		return backgroundTupleResult(count(stream, Operation.SELECT, context), context.getRequest());
+	}
+
+	/**
+	 * Parses a SELECT response in the format this client requests, for responses not
+	 * sent by this client, such as recorded ones. Parsing runs on the client's executor
+	 * as it does for sendTupleQuery.
+	 *
+	 * @param in
+	 * @return
+	 */
+	public TupleQueryResult parseTupleQueryResult(InputStream in) {
+		return backgroundTupleResult(in, null);
+	}
+
+	/**
+	 * TupleQuery fetching pages of pageLength concurrently, at most pageConcurrency at a time.
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param start
+	 * @param pageLength
+	 * @param pageConcurrency
+	 * @param includeInferred
+	 * @param baseURI
+	 * @param context
+	 * @return
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws QueryInterruptedException
+	 */
+	public TupleQueryResult sendParallelTupleQuery(String queryString, SPARQLQueryBindingSet bindings, long start, long pageLength, int pageConcurrency, boolean includeInferred, String baseURI, MarkLogicRequestContext context) throws RepositoryException, MalformedQueryException,
+			QueryInterruptedException {
+		final Transaction pageTx = this.tx;
+		CancellableRequest request = context.getRequest();
+		Runnable onClose = null;
+		if (request != null) {
+			// pages are separate exchanges, the deadline covers all of them until the result is closed
+			request.hold();
+			onClose = request::end;
+		}
+		// pages are separate requests, so are not traced
+		MarkLogicRequestContext pageContext = context.withTrace(null);
+		return new MarkLogicParallelTupleResult(
+				(pageStart, length) -> fetchTuplePage(queryString, bindings, pageStart, length, pageTx, includeInferred, baseURI, pageContext),
+				executor, start, pageLength, pageConcurrency, onClose);
 	}
 
 	/**
@@ -232,24 +371,106 @@ public class MarkLogicClient {
 	 * @throws IOException
 	 */
 	public GraphQueryResult sendGraphQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws IOException, MarkLogicRdf4jException {
-		InputStream stream = getClient().performGraphQuery(queryString, bindings, this.tx, includeInferred, baseURI);
+		return sendGraphQuery(queryString, bindings, includeInferred, baseURI, getRequestContext());
+	}
 
-		RDFParser parser = Rio.createParser(rdfFormat, getValueFactory());
-		parser.setParserConfig(getParserConfig());
-		parser.setParseErrorListener(new ParseErrorLogger());
-		parser.setPreserveBNodeIDs(true);
+	/**
+	 * GraphQuery with its own rulesets, graph permissions and constraining query.
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param includeInferred
+	 * @param baseURI
+	 * @param requestContext
+	 * @return
+	 * @throws IOException
+	 */
+	public GraphQueryResult sendGraphQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI, MarkLogicRequestContext requestContext) throws IOException, MarkLogicRdf4jException {
+		MarkLogicRequestContext context = observed(requestContext);
+		InputStream stream = count(send(context, Operation.CONSTRUCT, queryString, bindings, true, () -> getClient().performGraphQuery(queryString, bindings, this.tx, includeInferred, baseURI, context)), Operation.CONSTRUCT, context);
 
-		MarkLogicBackgroundGraphResult gRes;
+		return backgroundGraphResult(stream, baseURI, context.getRequest());
+	}
 
-		// fixup - baseURI cannot be null
-		if(baseURI != null){
-			gRes= new MarkLogicBackgroundGraphResult(parser,stream,charset,baseURI);
-		}else{
-			gRes= new MarkLogicBackgroundGraphResult(parser,stream,charset,"");
-		}
+	/**
+	 * Parses a CONSTRUCT response in the format this client requests, for responses not
+	 * sent by this client, such as recorded ones. Parsing runs on the client's executor
+	 * as it does for sendGraphQuery.
+	 *
+	 * @param in
+	 * @param baseURI
+	 * @return
+	 */
+	public GraphQueryResult parseGraphQueryResult(InputStream in, String baseURI) {
+		return backgroundGraphResult(in, baseURI, null);
+	}
 
-		execute(gRes);
-		return gRes;
+	/**
+	 * TupleQuery publishing its solutions as the subscriber requests them, sent once per subscription.
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param start
+	 * @param pageLength
+	 * @param includeInferred
+	 * @param baseURI
+	 * @param contexts starts the request of each subscription
+	 * @return
+	 */
+	public Publisher<BindingSet> publishTupleQuery(String queryString, SPARQLQueryBindingSet bindings, long start, long pageLength, boolean includeInferred, String baseURI, Supplier<MarkLogicRequestContext> contexts) {
+		return new MarkLogicResultPublisher<>(executor, contexts, (requestContext, sink) -> {
+			MarkLogicRequestContext context = observed(requestContext);
+			try (ResultCounter stream = count(send(context, Operation.SELECT, queryString, bindings, true, () -> getClient().performSPARQLQuery(queryString, bindings, start, pageLength, this.tx, includeInferred, baseURI, context)), Operation.SELECT, context)) {
+				TupleQueryResultParser parser = QueryResultIO.createTupleParser(format, resultValueFactory());
+				parser.setQueryResultHandler(new AbstractTupleQueryResultHandler() {
+					@Override
+					public void handleSolution(BindingSet bindingSet) throws TupleQueryResultHandlerException {
+						stream.row();
+						try {
+							sink.accept(deskolemized(bindingSet));
+						} catch (InterruptedException e) {
+							throw new TupleQueryResultHandlerException(e);
+						}
+					}
+				});
+				parser.parseQueryResult(stream);
+			}
+		});
+	}
+
+	/**
+	 * GraphQuery publishing its statements as the subscriber requests them, sent once per subscription.
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param includeInferred
+	 * @param baseURI
+	 * @param contexts starts the request of each subscription
+	 * @return
+	 */
+	public Publisher<Statement> publishGraphQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI, Supplier<MarkLogicRequestContext> contexts) {
+		return new MarkLogicResultPublisher<>(executor, contexts, (requestContext, sink) -> {
+			MarkLogicRequestContext context = observed(requestContext);
+			try (ResultCounter stream = count(send(context, Operation.CONSTRUCT, queryString, bindings, true, () -> getClient().performGraphQuery(queryString, bindings, this.tx, includeInferred, baseURI, context)), Operation.CONSTRUCT, context)) {
+				RDFParser parser = Rio.createParser(rdfFormat, resultValueFactory());
+				parser.setParserConfig(getParserConfig());
+				parser.setParseErrorListener(new ParseErrorLogger());
+				parser.setPreserveBNodeIDs(true);
+				parser.setRDFHandler(new AbstractRDFHandler() {
+					@Override
+					public void handleStatement(Statement st) throws RDFHandlerException {
+						stream.row();
+						try {
+							sink.accept(deskolemized(st));
+						} catch (InterruptedException e) {
+							throw new RDFHandlerException(e);
+						}
+					}
+				});
+				// fixup - baseURI cannot be null
+				parser.parse(stream, baseURI != null ? baseURI : "");
+			}
+		});
 	}
 
 	/**
@@ -268,7 +489,39 @@ public class MarkLogicClient {
 	 */
 	public boolean sendBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws IOException, RepositoryException, MalformedQueryException,
 			QueryInterruptedException {
-		return getClient().performBooleanQuery(queryString, bindings, this.tx, includeInferred, baseURI);
+		return sendBooleanQuery(queryString, bindings, includeInferred, baseURI, getRequestContext());
+	}
+
+	/**
+	 * BooleanQuery with its own rulesets, graph permissions and constraining query.
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param includeInferred
+	 * @param baseURI
+	 * @param requestContext
+	 * @return
+	 * @throws IOException
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws QueryInterruptedException
+	 */
+	public boolean sendBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI, MarkLogicRequestContext requestContext) throws IOException, RepositoryException, MalformedQueryException,
+			QueryInterruptedException {
+		MarkLogicRequestContext context = observed(requestContext);
+		QueryResultCache cache = this.resultCache;
+		if (cache != null && !isActiveTransaction()) {
+			QueryResultCache.Key key = new QueryResultCache.Key(queryString, bindings, baseURI, context.getRulesets(), context.getConstrainingQueryDefinition(), includeInferred, 0, 0);
+			Boolean cached = cache.getBooleanResult(key);
+			if (cached != null) {
+				return cached;
+			}
+			long generation = cache.getGeneration();
+			boolean result = send(context, Operation.ASK, queryString, bindings, false, () -> getClient().performBooleanQuery(queryString, bindings, this.tx, includeInferred, baseURI, context));
+			cache.putBooleanResult(key, generation, result);
+			return result;
+		}
+		return send(context, Operation.ASK, queryString, bindings, false, () -> getClient().performBooleanQuery(queryString, bindings, this.tx, includeInferred, baseURI, context));
 	}
 
 	/**
@@ -285,7 +538,45 @@ public class MarkLogicClient {
 	 * @throws UpdateExecutionException
 	 */
 	public void sendUpdateQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI) throws IOException, RepositoryException, MalformedQueryException,UpdateExecutionException {
-		getClient().performUpdateQuery(queryString, bindings, this.tx, includeInferred, baseURI);
+		sendUpdateQuery(queryString, bindings, includeInferred, baseURI, getRequestContext());
+	}
+
+	/**
+	 * UpdateQuery with its own rulesets and graph permissions.
+	 *
+	 * @param queryString
+	 * @param bindings
+	 * @param includeInferred
+	 * @param baseURI
+	 * @param requestContext
+	 * @throws IOException
+	 * @throws RepositoryException
+	 * @throws MalformedQueryException
+	 * @throws UpdateExecutionException
+	 */
+	public void sendUpdateQuery(String queryString, SPARQLQueryBindingSet bindings, boolean includeInferred, String baseURI, MarkLogicRequestContext requestContext) throws IOException, RepositoryException, MalformedQueryException,UpdateExecutionException {
+		MarkLogicRequestContext context = observed(requestContext);
+		try {
+			send(context, Operation.UPDATE, queryString, bindings, false, () -> {
+				getClient().performUpdateQuery(queryString, bindings, this.tx, includeInferred, baseURI, context);
+				return null;
+			});
+		} finally {
+			invalidateResultCache();
+		}
+	}
+
+	/**
+	 * Sends the update flushing a write cache, which the cache itself reports to the slow operation log.
+	 *
+	 * @param queryString
+	 */
+	void sendCacheUpdate(String queryString) {
+		try {
+			getClient().performUpdateQuery(queryString, new SPARQLQueryBindingSet(), this.tx, false, null, getRequestContext());
+		} finally {
+			invalidateResultCache();
+		}
 	}
 
 	/**
@@ -299,7 +590,15 @@ public class MarkLogicClient {
 	 */
 	public void sendAdd(File file, String baseURI, RDFFormat dataFormat, Resource... contexts) throws RDFParseException {
         if(util.isFormatSupported(dataFormat)) {
-            getClient().performAdd(file, baseURI, dataFormat, this.tx, contexts);
+            long started = System.nanoTime();
+            boolean failed = true;
+            try {
+                getClient().performAdd(file, baseURI, dataFormat, this.tx, contexts);
+                failed = false;
+            } finally {
+                invalidateResultCache();
+                added(file.getPath(), dataFormat, file.length(), started, failed);
+            }
         }
         else
         {
@@ -317,7 +616,11 @@ public class MarkLogicClient {
 	 */
 	public void sendAdd(InputStream in, String baseURI, RDFFormat dataFormat, Resource... contexts) throws RDFParseException, MarkLogicRdf4jException {
         if(util.isFormatSupported(dataFormat)) {
-            getClient().performAdd(in, baseURI, dataFormat, this.tx, contexts);
+            try {
+                sendAddStream(in, baseURI, dataFormat, "InputStream", contexts);
+            } finally {
+                invalidateResultCache();
+            }
         }
         else
         {
@@ -336,7 +639,11 @@ public class MarkLogicClient {
 	public void sendAdd(Reader in, String baseURI, RDFFormat dataFormat, Resource... contexts) throws RDFParseException, MarkLogicRdf4jException {
         if(util.isFormatSupported(dataFormat)) {
             //TBD- must deal with char encoding
-            getClient().performAdd(new ReaderInputStream(in, Charset.defaultCharset()), baseURI, dataFormat, this.tx, contexts);
+            try {
+                sendAddStream(new ReaderInputStream(in, Charset.defaultCharset()), baseURI, dataFormat, "Reader", contexts);
+            } finally {
+                invalidateResultCache();
+            }
         }
         else
         {
@@ -355,9 +662,14 @@ public class MarkLogicClient {
 	 */
 	public void sendAdd(String baseURI, Resource subject, IRI predicate, Value object, Resource... contexts) throws MarkLogicRdf4jException {
 		if (WRITE_CACHE_ENABLED) {
+			// cached results are dropped once the write cache flushes
 			timerWriteCache.add((Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), contexts);
 		} else {
-			getClient().performAdd(baseURI, (Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), this.tx, contexts);
+			try {
+				getClient().performAdd(baseURI, (Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), this.tx, contexts);
+			} finally {
+				invalidateResultCache();
+			}
 		}
 	}
 
@@ -372,11 +684,16 @@ public class MarkLogicClient {
 	 */
 	public void sendRemove(String baseURI, Resource subject, IRI predicate, Value object, Resource... contexts) throws MarkLogicRdf4jException {
 		if (DELETE_CACHE_ENABLED) {
+			// cached results are dropped once the delete cache flushes
 			timerDeleteCache.add((Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), contexts);
 		} else {
 			if (WRITE_CACHE_ENABLED)
 				sync();
-			getClient().performRemove(baseURI, (Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), this.tx, contexts);
+			try {
+				getClient().performRemove(baseURI, (Resource) util.skolemize(subject), (IRI) util.skolemize(predicate), util.skolemize(object), this.tx, contexts);
+			} finally {
+				invalidateResultCache();
+			}
 		}
 	}
 
@@ -386,7 +703,11 @@ public class MarkLogicClient {
 	 * @param contexts
 	 */
 	public void sendClear(Resource... contexts) throws MarkLogicRdf4jException {
-		getClient().performClear(this.tx, contexts);
+		try {
+			getClient().performClear(this.tx, contexts);
+		} finally {
+			invalidateResultCache();
+		}
 	}
 
 	/**
@@ -394,7 +715,11 @@ public class MarkLogicClient {
 	 *
 	 */
 	public void sendClearAll() throws MarkLogicRdf4jException {
-		getClient().performClearAll(this.tx);
+		try {
+			getClient().performClearAll(this.tx);
+		} finally {
+			invalidateResultCache();
+		}
 	}
 
 	/**
@@ -405,7 +730,7 @@ public class MarkLogicClient {
 	public void openTransaction() throws MarkLogicTransactionException {
 		if (!isActiveTransaction()) {
 			try {
-                this.tx = getClient().getDatabaseClient().openTransaction();
+                this.tx = getClient().openTransaction();
             }
             catch (ForbiddenUserException e)
             {
@@ -427,6 +752,7 @@ public class MarkLogicClient {
 				sync();
 				this.tx.commit();
 				this.tx=null;
+				invalidateResultCache();
 			} catch (MarkLogicRdf4jException e) {
 				logger.error(e.getLocalizedMessage());
 				throw new MarkLogicTransactionException(e);
@@ -450,6 +776,7 @@ public class MarkLogicClient {
 			}
 			this.tx.rollback();
 			this.tx = null;
+			invalidateResultCache();
 		}else{
 			throw new MarkLogicTransactionException("No active transaction to rollback.");
 		}
@@ -505,25 +832,46 @@ public class MarkLogicClient {
 	 * @param rulesets
 	 */
 	public void setRulesets(SPARQLRuleset... rulesets){
-	    if(this.defaultRulesets != null)
+		getClient().setRulesets(withDefaultRulesets(rulesets));
+	}
+
+	/**
+	 * Returns rulesets followed by the default rulesets, if any.
+	 *
+	 * @param rulesets
+	 * @return
+	 */
+	public SPARQLRuleset[] withDefaultRulesets(SPARQLRuleset... rulesets){
+		SPARQLRuleset[] defaults = this.defaultRulesets;
+	    if(defaults != null)
         {
             if(rulesets != null)
             {
-                SPARQLRuleset[] resultantRuleset = Arrays.copyOf(rulesets, rulesets.length + defaultRulesets.length);
-                System.arraycopy(defaultRulesets, 0, resultantRuleset, rulesets.length, defaultRulesets.length);
-                getClient().setRulesets(resultantRuleset);
+                SPARQLRuleset[] resultantRuleset = Arrays.copyOf(rulesets, rulesets.length + defaults.length);
+                System.arraycopy(defaults, 0, resultantRuleset, rulesets.length, defaults.length);
+                return resultantRuleset;
             }
             else
             {
-                getClient().setRulesets(this.defaultRulesets);
+                return defaults;
             }
         }
         else
         {
-            getClient().setRulesets(rulesets);
+            return rulesets;
         }
 	}
 
+	/**
+	 * Returns the client level rulesets, graph permissions and constraining query,
+	 * used by requests that do not carry their own.
+	 *
+	 * @return
+	 */
+	public MarkLogicRequestContext getRequestContext(){
+		return new MarkLogicRequestContext(getRulesets(), getGraphPerms(), getConstrainingQueryDefinition());
+	}
+
 	/**
 	 * getter for Rulesets
 	 *
@@ -587,6 +935,147 @@ public class MarkLogicClient {
 		return _client.getDatabaseClient().newGraphManager().newGraphPermissions();
 	}
 
+	/**
+	 * setter for the query result cache, null disables caching.
+	 *
+	 * @param resultCache
+	 */
+	public void setResultCache(QueryResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	/**
+	 * getter for the query result cache
+	 *
+	 * @return
+	 */
+	public QueryResultCache getResultCache() {
+		return this.resultCache;
+	}
+
+	/**
+	 * getter for the executor running async queries
+	 *
+	 * @return
+	 */
+	public Executor getAsyncExecutor() {
+		return asyncExecutor;
+	}
+
+	/**
+	 * setter for the executor running async queries, null restores the shared default
+	 * of DEFAULT_ASYNC_THREADS threads.
+	 *
+	 * @param asyncExecutor
+	 */
+	public void setAsyncExecutor(Executor asyncExecutor) {
+		this.asyncExecutor = asyncExecutor == null ? defaultAsyncExecutor : asyncExecutor;
+	}
+
+	/**
+	 * Returns a pool of daemon threads for async queries, queueing up to DEFAULT_ASYNC_QUEUE_SIZE
+	 * queries while all threads are busy.
+	 *
+	 * @param threads
+	 * @return
+	 */
+	public static ExecutorService newAsyncExecutor(int threads) {
+		return newAsyncExecutor(threads, DEFAULT_ASYNC_QUEUE_SIZE);
+	}
+
+	/**
+	 * Returns a pool of daemon threads for async queries, queueing up to queueSize queries while
+	 * all threads are busy and rejecting queries beyond that, which then complete exceptionally
+	 * with RejectedExecutionException.
+	 *
+	 * @param threads
+	 * @param queueSize
+	 * @return
+	 */
+	public static ExecutorService newAsyncExecutor(int threads, int queueSize) {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+			Thread thread = new Thread(runnable, "marklogic-rdf4j-async");
+			thread.setDaemon(true);
+			return thread;
+		}, new ThreadPoolExecutor.AbortPolicy());
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	/**
+	 * getter for metrics
+	 *
+	 * @return
+	 */
+	public MarkLogicMetrics getMetrics() {
+		return getClient().getMetrics();
+	}
+
+	/**
+	 * setter for metrics receiving measurements of requests and write caches, null discards them.
+	 *
+	 * @param metrics
+	 */
+	public void setMetrics(MarkLogicMetrics metrics) {
+		getClient().setMetrics(metrics);
+	}
+
+	/**
+	 * getter for the slow operation log, null if slow operations are not logged
+	 *
+	 * @return
+	 */
+	public SlowOperationLog getSlowOperationLog() {
+		return slowOperationLog;
+	}
+
+	/**
+	 * setter for the slow operation log, which traces every query and update of this client.
+	 *
+	 * @param slowOperationLog null to not log slow operations
+	 */
+	public void setSlowOperationLog(SlowOperationLog slowOperationLog) {
+		this.slowOperationLog = slowOperationLog;
+	}
+
+	/**
+	 * getter for deskolemizeResults
+	 *
+	 * @return
+	 */
+	public boolean isDeskolemizeResults() {
+		return deskolemizeResults;
+	}
+
+	/**
+	 * setter for deskolemizeResults, if true query results return blank nodes in place of
+	 * the skolem IRIs they are stored as, the blank nodes added through this JVM where cached.
+	 *
+	 * @param deskolemizeResults
+	 */
+	public void setDeskolemizeResults(boolean deskolemizeResults) {
+		this.deskolemizeResults = deskolemizeResults;
+	}
+
+	/**
+	 * getter for resultInterning
+	 *
+	 * @return
+	 */
+	public InterningValueFactory.Scope getResultInterning() {
+		return resultInterning;
+	}
+
+	/**
+	 * setter for resultInterning, if set query results are parsed with an {@link InterningValueFactory}
+	 * so terms repeated in them share one instance, with a term table per result or for the client.
+	 *
+	 * @param resultInterning null to create every value with the value factory
+	 */
+	public void setResultInterning(InterningValueFactory.Scope resultInterning) {
+		this.resultInterning = resultInterning;
+	}
+
 	/**
 	 * Execute command.
 	 * @param command
@@ -600,6 +1089,213 @@ public class MarkLogicClient {
 	// private ////////////////////////////////////////////////////////////////////////////////////
 	///////////////////////////////////////////////////////////////////////////////////////////////
 
+	/**
+	 * Drops cached query results, called once any write issued by this client completed or failed,
+	 * so queries sent during the write don't store results read before it.
+	 */
+	private void invalidateResultCache() {
+		QueryResultCache cache = this.resultCache;
+		if (cache != null) {
+			cache.invalidateAll();
+		}
+	}
+
+	/**
+	 * Returns context traced for the slow operation log, if there is one.
+	 *
+	 * @param context
+	 * @return
+	 */
+	private MarkLogicRequestContext observed(MarkLogicRequestContext context) {
+		SlowOperationLog log = this.slowOperationLog;
+		if (log == null) {
+			return context;
+		}
+		RequestTrace trace = context.getTrace();
+		if (trace == null) {
+			trace = new RequestTrace(null);
+			context = context.withTrace(trace);
+		}
+		trace.observe(log);
+		return context;
+	}
+
+	/**
+	 * Wraps a response stream, reporting its bytes and results to metrics and the trace of context when closed.
+	 *
+	 * @param stream
+	 * @param operation
+	 * @param context
+	 * @return
+	 */
+	private ResultCounter count(InputStream stream, Operation operation, MarkLogicRequestContext context) {
+		return new ResultCounter(stream, getMetrics(), operation, context.getTrace());
+	}
+
+	/**
+	 * Returns the value factory for parsing a query result, interning if resultInterning is set.
+	 *
+	 * @return
+	 */
+	private ValueFactory resultValueFactory() {
+		InterningValueFactory.Scope scope = this.resultInterning;
+		ValueFactory vf = getValueFactory();
+		if (scope == null) {
+			return vf;
+		}
+		if (scope == InterningValueFactory.Scope.RESULT) {
+			return new InterningValueFactory(vf, InterningValueFactory.DEFAULT_INITIAL_TABLE_SIZE, InterningValueFactory.DEFAULT_TABLE_SIZE);
+		}
+		InterningValueFactory interning = this.clientInterningFactory;
+		if (interning == null || interning.getDelegate() != vf) {
+			interning = new InterningValueFactory(vf);
+			this.clientInterningFactory = interning;
+		}
+		return interning;
+	}
+
+	private BindingSet deskolemized(BindingSet bindingSet) {
+		return deskolemizeResults ? util.getSkolemCache().deskolemize(bindingSet) : bindingSet;
+	}
+
+	private Statement deskolemized(Statement st) {
+		return deskolemizeResults ? util.getSkolemCache().deskolemize(st, getValueFactory()) : st;
+	}
+
+	/**
+	 * Starts parsing a SELECT response in the background.
+	 *
+	 * @param in
+	 * @param request null unless the response is of a cancellable request
+	 * @return
+	 */
+	private MarkLogicBackgroundTupleResult backgroundTupleResult(InputStream in, CancellableRequest request) {
+		TupleQueryResultParser parser = QueryResultIO.createTupleParser(format, resultValueFactory());
+		MarkLogicBackgroundTupleResult tRes = new MarkLogicBackgroundTupleResult(parser, in, request);
+		if (deskolemizeResults) {
+			tRes.setSkolemCache(util.getSkolemCache());
+		}
+		execute(tRes);
+		return tRes;
+	}
+
+	/**
+	 * Starts parsing a CONSTRUCT response in the background.
+	 *
+	 * @param in
+	 * @param baseURI
+	 * @param request null unless the response is of a cancellable request
+	 * @return
+	 */
+	private MarkLogicBackgroundGraphResult backgroundGraphResult(InputStream in, String baseURI, CancellableRequest request) {
+		RDFParser parser = Rio.createParser(rdfFormat, resultValueFactory());
+		parser.setParserConfig(getParserConfig());
+		parser.setParseErrorListener(new ParseErrorLogger());
+		parser.setPreserveBNodeIDs(true);
+
+		// fixup - baseURI cannot be null
+		MarkLogicBackgroundGraphResult gRes = new MarkLogicBackgroundGraphResult(parser, in, charset, baseURI != null ? baseURI : "", request);
+		if (deskolemizeResults) {
+			gRes.setSkolemCache(util.getSkolemCache(), getValueFactory());
+		}
+		execute(gRes);
+		return gRes;
+	}
+
+	/**
+	 * Sends a request, timing it if context is traced. Traces of streamed responses complete when
+	 * the stream is closed, others once the response is received.
+	 *
+	 * @param context
+	 * @param operation
+	 * @param queryString
+	 * @param bindings
+	 * @param streamed
+	 * @param request
+	 * @return
+	 * @throws IOException
+	 */
+	private static <T> T send(MarkLogicRequestContext context, Operation operation, String queryString, SPARQLQueryBindingSet bindings, boolean streamed, Request<T> request) throws IOException {
+		RequestTrace trace = context.getTrace();
+		if (trace == null) {
+			return request.send();
+		}
+		trace.sent(operation, queryString, bindings, context.getRulesets());
+		boolean failed = true;
+		try {
+			T result = request.send();
+			trace.responseStarted();
+			failed = false;
+			return result;
+		} finally {
+			if (failed) {
+				trace.complete(0, 0, true);
+			} else if (!streamed) {
+				trace.complete(0, 0, false);
+			}
+		}
+	}
+
+	/**
+	 * One request to the server, see send.
+	 *
+	 * @param <T>
+	 */
+	private interface Request<T> {
+		T send() throws IOException;
+	}
+
+	/**
+	 * Adds triples from a stream, counting its bytes for the slow operation log.
+	 *
+	 * @param in
+	 * @param baseURI
+	 * @param dataFormat
+	 * @param source
+	 * @param contexts
+	 */
+	private void sendAddStream(InputStream in, String baseURI, RDFFormat dataFormat, String source, Resource... contexts) {
+		if (slowOperationLog == null) {
+			getClient().performAdd(in, baseURI, dataFormat, this.tx, contexts);
+			return;
+		}
+		CountingInputStream counted = new CountingInputStream(in);
+		long started = System.nanoTime();
+		boolean failed = true;
+		try {
+			getClient().performAdd(counted, baseURI, dataFormat, this.tx, contexts);
+			failed = false;
+		} finally {
+			added(source, dataFormat, counted.getByteCount(), started, failed);
+		}
+	}
+
+	private void added(String source, RDFFormat dataFormat, long bytes, long started, boolean failed) {
+		SlowOperationLog log = this.slowOperationLog;
+		if (log != null) {
+			log.added(source, dataFormat, bytes, System.nanoTime() - started, failed);
+		}
+	}
+
+	/**
+	 * Reads a single page of tuple results fully, releasing the response.
+	 *
+	 * @return
+	 */
+	private TupleQueryResult fetchTuplePage(String queryString, SPARQLQueryBindingSet bindings, long start, long pageLength, Transaction pageTx, boolean includeInferred, String baseURI, MarkLogicRequestContext context) throws IOException {
+		try (ResultCounter stream = count(getClient().performSPARQLQuery(queryString, bindings, start, pageLength, pageTx, includeInferred, baseURI, context), Operation.SELECT, context)) {
+			TupleQueryResultBuilder builder = new TupleQueryResultBuilder() {
+				@Override
+				public void handleSolution(BindingSet bindingSet) throws TupleQueryResultHandlerException {
+					stream.row();
+					super.handleSolution(deskolemized(bindingSet));
+				}
+			};
+			QueryResultIO.parseTuple(stream, format, builder, resultValueFactory());
+			return builder.getQueryResult();
+		}
+	}
+
 	/**
 	 *
 	 * @return
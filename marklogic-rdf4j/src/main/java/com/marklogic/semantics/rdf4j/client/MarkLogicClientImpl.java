@@ -23,18 +23,30 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import com.marklogic.semantics.rdf4j.utils.Util;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Literal;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
 import org.eclipse.rdf4j.query.Binding;
+import org.eclipse.rdf4j.query.QueryInterruptedException;
 import org.eclipse.rdf4j.repository.RepositoryException;
+import org.eclipse.rdf4j.repository.sparql.query.QueryStringUtil;
 import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFParseException;
@@ -58,6 +70,8 @@ import com.marklogic.client.semantics.SPARQLQueryDefinition;
 import com.marklogic.client.semantics.SPARQLQueryManager;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
+import com.marklogic.semantics.rdf4j.metrics.MarkLogicMetrics;
+import com.marklogic.semantics.rdf4j.metrics.MarkLogicMetrics.Operation;
 
 /**
  * Internal class for interacting with Java Client API.
@@ -70,16 +84,42 @@ class MarkLogicClientImpl {
 
     private static final String DEFAULT_GRAPH_URI = "http://marklogic.com/semantics#default-graph";
 
-    private SPARQLRuleset[] ruleset;
-    private QueryDefinition constrainingQueryDef;
-    private GraphPermissions graphPerms;
+    // hedges sent at once across all clients, a hedge finding no free thread is skipped
+    static final int MAX_CONCURRENT_HEDGES = 8;
 
-    private SPARQLQueryManager sparqlManager;
-    private GraphManager graphManager;
+    private static final ThreadPoolExecutor hedgeExecutor = new ThreadPoolExecutor(0, MAX_CONCURRENT_HEDGES,
+            60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "marklogic-rdf4j-hedged-read");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    private DatabaseClient databaseClient;
+    // fires the hedges of reads still running after the hedging delay
+    private static final ScheduledThreadPoolExecutor hedgeTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "marklogic-rdf4j-hedge-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    private Util util = Util.getInstance();
+    static {
+        hedgeTimer.setRemoveOnCancelPolicy(true);
+    }
+
+    // client level settings, used by writes; queries carry their own in a MarkLogicRequestContext
+    private volatile SPARQLRuleset[] ruleset;
+    private volatile QueryDefinition constrainingQueryDef;
+    private volatile GraphPermissions graphPerms;
+
+    private final MarkLogicCluster cluster;
+
+    // managers hold per request state (page length, mimetype), so each client has its own per host
+    private final SPARQLQueryManager[] sparqlManagers;
+    private final GraphManager[] graphManagers;
+
+    // host the active transaction was opened on, requests in the transaction must go there
+    private volatile ClusterHost transactionHost;
+
+    private volatile MarkLogicMetrics metrics = MarkLogicMetrics.NOOP;
 
     /**
      * Constructor initialized with connection parameters.
@@ -91,7 +131,7 @@ class MarkLogicClientImpl {
      * @param auth
      */
     public MarkLogicClientImpl(String host, int port, String user, String password, String database, String auth) {
-        setDatabaseClient(util.getClientBasedOnAuth(host, port, user, password, database, auth));
+        this(Util.getInstance().getClientBasedOnAuth(host, port, user, password, database, auth));
     }
 
     /**
@@ -100,27 +140,54 @@ class MarkLogicClientImpl {
      * @param databaseClient
      */
     public MarkLogicClientImpl(DatabaseClient databaseClient) {
-        setDatabaseClient(databaseClient);
+        this(new MarkLogicCluster(Collections.singletonList(databaseClient)));
     }
 
     /**
-     * set databaseclient and instantiate related managers.
+     * set cluster and instantiate related managers for each host.
      *
-     * @param databaseClient
+     * @param cluster
      */
-    private void setDatabaseClient(DatabaseClient databaseClient) {
-        this.databaseClient = databaseClient;
-        this.sparqlManager = getDatabaseClient().newSPARQLQueryManager();
-        this.graphManager = getDatabaseClient().newGraphManager();
+    public MarkLogicClientImpl(MarkLogicCluster cluster) {
+        this.cluster = cluster;
+        List<ClusterHost> hosts = cluster.getHosts();
+        this.sparqlManagers = new SPARQLQueryManager[hosts.size()];
+        this.graphManagers = new GraphManager[hosts.size()];
+        for (ClusterHost host : hosts) {
+            this.sparqlManagers[host.getIndex()] = host.getDatabaseClient().newSPARQLQueryManager();
+            this.graphManagers[host.getIndex()] = host.getDatabaseClient().newGraphManager();
+        }
     }
 
     /**
-     * gets database client
+     * gets database client, of the first host if there are several
      *
      * @return DatabaseClient
      */
     public DatabaseClient getDatabaseClient() {
-        return this.databaseClient;
+        return this.cluster.getPrimaryHost().getDatabaseClient();
+    }
+
+    /**
+     * gets cluster
+     *
+     * @return MarkLogicCluster
+     */
+    public MarkLogicCluster getCluster() {
+        return this.cluster;
+    }
+
+    /**
+     * Opens a transaction on a selected host, which then serves all requests in the transaction.
+     *
+     * @return Transaction
+     */
+    public Transaction openTransaction() {
+        return cluster.execute(null, true, host -> {
+            Transaction tx = host.getDatabaseClient().openTransaction();
+            this.transactionHost = host;
+            return tx;
+        });
     }
 
     /**
@@ -133,11 +200,12 @@ class MarkLogicClientImpl {
      * @param tx
      * @param includeInferred
      * @param baseURI
+     * @param context
      * @return
      * @throws JsonProcessingException
      */
-    public InputStream performSPARQLQuery(String queryString, SPARQLQueryBindingSet bindings, long start, long pageLength, Transaction tx, boolean includeInferred, String baseURI) throws JsonProcessingException {
-        return performSPARQLQuery(queryString, bindings, new InputStreamHandle(), start, pageLength, tx, includeInferred, baseURI);
+    public InputStream performSPARQLQuery(String queryString, SPARQLQueryBindingSet bindings, long start, long pageLength, Transaction tx, boolean includeInferred, String baseURI, MarkLogicRequestContext context) throws JsonProcessingException {
+        return performSPARQLQuery(queryString, bindings, new InputStreamHandle(), start, pageLength, tx, includeInferred, baseURI, context);
     }
 
     /**
@@ -151,29 +219,26 @@ class MarkLogicClientImpl {
      * @param tx
      * @param includeInferred
      * @param baseURI
+     * @param context
      * @return
      * @throws JsonProcessingException
      */
-    public InputStream performSPARQLQuery(String queryString, SPARQLQueryBindingSet bindings, InputStreamHandle handle, long start, long pageLength, Transaction tx, boolean includeInferred, String baseURI) throws JsonProcessingException {
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
-        if(Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
-        if (Util.notNull(ruleset) && includeInferred){qdef.setRulesets(ruleset);}
-        if (Util.notNull(getConstrainingQueryDefinition())) {
-        	qdef.setConstrainingQueryDefinition(getConstrainingQueryDefinition());
-            qdef.setDirectory(getConstrainingQueryDefinition().getDirectory());
-            qdef.setCollections(getConstrainingQueryDefinition().getCollections());
-            qdef.setResponseTransform(getConstrainingQueryDefinition().getResponseTransform());
-            qdef.setOptionsName(getConstrainingQueryDefinition().getOptionsName());
-        }
-        qdef.setIncludeDefaultRulesets(includeInferred);
-        if(Util.notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
-        if(pageLength > 0){
-            sparqlManager.setPageLength(pageLength);
-        }else{
-            sparqlManager.clearPageLength();
-        }
-        sparqlManager.executeSelect(qdef, handle, start, tx);
-        return new BufferedInputStream(handle.get());
+    public InputStream performSPARQLQuery(String queryString, SPARQLQueryBindingSet bindings, InputStreamHandle handle, long start, long pageLength, Transaction tx, boolean includeInferred, String baseURI, MarkLogicRequestContext context) throws JsonProcessingException {
+        return measure(Operation.SELECT, () -> read(tx, context, handle, (host, attempt, attemptHandle) -> {
+            SPARQLQueryDefinition qdef = newQueryDefinition(queryString, bindings, baseURI, includeInferred, attempt);
+            if(pageLength > 0){
+                // page length is manager state, so paged requests get their own manager
+                // to allow several pages of the same query to be in flight at once
+                SPARQLQueryManager pageManager = host.getDatabaseClient().newSPARQLQueryManager();
+                pageManager.setPageLength(pageLength);
+                pageManager.executeSelect(qdef, attemptHandle, start, tx);
+            }else{
+                SPARQLQueryManager sparqlManager = sparqlManager(host);
+                sparqlManager.clearPageLength();
+                sparqlManager.executeSelect(qdef, attemptHandle, start, tx);
+            }
+            return track(attempt, new BufferedInputStream(attemptHandle.get()));
+        }));
     }
 
     /**
@@ -183,11 +248,12 @@ class MarkLogicClientImpl {
      * @param tx
      * @param includeInferred
      * @param baseURI
+     * @param context
      * @return
      * @throws JsonProcessingException
      */
-    public InputStream performGraphQuery(String queryString, SPARQLQueryBindingSet bindings, Transaction tx, boolean includeInferred, String baseURI) throws JsonProcessingException {
-        return performGraphQuery(queryString, bindings, new InputStreamHandle(), tx, includeInferred, baseURI);
+    public InputStream performGraphQuery(String queryString, SPARQLQueryBindingSet bindings, Transaction tx, boolean includeInferred, String baseURI, MarkLogicRequestContext context) throws JsonProcessingException {
+        return performGraphQuery(queryString, bindings, new InputStreamHandle(), tx, includeInferred, baseURI, context);
     }
 
     /**
@@ -199,24 +265,16 @@ class MarkLogicClientImpl {
      * @param tx
      * @param includeInferred
      * @param baseURI
+     * @param context
      * @return
      * @throws JsonProcessingException
      */
-    public InputStream performGraphQuery(String queryString, SPARQLQueryBindingSet bindings, InputStreamHandle handle, Transaction tx, boolean includeInferred, String baseURI) throws JsonProcessingException  {
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
-        if(Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
-        if (Util.notNull(ruleset) && includeInferred) {qdef.setRulesets(ruleset);}
-        if (Util.notNull(getConstrainingQueryDefinition())){
-        	qdef.setConstrainingQueryDefinition(getConstrainingQueryDefinition());
-            qdef.setDirectory(getConstrainingQueryDefinition().getDirectory());
-            qdef.setCollections(getConstrainingQueryDefinition().getCollections());
-            qdef.setResponseTransform(getConstrainingQueryDefinition().getResponseTransform());
-            qdef.setOptionsName(getConstrainingQueryDefinition().getOptionsName());
-        	}
-        if(Util.notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
-        qdef.setIncludeDefaultRulesets(includeInferred);
-        sparqlManager.executeDescribe(qdef, handle, tx);
-        return new BufferedInputStream(handle.get());
+    public InputStream performGraphQuery(String queryString, SPARQLQueryBindingSet bindings, InputStreamHandle handle, Transaction tx, boolean includeInferred, String baseURI, MarkLogicRequestContext context) throws JsonProcessingException  {
+        return measure(Operation.CONSTRUCT, () -> read(tx, context, handle, (host, attempt, attemptHandle) -> {
+            SPARQLQueryDefinition qdef = newQueryDefinition(queryString, bindings, baseURI, includeInferred, attempt);
+            sparqlManager(host).executeDescribe(qdef, attemptHandle, tx);
+            return track(attempt, new BufferedInputStream(attemptHandle.get()));
+        }));
     }
 
     /**
@@ -227,22 +285,12 @@ class MarkLogicClientImpl {
      * @param tx
      * @param includeInferred
      * @param baseURI
+     * @param context
      * @return
      */
-    public boolean performBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, Transaction tx, boolean includeInferred, String baseURI) {
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
-        if(Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
-        qdef.setIncludeDefaultRulesets(includeInferred);
-        if (Util.notNull(ruleset) && includeInferred) {qdef.setRulesets(ruleset);}
-        if (Util.notNull(getConstrainingQueryDefinition())){
-        	qdef.setConstrainingQueryDefinition(getConstrainingQueryDefinition());
-            qdef.setDirectory(getConstrainingQueryDefinition().getDirectory());
-            qdef.setCollections(getConstrainingQueryDefinition().getCollections());
-            qdef.setResponseTransform(getConstrainingQueryDefinition().getResponseTransform());
-            qdef.setOptionsName(getConstrainingQueryDefinition().getOptionsName());
-        	}
-        if(Util.notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
-        return sparqlManager.executeAsk(qdef,tx);
+    public boolean performBooleanQuery(String queryString, SPARQLQueryBindingSet bindings, Transaction tx, boolean includeInferred, String baseURI, MarkLogicRequestContext context) {
+        return measure(Operation.ASK, () -> read(tx, context, null, (host, attempt, attemptHandle) ->
+                sparqlManager(host).executeAsk(newQueryDefinition(queryString, bindings, baseURI, includeInferred, attempt), tx)));
     }
 
     /**
@@ -253,16 +301,27 @@ class MarkLogicClientImpl {
      * @param tx
      * @param includeInferred
      * @param baseURI
+     * @param context
      */
-    public void performUpdateQuery(String queryString, SPARQLQueryBindingSet bindings, Transaction tx, boolean includeInferred, String baseURI) {
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(queryString);
+    public void performUpdateQuery(String queryString, SPARQLQueryBindingSet bindings, Transaction tx, boolean includeInferred, String baseURI, MarkLogicRequestContext context) {
+        long started = System.nanoTime();
+        SPARQLQueryDefinition qdef = newQueryDefinition(queryString);
         if(Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
-        if (Util.notNull(ruleset) && includeInferred) {qdef.setRulesets(ruleset);}
-        if(Util.notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
+        SPARQLRuleset[] rulesets = context.getRulesets();
+        if (Util.notNull(rulesets) && includeInferred) {qdef.setRulesets(rulesets);}
+        if(Util.notNull(context.getGraphPerms())){ qdef.setUpdatePermissions(context.getGraphPerms());}
         qdef.setIncludeDefaultRulesets(includeInferred);
-        sparqlManager.clearPageLength();
+        bindRequestId(qdef, context);
+        if (context.getTrace() != null) {
+            context.getTrace().queryBuilt(System.nanoTime() - started);
+        }
         try {
-            sparqlManager.executeUpdate(qdef, tx);
+            measure(Operation.UPDATE, () -> execute(tx, false, context, host -> {
+                SPARQLQueryManager sparqlManager = sparqlManager(host);
+                sparqlManager.clearPageLength();
+                sparqlManager.executeUpdate(qdef, tx);
+                return null;
+            }));
         }
         catch (ForbiddenUserException e)
         {
@@ -284,22 +343,26 @@ class MarkLogicClientImpl {
     // as we use mergeGraphs, baseURI is always file.toURI
     public void performAdd(File file, String baseURI, RDFFormat dataFormat, Transaction tx, Resource... contexts) throws RDFParseException {
         try {
-            graphManager.setDefaultMimetype(dataFormat.getDefaultMIMEType());
-            if (dataFormat.equals(RDFFormat.NQUADS) || dataFormat.equals(RDFFormat.TRIG)) {
-                graphManager.mergeGraphs(new FileHandle(file),tx);
-            } else {
-                if (contexts.length>0) {
-                    for (int i = 0; i < contexts.length; i++) {
-                        if(Util.notNull(contexts[i])){
-                            graphManager.mergeAs(contexts[i].toString(), new FileHandle(file), getGraphPerms(),tx);
-                        }else{
-                            graphManager.mergeAs(DEFAULT_GRAPH_URI, new FileHandle(file), getGraphPerms(), tx);
+            measure(Operation.ADD, () -> execute(tx, false, host -> {
+                GraphManager graphManager = graphManager(host);
+                graphManager.setDefaultMimetype(dataFormat.getDefaultMIMEType());
+                if (dataFormat.equals(RDFFormat.NQUADS) || dataFormat.equals(RDFFormat.TRIG)) {
+                    graphManager.mergeGraphs(new FileHandle(file),tx);
+                } else {
+                    if (contexts.length>0) {
+                        for (int i = 0; i < contexts.length; i++) {
+                            if(Util.notNull(contexts[i])){
+                                graphManager.mergeAs(contexts[i].toString(), new FileHandle(file), getGraphPerms(),tx);
+                            }else{
+                                graphManager.mergeAs(DEFAULT_GRAPH_URI, new FileHandle(file), getGraphPerms(), tx);
+                            }
                         }
+                    } else {
+                        graphManager.mergeAs(DEFAULT_GRAPH_URI, new FileHandle(file), getGraphPerms(),tx);
                     }
-                } else {
-                    graphManager.mergeAs(DEFAULT_GRAPH_URI, new FileHandle(file), getGraphPerms(),tx);
                 }
-            }
+                return null;
+            }));
         } catch (FailedRequestException e) {
             logger.error(e.getLocalizedMessage());
             throw new RDFParseException("Request to MarkLogic server failed, check file and format.");
@@ -318,22 +381,27 @@ class MarkLogicClientImpl {
      */
     public void performAdd(InputStream in, String baseURI, RDFFormat dataFormat, Transaction tx, Resource... contexts) throws RDFParseException, MarkLogicRdf4jException {
         try {
-            graphManager.setDefaultMimetype(dataFormat.getDefaultMIMEType());
-            if (dataFormat.equals(RDFFormat.NQUADS) || dataFormat.equals(RDFFormat.TRIG)) {
-                graphManager.mergeGraphs(new InputStreamHandle(in),tx);
-            } else {
-                if (contexts.length > 0) {
-                    for (int i = 0; i < contexts.length; i++) {
-                        if (Util.notNull(contexts[i])) {
-                            graphManager.mergeAs(contexts[i].toString(), new InputStreamHandle(in), getGraphPerms(), tx);
-                        } else {
-                            graphManager.mergeAs(DEFAULT_GRAPH_URI, new InputStreamHandle(in),getGraphPerms(), tx);
+            // a stream cannot be read twice, so only fails over if it was not sent
+            measure(Operation.ADD, () -> execute(tx, false, host -> {
+                GraphManager graphManager = graphManager(host);
+                graphManager.setDefaultMimetype(dataFormat.getDefaultMIMEType());
+                if (dataFormat.equals(RDFFormat.NQUADS) || dataFormat.equals(RDFFormat.TRIG)) {
+                    graphManager.mergeGraphs(new InputStreamHandle(in),tx);
+                } else {
+                    if (contexts.length > 0) {
+                        for (int i = 0; i < contexts.length; i++) {
+                            if (Util.notNull(contexts[i])) {
+                                graphManager.mergeAs(contexts[i].toString(), new InputStreamHandle(in), getGraphPerms(), tx);
+                            } else {
+                                graphManager.mergeAs(DEFAULT_GRAPH_URI, new InputStreamHandle(in),getGraphPerms(), tx);
+                            }
                         }
+                    } else {
+                        graphManager.mergeAs(DEFAULT_GRAPH_URI, new InputStreamHandle(in),getGraphPerms(), tx);
                     }
-                } else {
-                    graphManager.mergeAs(DEFAULT_GRAPH_URI, new InputStreamHandle(in),getGraphPerms(), tx);
                 }
-            }
+                return null;
+            }));
             in.close();
         } catch (FailedRequestException e) {
             logger.error(e.getLocalizedMessage());
@@ -371,7 +439,7 @@ class MarkLogicClientImpl {
         } else {
             sb.append("INSERT DATA { GRAPH <" + DEFAULT_GRAPH_URI + "> {?s ?p ?o .}}");
         }  
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(sb.toString());
+        SPARQLQueryDefinition qdef = newQueryDefinition(sb.toString());
         if (Util.notNull(ruleset) ) {qdef.setRulesets(ruleset);}
         if(Util.notNull(graphPerms)){ qdef.setUpdatePermissions(graphPerms);}
         if(Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
@@ -379,7 +447,10 @@ class MarkLogicClientImpl {
         if(Util.notNull(subject)) qdef.withBinding("s", subject.stringValue());
         if(Util.notNull(predicate)) qdef.withBinding("p", predicate.stringValue());
         if(Util.notNull(object)) bindObject(qdef, "o", object);
-        sparqlManager.executeUpdate(qdef, tx);
+        measure(Operation.ADD, () -> execute(tx, false, host -> {
+            sparqlManager(host).executeUpdate(qdef, tx);
+            return null;
+        }));
     }
 
     /**
@@ -409,13 +480,17 @@ class MarkLogicClientImpl {
             }
         }
         sb.append("DELETE WHERE { GRAPH ?ctx { ?s ?p ?o .}}");
-        SPARQLQueryDefinition qdef = sparqlManager.newQueryDefinition(sb.toString());
+        SPARQLQueryDefinition qdef = newQueryDefinition(sb.toString());
         if(Util.notNull(contextArgs)) qdef.setUsingNamedGraphUris(contextArgs);
         if(Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
         if(Util.notNull(subject)) qdef.withBinding("s", subject.stringValue());
         if(Util.notNull(predicate)) qdef.withBinding("p", predicate.stringValue());
         if(Util.notNull(object)) bindObject(qdef, "o", object);
-        sparqlManager.executeUpdate(qdef, tx);
+        // deleting twice leaves the same triples, so safe to repeat on another host
+        measure(Operation.DELETE, () -> execute(tx, true, host -> {
+            sparqlManager(host).executeUpdate(qdef, tx);
+            return null;
+        }));
     }
 
     /**
@@ -425,17 +500,21 @@ class MarkLogicClientImpl {
      * @param contexts
      */
     public void performClear(Transaction tx, Resource... contexts) {
-        if(contexts.length>0) {
-            for (int i = 0; i < contexts.length; i++) {
-                if (Util.notNull(contexts[i])) {
-                    graphManager.delete(contexts[i].stringValue(), tx);
-                } else {
-                    graphManager.delete(DEFAULT_GRAPH_URI, tx);
+        measure(Operation.DELETE, () -> execute(tx, true, host -> {
+            GraphManager graphManager = graphManager(host);
+            if(contexts.length>0) {
+                for (int i = 0; i < contexts.length; i++) {
+                    if (Util.notNull(contexts[i])) {
+                        graphManager.delete(contexts[i].stringValue(), tx);
+                    } else {
+                        graphManager.delete(DEFAULT_GRAPH_URI, tx);
+                    }
                 }
+            }else{
+                graphManager.delete(DEFAULT_GRAPH_URI, tx);
             }
-        }else{
-            graphManager.delete(DEFAULT_GRAPH_URI, tx);
-        }
+            return null;
+        }));
     }
 
     /**
@@ -444,7 +523,10 @@ class MarkLogicClientImpl {
      * @param tx
      */
     public void performClearAll(Transaction tx) {
-        graphManager.deleteGraphs(tx);
+        measure(Operation.DELETE, () -> execute(tx, true, host -> {
+            graphManager(host).deleteGraphs(tx);
+            return null;
+        }));
     }
 
     /**
@@ -511,6 +593,24 @@ class MarkLogicClientImpl {
         return this.constrainingQueryDef;
     }
 
+    /**
+     * getter for metrics
+     *
+     * @return
+     */
+    public MarkLogicMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * setter for metrics, null discards measurements
+     *
+     * @param metrics
+     */
+    public void setMetrics(MarkLogicMetrics metrics) {
+        this.metrics = metrics == null ? MarkLogicMetrics.NOOP : metrics;
+    }
+
     /**
      * Close client.
      *
@@ -521,9 +621,9 @@ class MarkLogicClientImpl {
     }
 
     public void release() {
-        if (this.databaseClient != null) {
+        for (ClusterHost host : cluster.getHosts()) {
             try {
-                this.databaseClient.release();
+                host.getDatabaseClient().release();
             } catch (Exception e) {
                 logger.info("Failed releasing DB client", e);
             }
@@ -532,19 +632,367 @@ class MarkLogicClientImpl {
     ///////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
-     * Converts RDF4J BindingSet to java client api SPARQLBindings
+     * Converts RDF4J BindingSet to java client api SPARQLBindings, typed and language
+     * tagged literals keep their type and language.
      *
      * @param bindings
-     * @return
+     * @return SPARQLBindings or null if some value cannot be sent as a server-side binding
      */
     protected SPARQLBindings getSPARQLBindings(SPARQLQueryBindingSet bindings) {
         SPARQLBindings sps = new SPARQLBindingsImpl();
         for (Binding binding : bindings) {
-            sps.bind(binding.getName(), binding.getValue().stringValue());
+            if (!bindValue(sps, binding.getName(), binding.getValue())) {
+                return null;
+            }
         }
         return sps;
     }
 
+    /**
+     * Creates query definition for queryString, sending bindings to the server so the query
+     * text stays the same from call to call and the server can reuse its query plan. Bindings
+     * that cannot be sent to the server (blank nodes, datatypes outside xsd) are spliced into
+     * the query string instead.
+     *
+     * @param queryString
+     * @param bindings
+     * @return
+     */
+    private SPARQLQueryDefinition newQueryDefinition(String queryString, SPARQLQueryBindingSet bindings) {
+        if (bindings == null || bindings.size() == 0) {
+            return newQueryDefinition(queryString);
+        }
+        SPARQLBindings sps = getSPARQLBindings(bindings);
+        if (sps == null) {
+            return newQueryDefinition(QueryStringUtil.getQueryString(queryString, bindings));
+        }
+        SPARQLQueryDefinition qdef = newQueryDefinition(queryString);
+        qdef.setBindings(sps);
+        return qdef;
+    }
+
+    /**
+     * Creates query definition for a SELECT, CONSTRUCT/DESCRIBE or ASK, applying baseURI and
+     * the rulesets, constraining query and graph permissions of the request context.
+     *
+     * @param queryString
+     * @param bindings
+     * @param baseURI
+     * @param includeInferred
+     * @param context
+     * @return
+     */
+    private SPARQLQueryDefinition newQueryDefinition(String queryString, SPARQLQueryBindingSet bindings, String baseURI, boolean includeInferred, MarkLogicRequestContext context) {
+        long started = System.nanoTime();
+        SPARQLQueryDefinition qdef = newQueryDefinition(queryString, bindings);
+        if(Util.notNull(baseURI) && !baseURI.isEmpty()){ qdef.setBaseUri(baseURI);}
+        SPARQLRuleset[] rulesets = context.getRulesets();
+        if (Util.notNull(rulesets) && includeInferred){qdef.setRulesets(rulesets);}
+        QueryDefinition constrainingQueryDef = context.getConstrainingQueryDefinition();
+        if (Util.notNull(constrainingQueryDef)) {
+            qdef.setConstrainingQueryDefinition(constrainingQueryDef);
+            qdef.setDirectory(constrainingQueryDef.getDirectory());
+            qdef.setCollections(constrainingQueryDef.getCollections());
+            qdef.setResponseTransform(constrainingQueryDef.getResponseTransform());
+            qdef.setOptionsName(constrainingQueryDef.getOptionsName());
+        }
+        qdef.setIncludeDefaultRulesets(includeInferred);
+        if(Util.notNull(context.getGraphPerms())){ qdef.setUpdatePermissions(context.getGraphPerms());}
+        bindRequestId(qdef, context);
+        if (context.getTrace() != null) {
+            context.getTrace().queryBuilt(System.nanoTime() - started);
+        }
+        return qdef;
+    }
+
+    /**
+     * Adds id of the cancellable request as an unused binding, so its HTTP call can be found to cancel it.
+     *
+     * @param qdef
+     * @param context
+     */
+    private static void bindRequestId(SPARQLQueryDefinition qdef, MarkLogicRequestContext context) {
+        if (context.getRequest() != null) {
+            qdef.withBinding(CancellableRequest.REQUEST_ID_VARIABLE, context.getRequest().getId());
+        }
+    }
+
+    /**
+     * Creates query definition, which is not tied to a host.
+     *
+     * @param queryString
+     * @return
+     */
+    private SPARQLQueryDefinition newQueryDefinition(String queryString) {
+        return sparqlManagers[0].newQueryDefinition(queryString);
+    }
+
+    /**
+     * Runs request, reporting it to metrics; streamed results are timed until the response started.
+     *
+     * @param operation
+     * @param request
+     * @return
+     */
+    private <T> T measure(Operation operation, Supplier<T> request) {
+        MarkLogicMetrics current = this.metrics;
+        current.requestStarted(operation);
+        long started = System.nanoTime();
+        boolean failed = true;
+        try {
+            T result = request.get();
+            failed = false;
+            return result;
+        } finally {
+            current.requestFinished(operation, System.nanoTime() - started, failed);
+        }
+    }
+
+    /**
+     * Sends request to the host of transaction tx, or to a host selected by the cluster.
+     *
+     * @param tx
+     * @param idempotent
+     * @param request
+     * @return
+     */
+    private <T> T execute(Transaction tx, boolean idempotent, MarkLogicCluster.HostRequest<T> request) {
+        return cluster.execute(tx == null ? null : transactionHost, idempotent, request);
+    }
+
+    /**
+     * Sends request like execute(tx, idempotent, request), as part of the cancellable request of context if any.
+     *
+     * @param tx
+     * @param idempotent
+     * @param context
+     * @param request
+     * @return
+     */
+    private <T> T execute(Transaction tx, boolean idempotent, MarkLogicRequestContext context, MarkLogicCluster.HostRequest<T> request) {
+        CancellableRequest cancellable = context.getRequest();
+        if (cancellable == null) {
+            return execute(tx, idempotent, request);
+        }
+        return execute(tx, idempotent, cancellable(cancellable, request));
+    }
+
+    /**
+     * Wraps request, so that it counts as an HTTP call of cancellable.
+     *
+     * @param cancellable
+     * @param request
+     * @return
+     */
+    private static <T> MarkLogicCluster.HostRequest<T> cancellable(CancellableRequest cancellable, MarkLogicCluster.HostRequest<T> request) {
+        return host -> {
+            cancellable.begin(host.getDatabaseClient());
+            T result;
+            try {
+                result = request.execute(host);
+            } catch (RuntimeException e) {
+                // an aborted call is not a failure of the host, so must not fail over
+                if (cancellable.isCancelled()) {
+                    throw cancellable.interrupted(e);
+                }
+                throw e;
+            } finally {
+                cancellable.finish();
+            }
+            // a call cancel did not find in time still returns, its result is dropped
+            cancellable.checkNotCancelled();
+            return result;
+        };
+    }
+
+    /**
+     * Sends read request, hedged if the cluster has a HedgingPolicy and no transaction is active.
+     *
+     * @param tx
+     * @param context
+     * @param handle
+     * @param read
+     * @return
+     */
+    private <T> T read(Transaction tx, MarkLogicRequestContext context, InputStreamHandle handle, Read<T> read) {
+        HedgingPolicy hedging = cluster.getHedgingPolicy();
+        if (hedging == null || tx != null || cluster.getHosts().size() < 2) {
+            return execute(tx, true, context, host -> read.execute(host, context, handle));
+        }
+        return readHedged(hedging, context, read);
+    }
+
+    /**
+     * Sends read request on the calling thread, and again to another host if it did not answer
+     * within the hedging delay, returning the first answer and cancelling the other attempt.
+     * Hedges run on a small shared executor and are skipped when it is busy.
+     *
+     * @param hedging
+     * @param context
+     * @param read
+     * @return
+     */
+    private <T> T readHedged(HedgingPolicy hedging, MarkLogicRequestContext context, Read<T> read) {
+        CancellableRequest request = context.getRequest() != null ? context.getRequest() : new CancellableRequest(0);
+        hedging.readStarted();
+        long started = System.nanoTime();
+        HedgedRead<T> hedged = new HedgedRead<>(new ReadAttempt<>(request.newAttempt(), null));
+        long delay = hedging.delayNanos();
+        ScheduledFuture<?> timer = delay < 0 ? null
+                : hedgeTimer.schedule(() -> startHedge(hedging, request, hedged, context, read, delay), delay, TimeUnit.NANOSECONDS);
+
+        ReadAttempt<T> primary = hedged.primary;
+        runAttempt(primary, context, read, hedged);
+        ReadAttempt<T> hedge = hedged.primaryDone();
+        if (timer != null) {
+            timer.cancel(false);
+        }
+        if (hedged.winner.get() == primary) {
+            hedging.recordLatency(System.nanoTime() - started);
+            return primary.result;
+        }
+        if (hedge != null) {
+            try {
+                hedge.done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                request.cancel();
+                throw request.interrupted(e);
+            }
+            if (hedged.winner.get() == hedge) {
+                hedging.recordLatency(System.nanoTime() - started);
+                hedging.hedgeWon();
+                return hedge.result;
+            }
+        }
+        // the primary only loses without failing to a hedge that answered
+        throw request.isCancelled() ? request.interrupted(primary.failure) : primary.failure;
+    }
+
+    /**
+     * Sends the hedge of a read that has not answered after delay, unless its budget is spent
+     * or no hedging thread is free.
+     */
+    private <T> void startHedge(HedgingPolicy hedging, CancellableRequest request, HedgedRead<T> hedged, MarkLogicRequestContext context, Read<T> read, long delay) {
+        synchronized (hedged) {
+            ClusterHost primaryHost = hedged.primary.host;
+            if (hedged.primaryDone || request.isCancelled() || primaryHost == null) {
+                return;
+            }
+            ClusterHost other = cluster.selectOther(primaryHost);
+            if (other == null || !hedging.tryHedge()) {
+                return;
+            }
+            ReadAttempt<T> hedge;
+            try {
+                hedge = new ReadAttempt<>(request.newAttempt(), other);
+            } catch (QueryInterruptedException e) {
+                hedging.hedgeSkipped();
+                return;
+            }
+            try {
+                hedgeExecutor.execute(() -> runAttempt(hedge, context, read, hedged));
+            } catch (RejectedExecutionException e) {
+                logger.debug("skipping hedge of read on {}, {} hedges already running", primaryHost, MAX_CONCURRENT_HEDGES);
+                hedge.request.cancel();
+                hedging.hedgeSkipped();
+                return;
+            }
+            logger.debug("hedging read on {} after {} ns", other, delay);
+            hedged.hedge = hedge;
+        }
+    }
+
+    /**
+     * Runs one attempt of a hedged read, the first to succeed wins and cancels the other.
+     */
+    private <T> void runAttempt(ReadAttempt<T> attempt, MarkLogicRequestContext context, Read<T> read, HedgedRead<T> hedged) {
+        MarkLogicRequestContext attemptContext = context.withRequest(attempt.request);
+        try {
+            // the first attempt may fail over, the hedge is already on the host chosen for it
+            attempt.result = cluster.execute(attempt.host, true, cancellable(attempt.request, host -> {
+                attempt.host = host;
+                return read.execute(host, attemptContext, new InputStreamHandle());
+            }));
+            if (hedged.winner.compareAndSet(null, attempt)) {
+                ReadAttempt<T> other = attempt == hedged.primary ? hedged.getHedge() : hedged.primary;
+                if (other != null) {
+                    other.request.cancel();
+                }
+            } else {
+                attempt.request.cancel();
+            }
+        } catch (RuntimeException e) {
+            attempt.failure = e;
+        } finally {
+            attempt.done.countDown();
+        }
+    }
+
+    private static InputStream track(MarkLogicRequestContext context, InputStream in) {
+        return context.getRequest() == null ? in : context.getRequest().track(in);
+    }
+
+    /**
+     * A read sent to one host, as one attempt of its request.
+     *
+     * @param <T>
+     */
+    private interface Read<T> {
+        T execute(ClusterHost host, MarkLogicRequestContext attempt, InputStreamHandle handle);
+    }
+
+    private static class ReadAttempt<T> {
+        private final CancellableRequest request;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile ClusterHost host;
+        private volatile T result;
+        private volatile RuntimeException failure;
+
+        private ReadAttempt(CancellableRequest request, ClusterHost host) {
+            this.request = request;
+            this.host = host;
+        }
+    }
+
+    /**
+     * Attempts of one hedged read, the hedge is only started while the primary is running.
+     *
+     * @param <T>
+     */
+    private static class HedgedRead<T> {
+        private final ReadAttempt<T> primary;
+        private final AtomicReference<ReadAttempt<T>> winner = new AtomicReference<>();
+        private ReadAttempt<T> hedge;
+        private boolean primaryDone;
+
+        private HedgedRead(ReadAttempt<T> primary) {
+            this.primary = primary;
+        }
+
+        private synchronized ReadAttempt<T> getHedge() {
+            return hedge;
+        }
+
+        /**
+         * Marks the primary attempt finished, so no hedge starts after it.
+         *
+         * @return the hedge, if one was started
+         */
+        private synchronized ReadAttempt<T> primaryDone() {
+            primaryDone = true;
+            return hedge;
+        }
+    }
+
+    private SPARQLQueryManager sparqlManager(ClusterHost host) {
+        return sparqlManagers[host.getIndex()];
+    }
+
+    private GraphManager graphManager(ClusterHost host) {
+        return graphManagers[host.getIndex()];
+    }
+
     ///////////////////////////////////////////////////////////////////////////////////////////////
 
     /**
@@ -559,29 +1007,60 @@ class MarkLogicClientImpl {
     private static SPARQLQueryDefinition bindObject(SPARQLQueryDefinition qdef, String variableName, Value object) throws MarkLogicRdf4jException {
         SPARQLBindings bindings = qdef.getBindings();
         if(object != null){
-            if (object instanceof IRI) {
-                bindings.bind(variableName, object.stringValue());
-            } else if (object instanceof Literal) {
-                Literal lit = (Literal) object;
-                if (lit.getLanguage().orElse(null) != null) {
-                    String languageTag = lit.getLanguage().orElse(null);
-                    bindings.bind(variableName, lit.getLabel(), Locale.forLanguageTag(languageTag));
-                }else if (((Literal) object).getDatatype() != null) {
-                    try {
-                        String xsdType = lit.getDatatype().toString();
-                        String fragment = new java.net.URI(xsdType).getFragment();
-                        bindings.bind(variableName,lit.getLabel(),RDFTypes.valueOf(fragment.toUpperCase()));
-                    } catch (URISyntaxException e) {
-                        logger.error(e.getLocalizedMessage());
-                        throw new MarkLogicRdf4jException("Problem with object datatype.");
-                    }
-                }else {
-                    // assume we have a string value
-                    bindings.bind(variableName, lit.getLabel(), RDFTypes.STRING);
-                }
+            if (!bindValue(bindings, variableName, object) && object instanceof Literal) {
+                throw new MarkLogicRdf4jException("Problem with object datatype.");
             }
             qdef.setBindings(bindings);
         }
         return qdef;
     }
-}
\ No newline at end of file
+
+    /**
+     * Bind IRI or literal value, literals are bound with their language or xsd type.
+     *
+     * @param bindings
+     * @param variableName
+     * @param value
+     * @return false if value cannot be bound
+     */
+    private static boolean bindValue(SPARQLBindings bindings, String variableName, Value value) {
+        if (value instanceof IRI) {
+            bindings.bind(variableName, value.stringValue());
+            return true;
+        } else if (value instanceof Literal) {
+            Literal lit = (Literal) value;
+            if (lit.getLanguage().isPresent()) {
+                bindings.bind(variableName, lit.getLabel(), Locale.forLanguageTag(lit.getLanguage().get()));
+                return true;
+            }
+            if (lit.getDatatype() == null) {
+                // assume we have a string value
+                bindings.bind(variableName, lit.getLabel(), RDFTypes.STRING);
+                return true;
+            }
+            RDFTypes type = getRDFType(lit.getDatatype());
+            if (type != null) {
+                bindings.bind(variableName, lit.getLabel(), type);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Maps xsd datatype to java client api RDFTypes.
+     *
+     * @param datatype
+     * @return RDFTypes or null if there is no matching type
+     */
+    private static RDFTypes getRDFType(IRI datatype) {
+        if (!XMLSchema.NAMESPACE.equals(datatype.getNamespace())) {
+            return null;
+        }
+        try {
+            return RDFTypes.valueOf(datatype.getLocalName().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import com.marklogic.client.DatabaseClient;
+import com.marklogic.client.MarkLogicIOException;
+import com.marklogic.client.MarkLogicServerException;
+import com.marklogic.client.semantics.SPARQLQueryManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The e-nodes of a MarkLogic cluster serving the same REST port and database.
+ *
+ * Each request goes to a host chosen by a {@link HostSelectionPolicy} among the
+ * available hosts. A host that cannot be reached is marked unavailable until a
+ * health check succeeds, and the request fails over to another host if it is a
+ * read, an idempotent write, or never reached the failed host. Requests in a
+ * transaction stay on the host that opened it and do not fail over.
+ *
+ * With a {@link HedgingPolicy} set, slow reads are also sent to a second host.
+ *
+ */
+public class MarkLogicCluster {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarkLogicCluster.class);
+
+    public static final long DEFAULT_HEALTH_CHECK_MILLIS = 5000;
+
+    private static final String HEALTH_CHECK_QUERY = "ASK {}";
+
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private final List<ClusterHost> hosts;
+
+    private final HostSelectionPolicy policy;
+
+    private volatile HedgingPolicy hedgingPolicy;
+
+    private ScheduledExecutorService healthChecker;
+
+    /**
+     * Constructor for a round robin cluster.
+     *
+     * @param databaseClients one DatabaseClient per host
+     */
+    public MarkLogicCluster(List<DatabaseClient> databaseClients) {
+        this(databaseClients, HostSelectionPolicy.roundRobin());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param databaseClients one DatabaseClient per host
+     * @param policy
+     */
+    public MarkLogicCluster(List<DatabaseClient> databaseClients, HostSelectionPolicy policy) {
+        if (databaseClients == null || databaseClients.isEmpty()) {
+            throw new IllegalArgumentException("At least one DatabaseClient is required.");
+        }
+        List<ClusterHost> list = new ArrayList<>(databaseClients.size());
+        for (DatabaseClient databaseClient : databaseClients) {
+            list.add(new ClusterHost(list.size(), databaseClient));
+        }
+        this.hosts = Collections.unmodifiableList(list);
+        this.policy = policy;
+    }
+
+    /**
+     * getter for hosts
+     *
+     * @return
+     */
+    public List<ClusterHost> getHosts() {
+        return hosts;
+    }
+
+    /**
+     * Returns the first host, whose DatabaseClient stands for the cluster where only one can be used.
+     *
+     * @return
+     */
+    public ClusterHost getPrimaryHost() {
+        return hosts.get(0);
+    }
+
+    /**
+     * Returns the host for the next request, unavailable hosts are only chosen if all hosts are.
+     *
+     * @return ClusterHost
+     */
+    public ClusterHost select() {
+        return select(Collections.<ClusterHost>emptyList());
+    }
+
+    /**
+     * getter for hedging policy, null if reads are not hedged
+     *
+     * @return
+     */
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * Sets hedging policy for reads, null to disable hedging.
+     *
+     * @param hedgingPolicy
+     */
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    /**
+     * Starts checking hosts every intervalMillis, making unavailable hosts that respond available again.
+     *
+     * @param intervalMillis
+     */
+    public synchronized void startHealthChecks(long intervalMillis) {
+        stopHealthChecks();
+        healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "marklogic-rdf4j-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops health checks, if running.
+     */
+    public synchronized void stopHealthChecks() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+            healthChecker = null;
+        }
+    }
+
+    /**
+     * Sends a trivial query to every host, updating its availability.
+     */
+    public void checkHealth() {
+        for (ClusterHost host : hosts) {
+            boolean available;
+            try {
+                SPARQLQueryManager sparqlManager = host.getDatabaseClient().newSPARQLQueryManager();
+                sparqlManager.executeAsk(sparqlManager.newQueryDefinition(HEALTH_CHECK_QUERY));
+                available = true;
+            } catch (RuntimeException e) {
+                // any answer other than unavailable shows the host is up
+                available = !isHostFailure(e);
+            }
+            if (available != host.isAvailable()) {
+                logger.info("host {} is {}", host, available ? "available" : "unavailable");
+                host.setAvailable(available);
+            }
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * A request sent to one host.
+     *
+     * @param <T>
+     */
+    interface HostRequest<T> {
+        T execute(ClusterHost host);
+    }
+
+    /**
+     * Runs request on pinned host, or on a selected host failing over to other hosts.
+     *
+     * @param pinned host of the active transaction, or null
+     * @param idempotent true if request may be repeated after it may have reached a failed host
+     * @param request
+     * @return
+     */
+    <T> T execute(ClusterHost pinned, boolean idempotent, HostRequest<T> request) {
+        if (pinned != null) {
+            try {
+                return run(pinned, request);
+            } catch (RuntimeException e) {
+                if (isHostFailure(e)) {
+                    markUnavailable(pinned, e);
+                }
+                throw e;
+            }
+        }
+        List<ClusterHost> tried = new ArrayList<>();
+        ClusterHost host = select(tried);
+        while (true) {
+            try {
+                return run(host, request);
+            } catch (RuntimeException e) {
+                boolean notSent = isConnectFailure(e);
+                if (!notSent && !isHostFailure(e)) {
+                    throw e;
+                }
+                markUnavailable(host, e);
+                tried.add(host);
+                if ((!notSent && !idempotent) || tried.size() == hosts.size()) {
+                    throw e;
+                }
+                ClusterHost next = select(tried);
+                logger.info("failing over from {} to {}", host, next);
+                host = next;
+            }
+        }
+    }
+
+    /**
+     * Returns an available host other than excluded, or null if there is none.
+     *
+     * @param excluded
+     * @return
+     */
+    ClusterHost selectOther(ClusterHost excluded) {
+        List<ClusterHost> candidates = new ArrayList<>(hosts.size());
+        for (ClusterHost host : hosts) {
+            if (host.isAvailable() && host != excluded) {
+                candidates.add(host);
+            }
+        }
+        return candidates.isEmpty() ? null : policy.select(candidates);
+    }
+
+    private <T> T run(ClusterHost host, HostRequest<T> request) {
+        host.requestStarted();
+        try {
+            return request.execute(host);
+        } finally {
+            host.requestFinished();
+        }
+    }
+
+    private ClusterHost select(List<ClusterHost> excluded) {
+        if (hosts.size() == 1) {
+            return hosts.get(0);
+        }
+        List<ClusterHost> candidates = new ArrayList<>(hosts.size());
+        for (ClusterHost host : hosts) {
+            if (host.isAvailable() && !excluded.contains(host)) {
+                candidates.add(host);
+            }
+        }
+        if (candidates.isEmpty()) {
+            // nothing known to be up, so try the rest rather than fail without a request
+            for (ClusterHost host : hosts) {
+                if (!excluded.contains(host)) {
+                    candidates.add(host);
+                }
+            }
+        }
+        return policy.select(candidates);
+    }
+
+    private void markUnavailable(ClusterHost host, RuntimeException e) {
+        if (host.isAvailable() && hosts.size() > 1) {
+            logger.warn("host {} is unavailable: {}", host, e.getMessage());
+            host.setAvailable(false);
+        }
+    }
+
+    /**
+     * True if the request could not connect, so it never reached the host.
+     *
+     * @param e
+     * @return
+     */
+    private static boolean isConnectFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof NoRouteToHostException || cause instanceof UnknownHostException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * True if the host could not be reached, or answered it is unavailable.
+     *
+     * @param e
+     * @return
+     */
+    private static boolean isHostFailure(RuntimeException e) {
+        if (e instanceof MarkLogicIOException || isConnectFailure(e)) {
+            return true;
+        }
+        if (e instanceof MarkLogicServerException) {
+            MarkLogicServerException serverException = (MarkLogicServerException) e;
+            return serverException.getFailedRequest() != null && serverException.getFailedRequest().getStatusCode() == SERVICE_UNAVAILABLE;
+        }
+        return false;
+    }
+}
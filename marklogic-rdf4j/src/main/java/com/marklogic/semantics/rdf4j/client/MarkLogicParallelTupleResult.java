@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import org.eclipse.rdf4j.common.iteration.AbstractCloseableIteration;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.QueryResults;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Tuple result assembled from pages of the same query fetched concurrently.
+ *
+ * At most pageConcurrency pages are requested or held at any time; pages are
+ * handed out strictly in page order and a new page is requested each time one
+ * is consumed. The first page shorter than pageLength marks the end of results.
+ *
+ * Queries should include an ORDER BY, otherwise pages are not guaranteed to be
+ * disjoint.
+ *
+ */
+class MarkLogicParallelTupleResult extends AbstractCloseableIteration<BindingSet, QueryEvaluationException> implements TupleQueryResult {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarkLogicParallelTupleResult.class);
+
+    /**
+     * Fetches and materializes a single page of results.
+     */
+    interface PageSource {
+        TupleQueryResult fetch(long pageStart, long pageLength) throws Exception;
+    }
+
+    private final PageSource source;
+    private final Executor executor;
+    private final long start;
+    private final long pageLength;
+    private final int pageConcurrency;
+    private final Runnable onClose;
+
+    // reorder buffer, holds requested pages in page order
+    private final Deque<FutureTask<Page>> window = new ArrayDeque<>();
+
+    private long nextPage = 0;
+    private boolean endOfResults = false;
+
+    private Iterator<BindingSet> current = Collections.emptyIterator();
+    private List<String> bindingNames;
+
+    /**
+     * constructor
+     *
+     * @param source
+     * @param executor
+     * @param start
+     * @param pageLength
+     * @param pageConcurrency
+     * @param onClose run once when closed, may be null
+     */
+    MarkLogicParallelTupleResult(PageSource source, Executor executor, long start, long pageLength, int pageConcurrency, Runnable onClose) {
+        this.source = source;
+        this.executor = executor;
+        this.start = start;
+        this.pageLength = pageLength;
+        this.pageConcurrency = pageConcurrency;
+        this.onClose = onClose;
+        fillWindow();
+    }
+
+    /**
+     * Returns binding names, waiting on the first page if needed.
+     *
+     * @return
+     * @throws QueryEvaluationException
+     */
+    @Override
+    public synchronized List<String> getBindingNames() throws QueryEvaluationException {
+        if (bindingNames == null) {
+            if (window.isEmpty()) {
+                return Collections.emptyList();
+            }
+            bindingNames = await(window.peekFirst()).bindingNames;
+        }
+        return bindingNames;
+    }
+
+    @Override
+    public synchronized boolean hasNext() throws QueryEvaluationException {
+        if (isClosed()) {
+            return false;
+        }
+        while (!current.hasNext()) {
+            if (window.isEmpty()) {
+                return false;
+            }
+            Page page = await(window.pollFirst());
+            if (bindingNames == null) {
+                bindingNames = page.bindingNames;
+            }
+            current = page.rows.iterator();
+            if (page.rows.size() < pageLength) {
+                // short page, anything requested after it is past the end
+                endOfResults = true;
+                cancelWindow();
+            } else {
+                fillWindow();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized BindingSet next() throws QueryEvaluationException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public void remove() throws QueryEvaluationException {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Cancels outstanding page requests.
+     */
+    @Override
+    protected synchronized void handleClose() throws QueryEvaluationException {
+        cancelWindow();
+        current = Collections.emptyIterator();
+        if (onClose != null) {
+            onClose.run();
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void fillWindow() {
+        while (!endOfResults && window.size() < pageConcurrency) {
+            final long pageStart = start + nextPage * pageLength;
+            nextPage++;
+            FutureTask<Page> task = new FutureTask<>(() -> {
+                TupleQueryResult result = source.fetch(pageStart, pageLength);
+                try {
+                    return new Page(result.getBindingNames(), QueryResults.asList(result));
+                } finally {
+                    result.close();
+                }
+            });
+            window.addLast(task);
+            executor.execute(task);
+        }
+    }
+
+    private void cancelWindow() {
+        while (!window.isEmpty()) {
+            window.pollFirst().cancel(true);
+        }
+    }
+
+    private Page await(FutureTask<Page> task) throws QueryEvaluationException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelWindow();
+            throw new QueryEvaluationException(e);
+        } catch (ExecutionException e) {
+            logger.error("page request failed", e.getCause());
+            cancelWindow();
+            Throwable cause = e.getCause();
+            if (cause instanceof QueryEvaluationException) {
+                throw (QueryEvaluationException) cause;
+            }
+            throw new QueryEvaluationException(cause);
+        }
+    }
+
+    private static class Page {
+        private final List<String> bindingNames;
+        private final List<BindingSet> rows;
+
+        private Page(List<String> bindingNames, List<BindingSet> rows) {
+            this.bindingNames = bindingNames;
+            this.rows = rows;
+        }
+    }
+}
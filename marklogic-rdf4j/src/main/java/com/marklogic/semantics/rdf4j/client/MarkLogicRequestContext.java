@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import com.marklogic.client.query.QueryDefinition;
+import com.marklogic.client.semantics.GraphPermissions;
+import com.marklogic.client.semantics.SPARQLRuleset;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable per-request settings (rulesets, graph permissions and constraining
+ * query) handed to {@link MarkLogicClient} with each query, so that queries
+ * running concurrently on one client do not see each other's settings. May also
+ * carry the {@link CancellableRequest} and {@link RequestTrace} of one execution.
+ *
+ * The GraphPermissions and QueryDefinition are held by reference and should not
+ * be modified while a request using them may be running.
+ *
+ */
+public final class MarkLogicRequestContext {
+
+    public static final MarkLogicRequestContext EMPTY = new MarkLogicRequestContext(null, null, null);
+
+    private final SPARQLRuleset[] rulesets;
+    private final GraphPermissions graphPerms;
+    private final QueryDefinition constrainingQueryDef;
+    private final CancellableRequest request;
+    private final RequestTrace trace;
+
+    /**
+     * constructor, null entries in rulesets are dropped
+     *
+     * @param rulesets
+     * @param graphPerms
+     * @param constrainingQueryDefinition
+     */
+    public MarkLogicRequestContext(SPARQLRuleset[] rulesets, GraphPermissions graphPerms, QueryDefinition constrainingQueryDefinition) {
+        this(copyRulesets(rulesets), graphPerms, constrainingQueryDefinition, null, null);
+    }
+
+    private MarkLogicRequestContext(SPARQLRuleset[] rulesets, GraphPermissions graphPerms, QueryDefinition constrainingQueryDefinition, CancellableRequest request, RequestTrace trace) {
+        this.rulesets = rulesets;
+        this.graphPerms = graphPerms;
+        this.constrainingQueryDef = constrainingQueryDefinition;
+        this.request = request;
+        this.trace = trace;
+    }
+
+    /**
+     * getter for rulesets
+     *
+     * @return copy of rulesets, or null
+     */
+    public SPARQLRuleset[] getRulesets() {
+        return rulesets == null ? null : rulesets.clone();
+    }
+
+    /**
+     * getter for graph permissions
+     *
+     * @return
+     */
+    public GraphPermissions getGraphPerms() {
+        return graphPerms;
+    }
+
+    /**
+     * getter for ConstrainingQueryDefinition
+     *
+     * @return
+     */
+    public QueryDefinition getConstrainingQueryDefinition() {
+        return constrainingQueryDef;
+    }
+
+    /**
+     * getter for the cancellable execution, null if the request cannot be cancelled
+     *
+     * @return
+     */
+    public CancellableRequest getRequest() {
+        return request;
+    }
+
+    /**
+     * getter for the trace of the execution, null if not traced
+     *
+     * @return
+     */
+    public RequestTrace getTrace() {
+        return trace;
+    }
+
+    /**
+     * Returns a copy with rulesets replaced.
+     *
+     * @param rulesets
+     * @return
+     */
+    public MarkLogicRequestContext withRulesets(SPARQLRuleset... rulesets) {
+        return new MarkLogicRequestContext(copyRulesets(rulesets), graphPerms, constrainingQueryDef, request, trace);
+    }
+
+    /**
+     * Returns a copy with graph permissions replaced.
+     *
+     * @param graphPerms
+     * @return
+     */
+    public MarkLogicRequestContext withGraphPerms(GraphPermissions graphPerms) {
+        return new MarkLogicRequestContext(rulesets, graphPerms, constrainingQueryDef, request, trace);
+    }
+
+    /**
+     * Returns a copy with constraining query replaced.
+     *
+     * @param constrainingQueryDefinition
+     * @return
+     */
+    public MarkLogicRequestContext withConstrainingQueryDefinition(QueryDefinition constrainingQueryDefinition) {
+        return new MarkLogicRequestContext(rulesets, graphPerms, constrainingQueryDefinition, request, trace);
+    }
+
+    /**
+     * Returns a copy for one execution, tracked by request.
+     *
+     * @param request
+     * @return
+     */
+    public MarkLogicRequestContext withRequest(CancellableRequest request) {
+        return new MarkLogicRequestContext(rulesets, graphPerms, constrainingQueryDef, request, trace);
+    }
+
+    /**
+     * Returns a copy for one execution, timed by trace.
+     *
+     * @param trace
+     * @return
+     */
+    public MarkLogicRequestContext withTrace(RequestTrace trace) {
+        return new MarkLogicRequestContext(rulesets, graphPerms, constrainingQueryDef, request, trace);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static SPARQLRuleset[] copyRulesets(SPARQLRuleset[] rulesets) {
+        if (rulesets == null) {
+            return null;
+        }
+        List<SPARQLRuleset> list = new ArrayList<>();
+        for (SPARQLRuleset r : rulesets) {
+            if (r != null) {
+                list.add(r);
+            }
+        }
+        return list.toArray(new SPARQLRuleset[list.size()]);
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the results of a query, sending the query once per subscription.
+ *
+ * The response is parsed on a worker thread that blocks whenever the subscriber
+ * has no outstanding demand, so the response is only read from the socket as
+ * fast as results are requested, apart from parser and socket buffers.
+ * Cancelling closes the response.
+ *
+ * @param <T> BindingSet or Statement
+ */
+class MarkLogicResultPublisher<T> implements Publisher<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(MarkLogicResultPublisher.class);
+
+    /**
+     * Sends the query and parses its response, passing each result to sink.
+     *
+     * @param <T>
+     */
+    interface Source<T> {
+        void parse(MarkLogicRequestContext context, Sink<T> sink) throws Exception;
+    }
+
+    /**
+     * Receives parsed results, blocking until the subscriber wants them.
+     *
+     * @param <T>
+     */
+    interface Sink<T> {
+        void accept(T result) throws InterruptedException;
+    }
+
+    private final Executor executor;
+    private final Supplier<MarkLogicRequestContext> contexts;
+    private final Source<T> source;
+
+    /**
+     * Constructor.
+     *
+     * @param executor runs the parsing of each subscription
+     * @param contexts starts one request per subscription
+     * @param source
+     */
+    MarkLogicResultPublisher(Executor executor, Supplier<MarkLogicRequestContext> contexts, Source<T> source) {
+        this.executor = executor;
+        this.contexts = contexts;
+        this.source = source;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        subscriber.onSubscribe(new ResultSubscription(subscriber));
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private class ResultSubscription implements Subscription, Sink<T>, Runnable {
+        private final Subscriber<? super T> subscriber;
+
+        // guarded by this
+        private long demand;
+        private boolean started;
+        private boolean cancelled;
+        private Throwable invalidRequest;
+        private CancellableRequest request;
+
+        private ResultSubscription(Subscriber<? super T> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            boolean start;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                if (n <= 0) {
+                    // signalled by the worker, so signals stay serial
+                    invalidRequest = new IllegalArgumentException("request must be positive, was " + n);
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+                start = !started;
+                started = true;
+                notifyAll();
+            }
+            if (start) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            CancellableRequest running;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                running = request;
+                notifyAll();
+            }
+            if (running != null) {
+                running.cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            MarkLogicRequestContext context = null;
+            try {
+                context = contexts.get();
+                synchronized (this) {
+                    request = context.getRequest();
+                    if (cancelled || invalidRequest != null) {
+                        throw new InterruptedException("subscription ended");
+                    }
+                }
+                source.parse(context, this);
+            } catch (Throwable e) {
+                Throwable failure;
+                synchronized (this) {
+                    if (cancelled) {
+                        return;
+                    }
+                    failure = invalidRequest != null ? invalidRequest : e;
+                }
+                fail(failure);
+                return;
+            } finally {
+                if (context != null && context.getRequest() != null) {
+                    context.getRequest().returned();
+                }
+            }
+            Throwable failure;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                failure = invalidRequest;
+                cancelled = true;
+            }
+            if (failure != null) {
+                subscriber.onError(failure);
+            } else {
+                subscriber.onComplete();
+            }
+        }
+
+        @Override
+        public void accept(T result) throws InterruptedException {
+            synchronized (this) {
+                while (demand == 0 && !cancelled && invalidRequest == null) {
+                    wait();
+                }
+                if (cancelled || invalidRequest != null) {
+                    throw new InterruptedException("subscription ended");
+                }
+                if (demand != Long.MAX_VALUE) {
+                    demand--;
+                }
+            }
+            subscriber.onNext(result);
+        }
+
+        private void fail(Throwable e) {
+            CancellableRequest running;
+            synchronized (this) {
+                cancelled = true;
+                running = request;
+            }
+            if (running != null) {
+                running.cancel();
+            }
+            logger.debug("result subscription failed", e);
+            subscriber.onError(e);
+        }
+    }
+}
@@ -0,0 +1,462 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import com.marklogic.client.query.QueryDefinition;
+import com.marklogic.client.query.StringQueryDefinition;
+import com.marklogic.client.query.StructuredQueryDefinition;
+import com.marklogic.client.semantics.SPARQLRuleset;
+import org.eclipse.rdf4j.common.iteration.AbstractCloseableIteration;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of SELECT and ASK results for a single {@link MarkLogicClient}.
+ *
+ * Entries are evicted least recently used once maxEntries is reached and
+ * expire ttlMillis after being stored. The owning client invalidates the whole
+ * cache once each of its writes completes, so cached results never outlive a local change.
+ *
+ */
+public class QueryResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryResultCache.class);
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_TTL_MILLIS = 60000;
+    public static final int DEFAULT_MAX_ROWS = 10000;
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final int maxRows;
+
+    private final LinkedHashMap<Key, CachedResult> entries;
+
+    // bumped on every invalidation, results fetched under an older generation are not stored
+    private long generation = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Creates a cache with default bounds.
+     */
+    public QueryResultCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, DEFAULT_MAX_ROWS);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries maximum number of cached results
+     * @param ttlMillis time a result stays valid after being stored
+     * @param maxRows tuple results with more rows than this are not cached
+     */
+    public QueryResultCache(int maxEntries, long ttlMillis, int maxRows) {
+        if (maxEntries < 1 || ttlMillis < 1 || maxRows < 0) {
+            throw new IllegalArgumentException("maxEntries and ttlMillis must be positive, maxRows must not be negative.");
+        }
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlMillis;
+        this.maxRows = maxRows;
+        this.entries = new LinkedHashMap<Key, CachedResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, CachedResult> eldest) {
+                if (size() > QueryResultCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a fresh iteration over the cached tuple result, or null.
+     *
+     * @param key
+     * @return
+     */
+    TupleQueryResult getTupleResult(Key key) {
+        CachedResult entry = lookup(key);
+        if (entry == null || !(entry.value instanceof ColumnarTupleResult)) {
+            return null;
+        }
+        return ((ColumnarTupleResult) entry.value).iterate();
+    }
+
+    /**
+     * Returns the cached boolean result, or null.
+     *
+     * @param key
+     * @return
+     */
+    Boolean getBooleanResult(Key key) {
+        CachedResult entry = lookup(key);
+        if (entry == null || !(entry.value instanceof Boolean)) {
+            return null;
+        }
+        return (Boolean) entry.value;
+    }
+
+    /**
+     * Caches a tuple result of at most maxRows rows, returning an iteration over the cached rows.
+     * A larger result is not cached; the rows read to find out are replayed before the rest
+     * of the passed result is streamed. The passed result is closed with the returned one.
+     *
+     * @param key
+     * @param generation generation read before the query was sent
+     * @param result
+     * @return
+     * @throws QueryEvaluationException
+     */
+    TupleQueryResult putTupleResult(Key key, long generation, TupleQueryResult result) throws QueryEvaluationException {
+        ColumnarTupleResult.Builder builder = new ColumnarTupleResult.Builder();
+        int buffered = 0;
+        boolean streaming = false;
+        try {
+            builder.startQueryResult(result.getBindingNames());
+            while (buffered <= maxRows && result.hasNext()) {
+                builder.handleSolution(result.next());
+                buffered++;
+            }
+            if (buffered > maxRows) {
+                streaming = true;
+                return new ReplayedTupleResult(builder.build(), result);
+            }
+        } finally {
+            if (!streaming) {
+                result.close();
+            }
+        }
+        ColumnarTupleResult rows = builder.build();
+        store(key, generation, rows);
+        return rows.iterate();
+    }
+
+    /**
+     * Caches a boolean result.
+     *
+     * @param key
+     * @param generation generation read before the query was sent
+     * @param result
+     */
+    void putBooleanResult(Key key, long generation, boolean result) {
+        store(key, generation, result);
+    }
+
+    /**
+     * Current generation, to be read before sending a query whose result will be cached.
+     *
+     * @return
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Drops every cached result.
+     */
+    public synchronized void invalidateAll() {
+        if (!entries.isEmpty()) {
+            logger.debug("invalidating {} cached query results", entries.size());
+            entries.clear();
+        }
+        generation++;
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * Number of cached results.
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Hit ratio over all lookups, 0 when there were none.
+     *
+     * @return
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * Number of entries dropped for size or age.
+     *
+     * @return
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Number of times the cache was invalidated by a write.
+     *
+     * @return
+     */
+    public long getInvalidationCount() {
+        return invalidations.get();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private synchronized CachedResult lookup(Key key) {
+        CachedResult entry = entries.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.storedAt > ttlMillis) {
+            entries.remove(key);
+            evictions.incrementAndGet();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    private synchronized void store(Key key, long fetchedGeneration, Object value) {
+        if (fetchedGeneration != generation) {
+            // a write happened while the query was running
+            return;
+        }
+        entries.put(key, new CachedResult(value, System.currentTimeMillis()));
+    }
+
+    /**
+     * Collapses whitespace outside of string literals, so queries differing only
+     * in layout share a cache entry.
+     *
+     * @param queryString
+     * @return
+     */
+    static String normalize(String queryString) {
+        StringBuilder sb = new StringBuilder(queryString.length());
+        char quote = 0;
+        boolean pendingSpace = false;
+        for (int i = 0; i < queryString.length(); i++) {
+            char c = queryString.charAt(i);
+            if (quote != 0) {
+                sb.append(c);
+                if (c == '\\' && i + 1 < queryString.length()) {
+                    sb.append(queryString.charAt(++i));
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    sb.append(' ');
+                    pendingSpace = false;
+                }
+                if (c == '"' || c == '\'') {
+                    quote = c;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Identity of a query execution; everything that can change its result.
+     */
+    static final class Key {
+        private final String queryString;
+        private final SPARQLQueryBindingSet bindings;
+        private final String baseURI;
+        private final List<String> rulesets;
+        private final String constrainingQuery;
+        private final boolean includeInferred;
+        private final long start;
+        private final long pageLength;
+        private final int hash;
+
+        Key(String queryString, SPARQLQueryBindingSet bindings, String baseURI, SPARQLRuleset[] rulesets, QueryDefinition constrainingQuery, boolean includeInferred, long start, long pageLength) {
+            this.queryString = normalize(queryString);
+            this.bindings = copyOf(bindings);
+            this.baseURI = baseURI;
+            this.rulesets = rulesetNames(rulesets);
+            this.constrainingQuery = describe(constrainingQuery);
+            this.includeInferred = includeInferred;
+            this.start = start;
+            this.pageLength = pageLength;
+            this.hash = Objects.hash(this.queryString, this.bindings, baseURI, this.rulesets, this.constrainingQuery, includeInferred, start, pageLength);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash
+                    && includeInferred == other.includeInferred
+                    && start == other.start
+                    && pageLength == other.pageLength
+                    && queryString.equals(other.queryString)
+                    && Objects.equals(bindings, other.bindings)
+                    && Objects.equals(baseURI, other.baseURI)
+                    && Objects.equals(rulesets, other.rulesets)
+                    && Objects.equals(constrainingQuery, other.constrainingQuery);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        private static SPARQLQueryBindingSet copyOf(SPARQLQueryBindingSet bindings) {
+            if (bindings == null) {
+                return null;
+            }
+            // the query keeps mutating its own binding set
+            SPARQLQueryBindingSet copy = new SPARQLQueryBindingSet();
+            copy.addAll(bindings);
+            return copy;
+        }
+
+        private static List<String> rulesetNames(SPARQLRuleset[] rulesets) {
+            if (rulesets == null) {
+                return null;
+            }
+            List<String> names = new ArrayList<>(rulesets.length);
+            for (SPARQLRuleset ruleset : rulesets) {
+                names.add(ruleset == null ? null : ruleset.getName());
+            }
+            return names;
+        }
+
+        private static String describe(QueryDefinition queryDef) {
+            if (queryDef == null) {
+                return null;
+            }
+            StringBuilder sb = new StringBuilder(queryDef.getClass().getName());
+            sb.append('|').append(queryDef.getOptionsName());
+            sb.append('|').append(queryDef.getDirectory());
+            sb.append('|').append(Arrays.toString(queryDef.getCollections()));
+            if (queryDef instanceof StructuredQueryDefinition) {
+                sb.append('|').append(((StructuredQueryDefinition) queryDef).serialize());
+            } else if (queryDef instanceof StringQueryDefinition) {
+                sb.append('|').append(((StringQueryDefinition) queryDef).getCriteria());
+            } else {
+                // no way to compare other definitions by content
+                sb.append('@').append(System.identityHashCode(queryDef));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Rows buffered while deciding whether to cache a result, followed by the rest of the result.
+     */
+    private static final class ReplayedTupleResult extends AbstractCloseableIteration<BindingSet, QueryEvaluationException> implements TupleQueryResult {
+        private final ColumnarTupleResult buffered;
+        private final TupleQueryResult rest;
+
+        private ReplayedTupleResult(ColumnarTupleResult buffered, TupleQueryResult rest) {
+            this.buffered = buffered;
+            this.rest = rest;
+        }
+
+        @Override
+        public List<String> getBindingNames() throws QueryEvaluationException {
+            return rest.getBindingNames();
+        }
+
+        @Override
+        public boolean hasNext() throws QueryEvaluationException {
+            return !isClosed() && (buffered.hasNext() || rest.hasNext());
+        }
+
+        @Override
+        public BindingSet next() throws QueryEvaluationException {
+            if (isClosed()) {
+                throw new NoSuchElementException();
+            }
+            return buffered.hasNext() ? buffered.next() : rest.next();
+        }
+
+        @Override
+        public void remove() throws QueryEvaluationException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void handleClose() throws QueryEvaluationException {
+            try {
+                super.handleClose();
+            } finally {
+                rest.close();
+            }
+        }
+    }
+
+    private static final class CachedResult {
+        private final Object value;
+        private final long storedAt;
+
+        private CachedResult(Object value, long storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import com.marklogic.client.semantics.SPARQLRuleset;
+import com.marklogic.semantics.rdf4j.metrics.MarkLogicMetrics.Operation;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timing of one query or update execution, split into phases so that time
+ * spent by the server can be told apart from time spent by the client.
+ *
+ * <ul>
+ * <li>query build: building the SPARQLQueryDefinition and its bindings</li>
+ * <li>first byte: from sending the request until the response started, less the query build</li>
+ * <li>transfer: time the parser spent waiting for response bytes</li>
+ * <li>parse: the rest of the time from the first to the last read of the response,
+ * including time the parser waited for the consumer of a result</li>
+ * </ul>
+ *
+ * Values are complete once {@link #isComplete()}, which for SELECT and
+ * CONSTRUCT is when their result is closed.
+ *
+ */
+public class RequestTrace {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestTrace.class);
+
+    private final RequestTraceListener listener;
+
+    // told after listener, used by the client's SlowOperationLog
+    private volatile RequestTraceListener observer;
+
+    private volatile Operation operation;
+    private volatile String queryString;
+    private volatile BindingSet bindings;
+    private volatile SPARQLRuleset[] rulesets;
+
+    // hedged attempts build their query definitions concurrently
+    private final AtomicLong queryBuildNanos = new AtomicLong();
+
+    private volatile long sentAt;
+    private volatile long firstByteNanos;
+
+    // written by the parsing thread only
+    private volatile long parseStartedAt;
+    private volatile long parseEndedAt;
+    private volatile long transferNanos;
+    private volatile long parseNanos;
+
+    private volatile long rows;
+    private volatile long bytes;
+    private volatile boolean failed;
+    private volatile long totalNanos;
+    private volatile boolean complete;
+
+    private final AtomicBoolean completing = new AtomicBoolean();
+
+    /**
+     * Constructor.
+     *
+     * @param listener told when the execution completes, may be null
+     */
+    public RequestTrace(RequestTraceListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * getter for operation, null until sent
+     *
+     * @return
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * getter for queryString, null until sent
+     *
+     * @return
+     */
+    public String getQueryString() {
+        return queryString;
+    }
+
+    /**
+     * getter for bindings sent with the query, null until sent
+     *
+     * @return
+     */
+    public BindingSet getBindings() {
+        return bindings;
+    }
+
+    /**
+     * getter for rulesets of the request, null if none
+     *
+     * @return
+     */
+    public SPARQLRuleset[] getRulesets() {
+        return rulesets == null ? null : rulesets.clone();
+    }
+
+    /**
+     * getter for queryBuildNanos
+     *
+     * @return
+     */
+    public long getQueryBuildNanos() {
+        return queryBuildNanos.get();
+    }
+
+    /**
+     * getter for firstByteNanos
+     *
+     * @return
+     */
+    public long getFirstByteNanos() {
+        return firstByteNanos;
+    }
+
+    /**
+     * getter for transferNanos
+     *
+     * @return
+     */
+    public long getTransferNanos() {
+        return transferNanos;
+    }
+
+    /**
+     * getter for parseNanos
+     *
+     * @return
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * Returns time from sending the request until it completed.
+     *
+     * @return
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * getter for rows, solutions or statements read
+     *
+     * @return
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * getter for bytes of the response read
+     *
+     * @return
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * getter for failed
+     *
+     * @return
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * getter for complete
+     *
+     * @return
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        return operation + " total=" + millis(totalNanos) + "ms build=" + millis(getQueryBuildNanos())
+                + "ms firstByte=" + millis(firstByteNanos) + "ms transfer=" + millis(getTransferNanos())
+                + "ms parse=" + millis(parseNanos) + "ms rows=" + rows + " bytes=" + bytes
+                + (failed ? " failed" : "");
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    void observe(RequestTraceListener observer) {
+        this.observer = observer;
+    }
+
+    void sent(Operation operation, String queryString, BindingSet bindings, SPARQLRuleset[] rulesets) {
+        this.operation = operation;
+        this.queryString = queryString;
+        this.bindings = bindings;
+        this.rulesets = rulesets;
+        this.sentAt = System.nanoTime();
+    }
+
+    void queryBuilt(long nanos) {
+        queryBuildNanos.addAndGet(nanos);
+    }
+
+    void responseStarted() {
+        firstByteNanos = Math.max(0, System.nanoTime() - sentAt - queryBuildNanos.get());
+    }
+
+    void readStarted(long now) {
+        if (parseStartedAt == 0) {
+            parseStartedAt = now;
+        }
+    }
+
+    void readFinished(long nanos, boolean end) {
+        transferNanos += nanos;
+        if (end && parseEndedAt == 0) {
+            parseEndedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Ends the execution, telling the listener; only the first call counts.
+     *
+     * @param rows
+     * @param bytes
+     * @param failed
+     */
+    void complete(long rows, long bytes, boolean failed) {
+        if (!completing.compareAndSet(false, true)) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (parseStartedAt != 0) {
+            // a result closed after the whole response was read stops the parse at the end of the response
+            long parseEnd = parseEndedAt != 0 ? parseEndedAt : now;
+            parseNanos = Math.max(0, parseEnd - parseStartedAt - transferNanos);
+        }
+        this.rows = rows;
+        this.bytes = bytes;
+        this.failed = failed;
+        this.totalNanos = sentAt == 0 ? 0 : now - sentAt;
+        this.complete = true;
+        tell(listener);
+        tell(observer);
+    }
+
+    private void tell(RequestTraceListener listener) {
+        if (listener != null) {
+            try {
+                listener.requestCompleted(this);
+            } catch (RuntimeException e) {
+                logger.warn("request trace listener failed", e);
+            }
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+/**
+ * Told when a traced query or update completes, see {@link RequestTrace}.
+ *
+ * Called on the thread completing the execution, which may be a parsing
+ * thread, so should return quickly.
+ *
+ */
+@FunctionalInterface
+public interface RequestTraceListener {
+
+    /**
+     * Called once per traced execution.
+     *
+     * @param trace
+     */
+    void requestCompleted(RequestTrace trace);
+}
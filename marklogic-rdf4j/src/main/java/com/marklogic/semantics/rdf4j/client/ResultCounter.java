@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import com.marklogic.semantics.rdf4j.metrics.MarkLogicMetrics;
+import com.marklogic.semantics.rdf4j.metrics.MarkLogicMetrics.Operation;
+import org.apache.commons.io.input.CountingInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Response stream counting the bytes read and the results parsed from it,
+ * reported to metrics once when closed. Also times reads for the
+ * {@link RequestTrace} of a traced request.
+ *
+ */
+class ResultCounter extends CountingInputStream {
+
+    private final MarkLogicMetrics metrics;
+    private final Operation operation;
+    private final RequestTrace trace;
+
+    // start of the read in progress, only used when traced
+    private long readStartedAt;
+
+    // written by the parsing thread, read when closing
+    private volatile long rows;
+
+    private final AtomicBoolean reported = new AtomicBoolean();
+
+    /**
+     * Constructor.
+     *
+     * @param in
+     * @param metrics
+     * @param operation
+     * @param trace may be null
+     */
+    ResultCounter(InputStream in, MarkLogicMetrics metrics, Operation operation, RequestTrace trace) {
+        super(in);
+        this.metrics = metrics;
+        this.operation = operation;
+        this.trace = trace;
+    }
+
+    /**
+     * Counts a parsed solution or statement, only called by the parsing thread.
+     */
+    void row() {
+        rows++;
+    }
+
+    /**
+     * getter for rows
+     *
+     * @return
+     */
+    long getRows() {
+        return rows;
+    }
+
+    /**
+     * getter for trace
+     *
+     * @return
+     */
+    RequestTrace getTrace() {
+        return trace;
+    }
+
+    @Override
+    protected void beforeRead(int n) {
+        if (trace != null) {
+            readStartedAt = System.nanoTime();
+            trace.readStarted(readStartedAt);
+        }
+    }
+
+    @Override
+    protected synchronized void afterRead(int n) {
+        super.afterRead(n);
+        if (trace != null) {
+            trace.readFinished(System.nanoTime() - readStartedAt, n == -1);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            if (reported.compareAndSet(false, true)) {
+                metrics.resultClosed(operation, rows, getByteCount());
+                if (trace != null) {
+                    trace.complete(rows, getByteCount(), false);
+                }
+            }
+        }
+    }
+}
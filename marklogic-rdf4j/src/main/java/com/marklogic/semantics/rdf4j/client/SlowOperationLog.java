@@ -0,0 +1,255 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+import com.marklogic.client.semantics.SPARQLRuleset;
+import com.marklogic.semantics.rdf4j.metrics.MarkLogicMetrics;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs queries, updates, write cache flushes and bulk adds slower than a
+ * threshold, at WARN on the logger com.marklogic.semantics.rdf4j.slow.
+ *
+ * Queries and updates are logged with their phase timings, row and byte
+ * counts, rulesets, bindings and query text cut to maxQueryLength. At most
+ * maxPerSecond lines are written, the number of slow operations left out is
+ * added to the next line.
+ *
+ */
+public class SlowOperationLog implements RequestTraceListener {
+
+    private static final Logger logger = LoggerFactory.getLogger("com.marklogic.semantics.rdf4j.slow");
+
+    /**
+     * Kinds of operation with their own threshold.
+     */
+    public enum Kind {
+        QUERY, UPDATE, FLUSH, ADD
+    }
+
+    public static final long DEFAULT_THRESHOLD_MILLIS = 1000;
+
+    public static final int DEFAULT_MAX_QUERY_LENGTH = 1000;
+
+    public static final double DEFAULT_MAX_PER_SECOND = 10;
+
+    private final Map<Kind, Long> thresholdNanos = new EnumMap<>(Kind.class);
+    private volatile int maxQueryLength = DEFAULT_MAX_QUERY_LENGTH;
+    private final double maxPerSecond;
+    private final double maxBurst;
+
+    // token bucket holding up to maxBurst lines, guarded by this
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+    private long suppressed;
+
+    /**
+     * Constructor logging operations slower than DEFAULT_THRESHOLD_MILLIS, at most DEFAULT_MAX_PER_SECOND a second.
+     */
+    public SlowOperationLog() {
+        this(DEFAULT_THRESHOLD_MILLIS, DEFAULT_MAX_PER_SECOND);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param thresholdMillis threshold of every kind of operation
+     * @param maxPerSecond lines logged per second, also the largest burst but at least one line
+     */
+    public SlowOperationLog(long thresholdMillis, double maxPerSecond) {
+        if (maxPerSecond <= 0) {
+            throw new IllegalArgumentException("maxPerSecond must be positive.");
+        }
+        for (Kind kind : Kind.values()) {
+            thresholdNanos.put(kind, TimeUnit.MILLISECONDS.toNanos(thresholdMillis));
+        }
+        this.maxPerSecond = maxPerSecond;
+        // below one line a second the bucket must still fill up to a whole line
+        this.maxBurst = Math.max(1, maxPerSecond);
+        this.tokens = maxBurst;
+    }
+
+    /**
+     * getter for threshold of kind
+     *
+     * @param kind
+     * @return
+     */
+    public synchronized long getThresholdMillis(Kind kind) {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos.get(kind));
+    }
+
+    /**
+     * Sets threshold above which operations of kind are logged.
+     *
+     * @param kind
+     * @param thresholdMillis 0 logs every operation of kind, Long.MAX_VALUE none
+     */
+    public synchronized void setThresholdMillis(Kind kind, long thresholdMillis) {
+        thresholdNanos.put(kind, TimeUnit.MILLISECONDS.toNanos(Math.max(0, thresholdMillis)));
+    }
+
+    /**
+     * getter for maxQueryLength
+     *
+     * @return
+     */
+    public int getMaxQueryLength() {
+        return maxQueryLength;
+    }
+
+    /**
+     * setter for maxQueryLength, the number of characters of query text and bindings logged
+     *
+     * @param maxQueryLength
+     */
+    public void setMaxQueryLength(int maxQueryLength) {
+        this.maxQueryLength = Math.max(0, maxQueryLength);
+    }
+
+    /**
+     * getter for maxPerSecond
+     *
+     * @return
+     */
+    public double getMaxPerSecond() {
+        return maxPerSecond;
+    }
+
+    /**
+     * Logs a query or update if slower than its threshold.
+     *
+     * @param trace
+     */
+    @Override
+    public void requestCompleted(RequestTrace trace) {
+        Kind kind = trace.getOperation() == MarkLogicMetrics.Operation.UPDATE ? Kind.UPDATE : Kind.QUERY;
+        long suppressedBefore = admit(kind, trace.getTotalNanos());
+        if (suppressedBefore < 0) {
+            return;
+        }
+        logger.warn("slow {}{} {} ms (build {} ms, first byte {} ms, transfer {} ms, parse {} ms) rows={} bytes={} rulesets={} bindings={} query: {}{}",
+                trace.getOperation(), trace.isFailed() ? " failed" : "", millis(trace.getTotalNanos()),
+                millis(trace.getQueryBuildNanos()), millis(trace.getFirstByteNanos()),
+                millis(trace.getTransferNanos()), millis(trace.getParseNanos()), trace.getRows(),
+                trace.getBytes(), rulesets(trace.getRulesets()), truncate(bindings(trace.getBindings())),
+                truncate(trace.getQueryString()), suppressed(suppressedBefore));
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Logs a write cache flush if slower than the FLUSH threshold.
+     *
+     * @param cache
+     * @param statements
+     * @param nanos
+     * @param failed
+     */
+    void flushed(MarkLogicMetrics.Cache cache, int statements, long nanos, boolean failed) {
+        long suppressedBefore = admit(Kind.FLUSH, nanos);
+        if (suppressedBefore < 0) {
+            return;
+        }
+        logger.warn("slow {} cache flush{} {} ms statements={}{}", cache, failed ? " failed" : "", millis(nanos),
+                statements, suppressed(suppressedBefore));
+    }
+
+    /**
+     * Logs a bulk add if slower than the ADD threshold.
+     *
+     * @param source file name or stream type
+     * @param format
+     * @param bytes bytes sent, -1 if unknown
+     * @param nanos
+     * @param failed
+     */
+    void added(String source, RDFFormat format, long bytes, long nanos, boolean failed) {
+        long suppressedBefore = admit(Kind.ADD, nanos);
+        if (suppressedBefore < 0) {
+            return;
+        }
+        logger.warn("slow ADD{} {} ms format={} bytes={} from {}{}", failed ? " failed" : "", millis(nanos),
+                format == null ? null : format.getName(), bytes, source, suppressed(suppressedBefore));
+    }
+
+    /**
+     * Decides if an operation is logged.
+     *
+     * @param kind
+     * @param nanos
+     * @return -1 if not logged, else number of slow operations left out since the last line
+     */
+    private synchronized long admit(Kind kind, long nanos) {
+        if (nanos < thresholdNanos.get(kind)) {
+            return -1;
+        }
+        long now = System.nanoTime();
+        tokens = Math.min(maxBurst, tokens + (now - refilledAt) / 1e9 * maxPerSecond);
+        refilledAt = now;
+        if (tokens < 1) {
+            suppressed++;
+            return -1;
+        }
+        tokens -= 1;
+        long left = suppressed;
+        suppressed = 0;
+        return left;
+    }
+
+    private String truncate(String text) {
+        if (text == null) {
+            return null;
+        }
+        int max = maxQueryLength;
+        return text.length() <= max ? text : text.substring(0, max) + "... (" + text.length() + " chars)";
+    }
+
+    private static String bindings(BindingSet bindings) {
+        return bindings == null || bindings.size() == 0 ? "[]" : bindings.toString();
+    }
+
+    private static String rulesets(SPARQLRuleset[] rulesets) {
+        if (rulesets == null || rulesets.length == 0) {
+            return "[]";
+        }
+        String[] names = new String[rulesets.length];
+        for (int i = 0; i < rulesets.length; i++) {
+            names[i] = rulesets[i].getName();
+        }
+        return Arrays.toString(names);
+    }
+
+    private static String suppressed(long count) {
+        return count == 0 ? "" : " (" + count + " slow operations not logged)";
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -20,6 +20,7 @@
 package com.marklogic.semantics.rdf4j.client;
 
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
+import com.marklogic.semantics.rdf4j.metrics.MarkLogicMetrics;
 import org.eclipse.rdf4j.model.*;
 import org.eclipse.rdf4j.model.impl.LinkedHashModel;
 import org.eclipse.rdf4j.query.MalformedQueryException;
@@ -30,8 +31,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.Date;
+import java.util.Deque;
 import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Timer implements write cache for efficient adding of triples.
@@ -52,12 +57,22 @@ public abstract class TripleCache extends TimerTask {
 
     protected RDFFormat format = RDFFormat.NQUADS;
 
-    protected long cacheSize;
+    protected volatile long cacheSize;
 
-    protected long cacheMillis;
+    protected volatile long cacheMillis;
 
     protected Date lastCacheAccess = new Date();
 
+    private volatile boolean paused;
+
+    // kept outside the cache lock so management reads never wait on a flush
+    private volatile int occupancy;
+    private volatile long lastFlushTime;
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong statementsFlushed = new AtomicLong();
+    private final Deque<Long> recentFlushes = new ArrayDeque<>();
+
     /**
      * Creates a new TripleCache object, using the supplied MarkLogicClient.
      *
@@ -114,6 +129,88 @@ public abstract class TripleCache extends TimerTask {
         this.cacheMillis = cacheMillis;
     }
 
+    /**
+     * Stops flushing on the timer and when the cache is full, statements keep
+     * being cached until resumed. Explicit flushes such as on commit or before a
+     * query still happen.
+     */
+    public void pause() {
+        paused = true;
+    }
+
+    /**
+     * Resumes flushing on the timer and when the cache is full.
+     */
+    public void resume() {
+        paused = false;
+    }
+
+    /**
+     * getter for paused
+     *
+     * @return
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Returns number of statements cached, without waiting for a flush in progress.
+     *
+     * @return
+     */
+    public int getOccupancy() {
+        return occupancy;
+    }
+
+    /**
+     * Returns when the last successful flush finished, in milliseconds since the epoch, 0 if none.
+     *
+     * @return
+     */
+    public long getLastFlushTime() {
+        return lastFlushTime;
+    }
+
+    /**
+     * getter for number of successful flushes
+     *
+     * @return
+     */
+    public long getFlushCount() {
+        return flushes.get();
+    }
+
+    /**
+     * getter for number of failed flushes
+     *
+     * @return
+     */
+    public long getFailedFlushCount() {
+        return failedFlushes.get();
+    }
+
+    /**
+     * getter for number of statements flushed successfully
+     *
+     * @return
+     */
+    public long getStatementsFlushed() {
+        return statementsFlushed.get();
+    }
+
+    /**
+     * Returns number of successful flushes in the last minute.
+     *
+     * @return
+     */
+    public int getFlushesPerMinute() {
+        synchronized (recentFlushes) {
+            expireFlushes(System.nanoTime());
+            return recentFlushes.size();
+        }
+    }
+
     /**
      * Tests to see if we should flush cache.
      *
@@ -121,10 +218,10 @@ public abstract class TripleCache extends TimerTask {
     @Override
     public synchronized void run(){
         Date now = new Date();
-        if ( !cache.isEmpty() &&
+        if ( !paused && !cache.isEmpty() &&
                 ((cache.size() > cacheSize - 1) || (now.getTime() - lastCacheAccess.getTime() > cacheMillis))) {
             try {
-                flush();
+                timedFlush();
             } catch (RepositoryException e) {
                 log.error(e.getLocalizedMessage());
                 throw new RuntimeException(e);
@@ -143,6 +240,22 @@ public abstract class TripleCache extends TimerTask {
 
     protected abstract void flush() throws RepositoryException, MalformedQueryException, UpdateExecutionException, IOException;
 
+    /**
+     * Sends the update built by flush, override to measure serialization without a server.
+     *
+     * @param update
+     */
+    protected void send(String update) {
+        client.sendCacheUpdate(update);
+    }
+
+    /**
+     * Returns which cache this is, when reporting to metrics.
+     *
+     * @return
+     */
+    protected abstract MarkLogicMetrics.Cache getMetricsCache();
+
     /**
      * Forces the cache to flush if there is anything in it.
      *
@@ -152,7 +265,7 @@ public abstract class TripleCache extends TimerTask {
         log.debug(String.valueOf(cache.size()));
         if( !cache.isEmpty()) {
             try {
-                flush();
+                timedFlush();
             } catch (RepositoryException e) {
                 throw new MarkLogicRdf4jException("Could not flush write cache, encountered repository issue.",e);
             } catch (MalformedQueryException e) {
@@ -169,10 +282,57 @@ public abstract class TripleCache extends TimerTask {
      * Add triple to cache Model.
      */
     public synchronized void add(Resource subject, IRI predicate, Value object, Resource... contexts) throws MarkLogicRdf4jException {
+        int before = cache.size();
         cache.add(subject,predicate,object,contexts);
-        if( cache.size() > cacheSize - 1){
+        if (cache.size() > before) {
+            occupancy = cache.size();
+            client.getMetrics().cacheAdded(getMetricsCache(), cache.size() - before);
+        }
+        if( !paused && cache.size() > cacheSize - 1){
             forceRun();
         }
     }
 
-}
\ No newline at end of file
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Flushes, reporting the statements sent and how long it took to metrics and the slow operation log.
+     */
+    private void timedFlush() throws RepositoryException, MalformedQueryException, UpdateExecutionException, IOException {
+        int statements = cache.size();
+        long started = System.nanoTime();
+        boolean failed = true;
+        try {
+            flush();
+            failed = false;
+        } finally {
+            long finished = System.nanoTime();
+            long nanos = finished - started;
+            occupancy = cache.size();
+            if (failed) {
+                failedFlushes.incrementAndGet();
+            } else {
+                lastFlushTime = System.currentTimeMillis();
+                flushes.incrementAndGet();
+                statementsFlushed.addAndGet(statements);
+                synchronized (recentFlushes) {
+                    recentFlushes.addLast(finished);
+                    expireFlushes(finished);
+                }
+            }
+            client.getMetrics().cacheFlushed(getMetricsCache(), statements, nanos, failed);
+            SlowOperationLog slowLog = client.getSlowOperationLog();
+            if (slowLog != null) {
+                slowLog.flushed(getMetricsCache(), statements, nanos, failed);
+            }
+        }
+    }
+
+    private void expireFlushes(long now) {
+        long minuteAgo = now - TimeUnit.MINUTES.toNanos(1);
+        while (!recentFlushes.isEmpty() && recentFlushes.peekFirst() - minuteAgo < 0) {
+            recentFlushes.removeFirst();
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A timer that flushes a cache of triple add statements
+ * periodically. The cache is represented as a Model.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+
+/**
+ * Management interface of a client's write or delete cache, registered as
+ * {@code com.marklogic.semantics.rdf4j:type=TripleCache,cache=WRITE|DELETE,client=N}
+ * while the client's cache timer runs.
+ *
+ */
+public interface TripleCacheMXBean {
+
+    /**
+     * getter for number of statements cached
+     *
+     * @return
+     */
+    int getOccupancy();
+
+    /**
+     * getter for number of statements causing a flush
+     *
+     * @return
+     */
+    long getCacheSize();
+
+    /**
+     * setter for number of statements causing a flush, applies to the next statement added
+     *
+     * @param cacheSize
+     */
+    void setCacheSize(long cacheSize);
+
+    /**
+     * getter for milliseconds between timer checks, cached statements are flushed
+     * once not added to for this long
+     *
+     * @return
+     */
+    long getFlushIntervalMillis();
+
+    /**
+     * setter for milliseconds between timer checks, reschedules the timer keeping cached statements
+     *
+     * @param millis
+     */
+    void setFlushIntervalMillis(long millis);
+
+    /**
+     * Returns when the last successful flush finished, in milliseconds since the epoch, 0 if none.
+     *
+     * @return
+     */
+    long getLastFlushTime();
+
+    /**
+     * getter for number of successful flushes
+     *
+     * @return
+     */
+    long getFlushCount();
+
+    /**
+     * getter for number of successful flushes in the last minute
+     *
+     * @return
+     */
+    int getFlushesPerMinute();
+
+    /**
+     * getter for number of failed flushes
+     *
+     * @return
+     */
+    long getFailedFlushCount();
+
+    /**
+     * getter for number of statements flushed successfully
+     *
+     * @return
+     */
+    long getStatementsFlushed();
+
+    /**
+     * getter for paused
+     *
+     * @return
+     */
+    boolean isPaused();
+
+    /**
+     * Flushes cached statements now, even when paused.
+     */
+    void flush();
+
+    /**
+     * Stops flushing on the timer and when the cache is full, see {@link TripleCache#pause()}.
+     */
+    void pause();
+
+    /**
+     * Resumes flushing on the timer and when the cache is full.
+     */
+    void resume();
+}
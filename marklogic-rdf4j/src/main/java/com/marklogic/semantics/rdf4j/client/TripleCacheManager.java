@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A timer that flushes a cache of triple add statements
+ * periodically. The cache is represented as a Model.
+ */
+package com.marklogic.semantics.rdf4j.client;
+
+
+import com.marklogic.semantics.rdf4j.metrics.JmxMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the checks of one {@link TripleCache} and exposes it as a {@link TripleCacheMXBean}.
+ *
+ * Checks of all caches run on a few daemon threads shared by every client, started
+ * with the first cache and ended once the last one is stopped. A check runs the
+ * cache rather than scheduling it, so the interval can be changed by rescheduling
+ * the check without losing cached statements, and a failed flush does not stop
+ * later checks.
+ *
+ */
+class TripleCacheManager implements TripleCacheMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(TripleCacheManager.class);
+
+    // a slow flush does not hold up the caches of other clients
+    static final int SCHEDULER_THREADS = 2;
+
+    // shared by all caches, guarded by the class
+    private static ScheduledThreadPoolExecutor scheduler;
+    private static int schedulerUsers;
+
+    private final TripleCache cache;
+    private final ScheduledThreadPoolExecutor executor = acquireScheduler();
+    private final ObjectName objectName;
+
+    private ScheduledFuture<?> check;
+    private long intervalMillis;
+    private boolean stopped;
+
+    /**
+     * Starts checking cache every delayCache milliseconds and registers with the
+     * platform MBean server, a failure to register is logged and otherwise ignored.
+     *
+     * @param cache
+     * @param clientId
+     * @param initDelay
+     * @param delayCache
+     */
+    TripleCacheManager(TripleCache cache, long clientId, long initDelay, long delayCache) {
+        this.cache = cache;
+        schedule(initDelay, delayCache);
+        this.objectName = register(clientId);
+    }
+
+    /**
+     * getter for cache
+     *
+     * @return
+     */
+    TripleCache getCache() {
+        return cache;
+    }
+
+    /**
+     * getter for objectName, null if not registered
+     *
+     * @return
+     */
+    ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * Stops the timer and unregisters, cached statements are left to the caller to flush.
+     */
+    synchronized void stop() {
+        if (stopped) {
+            return;
+        }
+        stopped = true;
+        check.cancel(false);
+        cache.cancel();
+        releaseScheduler();
+        if (objectName == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException | SecurityException e) {
+            logger.warn("Could not unregister cache MBean {}: {}", objectName, e.getMessage());
+        }
+    }
+
+    @Override
+    public int getOccupancy() {
+        return cache.getOccupancy();
+    }
+
+    @Override
+    public long getCacheSize() {
+        return cache.getCacheSize();
+    }
+
+    @Override
+    public void setCacheSize(long cacheSize) {
+        if (cacheSize < 1) {
+            throw new IllegalArgumentException("cacheSize must be at least 1");
+        }
+        cache.setCacheSize(cacheSize);
+    }
+
+    @Override
+    public synchronized long getFlushIntervalMillis() {
+        return intervalMillis;
+    }
+
+    @Override
+    public synchronized void setFlushIntervalMillis(long millis) {
+        if (millis < 1) {
+            throw new IllegalArgumentException("millis must be at least 1");
+        }
+        if (stopped) {
+            throw new IllegalStateException("cache is stopped");
+        }
+        check.cancel(false);
+        cache.setCacheMillis(millis);
+        schedule(millis, millis);
+    }
+
+    @Override
+    public long getLastFlushTime() {
+        return cache.getLastFlushTime();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return cache.getFlushCount();
+    }
+
+    @Override
+    public int getFlushesPerMinute() {
+        return cache.getFlushesPerMinute();
+    }
+
+    @Override
+    public long getFailedFlushCount() {
+        return cache.getFailedFlushCount();
+    }
+
+    @Override
+    public long getStatementsFlushed() {
+        return cache.getStatementsFlushed();
+    }
+
+    @Override
+    public boolean isPaused() {
+        return cache.isPaused();
+    }
+
+    @Override
+    public void flush() {
+        cache.forceRun();
+    }
+
+    @Override
+    public void pause() {
+        cache.pause();
+    }
+
+    @Override
+    public void resume() {
+        cache.resume();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void schedule(long initDelay, long delayCache) {
+        intervalMillis = delayCache;
+        check = executor.scheduleAtFixedRate(() -> {
+            try {
+                cache.run();
+            } catch (RuntimeException e) {
+                // already logged by the cache, statements stay cached for the next check
+            }
+        }, initDelay, delayCache, TimeUnit.MILLISECONDS);
+    }
+
+    private static synchronized ScheduledThreadPoolExecutor acquireScheduler() {
+        if (scheduler == null) {
+            scheduler = new ScheduledThreadPoolExecutor(SCHEDULER_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "marklogic-rdf4j-write-cache");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+        }
+        schedulerUsers++;
+        return scheduler;
+    }
+
+    private static synchronized void releaseScheduler() {
+        if (--schedulerUsers == 0) {
+            // a running flush completes, then the threads end
+            scheduler.shutdown();
+            scheduler = null;
+        }
+    }
+
+    private ObjectName register(long clientId) {
+        try {
+            ObjectName name = new ObjectName(JmxMetrics.DOMAIN + ":type=TripleCache,cache="
+                    + cache.getMetricsCache().name() + ",client=" + clientId);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            return name;
+        } catch (JMException | SecurityException e) {
+            logger.warn("Could not register cache MBean for client {}: {}", clientId, e.getMessage());
+            return null;
+        }
+    }
+}
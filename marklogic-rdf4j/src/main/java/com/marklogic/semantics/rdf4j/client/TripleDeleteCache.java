@@ -17,12 +17,12 @@
 package com.marklogic.semantics.rdf4j.client;
 
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
+import com.marklogic.semantics.rdf4j.metrics.MarkLogicMetrics;
 import org.eclipse.rdf4j.model.*;
 import org.eclipse.rdf4j.query.MalformedQueryException;
 import org.eclipse.rdf4j.query.UpdateExecutionException;
 import org.eclipse.rdf4j.query.parser.sparql.SPARQLUtil;
 import org.eclipse.rdf4j.repository.RepositoryException;
-import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +45,11 @@ public class TripleDeleteCache extends TripleCache {
     public TripleDeleteCache(MarkLogicClient client, long cacheSize) {
         super(client, cacheSize);
     }
+
+    @Override
+    protected MarkLogicMetrics.Cache getMetricsCache() {
+        return MarkLogicMetrics.Cache.DELETE;
+    }
     /**
      * Flushes the cache to the server, writing triples as graph.
      *
@@ -54,7 +59,6 @@ public class TripleDeleteCache extends TripleCache {
     protected synchronized void flush() throws RepositoryException, MalformedQueryException, UpdateExecutionException, IOException {
         if (cache.isEmpty()) { return; }
         StringBuffer entireQuery = new StringBuffer();
-        SPARQLQueryBindingSet bindingSet = new SPARQLQueryBindingSet();
 
         for (Namespace ns :cache.getNamespaces()){
             entireQuery.append("PREFIX "+ns.getPrefix()+": <"+ns.getName()+">. ");
@@ -95,8 +99,9 @@ public class TripleDeleteCache extends TripleCache {
         }
 
         entireQuery.append("} ");
-        log.info(entireQuery.toString());
-        client.sendUpdateQuery(entireQuery.toString(),bindingSet,false,null);
+        // the payload holds every cached statement, so is only built into a message when debugging
+        log.debug("{}", entireQuery);
+        send(entireQuery.toString());
         lastCacheAccess = new Date();
         //log.info("success writing cache: {}",String.valueOf(cache.size()));
         cache.clear();
@@ -23,11 +23,15 @@ import org.eclipse.rdf4j.RDF4JException;
 import org.eclipse.rdf4j.model.*;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.model.util.Models;
+import org.eclipse.rdf4j.model.util.RDFCollections;
 import org.eclipse.rdf4j.repository.config.AbstractRepositoryImplConfig;
 import org.eclipse.rdf4j.repository.config.RepositoryConfigException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Representation of Repository config
  *
@@ -45,6 +49,12 @@ public class MarkLogicRepositoryConfig extends AbstractRepositoryImplConfig {
     public static final IRI UPDATE_ENDPOINT = vf.createIRI(
             "http://www.marklogic.com/v1/graphs");
 
+    public static final IRI HOSTS = vf.createIRI(
+            "http://www.marklogic.com/rdf4j/config#hosts");
+
+    public static final IRI HOST_SELECTION_POLICY = vf.createIRI(
+            "http://www.marklogic.com/rdf4j/config#hostSelectionPolicy");
+
 	private String queryEndpointUrl;
 	private String updateEndpointUrl;
 
@@ -53,6 +63,8 @@ public class MarkLogicRepositoryConfig extends AbstractRepositoryImplConfig {
 	private String user;
 	private String password;
 	private String auth;
+	private List<String> hosts;
+	private String hostSelectionPolicy;
 
     /**
 	 * Base constructor
@@ -152,6 +164,30 @@ public class MarkLogicRepositoryConfig extends AbstractRepositoryImplConfig {
 		this.auth = auth;
 	}
 
+	/**
+	 * MarkLogicRepositoryConfig specific getter/setter for hosts of a cluster,
+	 * used instead of host when set
+	 *
+	 */
+	public List<String> getHosts() {
+		return hosts;
+	}
+	public void setHosts(List<String> hosts) {
+		this.hosts = hosts == null ? null : new ArrayList<>(hosts);
+	}
+
+	/**
+	 * MarkLogicRepositoryConfig specific getter/setter for balancing over hosts,
+	 * either round-robin (default) or least-outstanding
+	 *
+	 */
+	public String getHostSelectionPolicy() {
+		return hostSelectionPolicy;
+	}
+	public void setHostSelectionPolicy(String hostSelectionPolicy) {
+		this.hostSelectionPolicy = hostSelectionPolicy;
+	}
+
 	/**
 	 * MarkLogicRepositoryConfig specific getter/setter for connection string
 	 *
@@ -201,6 +237,19 @@ public class MarkLogicRepositoryConfig extends AbstractRepositoryImplConfig {
 		if (getUpdateEndpointUrl() != null) {
 			model.add(implNode, UPDATE_ENDPOINT, vf.createIRI(getUpdateEndpointUrl()));
 		}
+		if (getHosts() != null) {
+			// an RDF list, keeping the order of hosts
+			Resource head = vf.createBNode();
+			List<Literal> literals = new ArrayList<>(getHosts().size());
+			for (String clusterHost : getHosts()) {
+				literals.add(vf.createLiteral(clusterHost));
+			}
+			RDFCollections.asRDF(literals, head, model);
+			model.add(implNode, HOSTS, head);
+		}
+		if (getHostSelectionPolicy() != null) {
+			model.add(implNode, HOST_SELECTION_POLICY, vf.createLiteral(getHostSelectionPolicy()));
+		}
 
 		return implNode;
 	}
@@ -223,6 +272,15 @@ public class MarkLogicRepositoryConfig extends AbstractRepositoryImplConfig {
 			if (iri != null) {
 				setUpdateEndpointUrl(iri.stringValue());
 			}
+			Resource head = Models.getPropertyResource(model, implNode, HOSTS).orElse(null);
+			if (head != null) {
+				List<String> clusterHosts = new ArrayList<>();
+				for (Value value : RDFCollections.asValues(model, head, new ArrayList<>())) {
+					clusterHosts.add(value.stringValue());
+				}
+				setHosts(clusterHosts);
+			}
+			Models.getPropertyString(model, implNode, HOST_SELECTION_POLICY).ifPresent(this::setHostSelectionPolicy);
 		} catch (RDF4JException e) {
 			throw new RepositoryConfigException(e.getMessage(), e);
 		}
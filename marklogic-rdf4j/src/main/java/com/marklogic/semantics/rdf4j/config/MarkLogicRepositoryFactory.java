@@ -19,7 +19,10 @@
  */
 package com.marklogic.semantics.rdf4j.config;
 
+import com.marklogic.client.DatabaseClientFactory;
 import com.marklogic.semantics.rdf4j.MarkLogicRepository;
+import com.marklogic.semantics.rdf4j.client.HostSelectionPolicy;
+import com.marklogic.semantics.rdf4j.utils.Util;
 import org.eclipse.rdf4j.repository.Repository;
 import org.eclipse.rdf4j.repository.config.RepositoryConfigException;
 import org.eclipse.rdf4j.repository.config.RepositoryFactory;
@@ -67,7 +70,18 @@ public class MarkLogicRepositoryFactory implements RepositoryFactory {
     public Repository getRepository(RepositoryImplConfig config) throws RepositoryConfigException {
         MarkLogicRepository repo = null;
         MarkLogicRepositoryConfig cfg = (MarkLogicRepositoryConfig) config;
-        if (cfg.getHost() != null && cfg.getPort() != 0) {
+        if (cfg.getHosts() != null && !cfg.getHosts().isEmpty()) {
+            // init with hosts of a cluster
+            try {
+                if (cfg.getPort() == 0) {
+                    // parsed from a config file, taking port and credentials from the query endpoint
+                    cfg = withEndpointCredentials(cfg);
+                }
+                repo = new MarkLogicRepository(cfg.getHosts(), cfg.getPort(), null, newSecurityContext(cfg), HostSelectionPolicy.forName(cfg.getHostSelectionPolicy()));
+            } catch (IllegalArgumentException e) {
+                throw new RepositoryConfigException(e.getMessage());
+            }
+        } else if (cfg.getHost() != null && cfg.getPort() != 0) {
             // init with MarkLogicRepositoryConfig
             repo = new MarkLogicRepository(cfg.getHost(),cfg.getPort(),cfg.getUser(),cfg.getPassword(),cfg.getAuth());
         } else if (cfg.getHost() == null) {
@@ -83,4 +97,43 @@ public class MarkLogicRepositoryFactory implements RepositoryFactory {
         }
         return repo;
     }
+
+    /**
+     * Returns copy of config with port, user and password of its query endpoint URL.
+     *
+     */
+    private MarkLogicRepositoryConfig withEndpointCredentials(MarkLogicRepositoryConfig cfg) throws RepositoryConfigException {
+        if (cfg.getQueryEndpointUrl() == null) {
+            throw new RepositoryConfigException("No port or endpoint URL specified for hosts");
+        }
+        URL url;
+        try {
+            url = new URL(cfg.getQueryEndpointUrl());
+        } catch (MalformedURLException e) {
+            throw new RepositoryConfigException(e.getMessage());
+        }
+        String[] cred = url.getUserInfo() == null ? new String[0] : url.getUserInfo().split(":", 2);
+        MarkLogicRepositoryConfig copy = new MarkLogicRepositoryConfig(cfg.getQueryEndpointUrl(), cfg.getUpdateEndpointUrl());
+        copy.setHosts(cfg.getHosts());
+        copy.setHostSelectionPolicy(cfg.getHostSelectionPolicy());
+        copy.setPort(url.getPort());
+        copy.setUser(cred.length > 0 ? cred[0] : null);
+        copy.setPassword(cred.length > 1 ? cred[1] : null);
+        copy.setAuth(cfg.getAuth());
+        return copy;
+    }
+
+    /**
+     * Creates security context for user, password and auth of config, digest if auth is not set.
+     *
+     */
+    private DatabaseClientFactory.SecurityContext newSecurityContext(MarkLogicRepositoryConfig cfg) throws RepositoryConfigException {
+        Util.Authentication type = cfg.getAuth() == null ? Util.Authentication.DIGEST : Util.Authentication.valueOfUncased(cfg.getAuth());
+        if (type == Util.Authentication.BASIC) {
+            return new DatabaseClientFactory.BasicAuthContext(cfg.getUser(), cfg.getPassword());
+        } else if (type == Util.Authentication.DIGEST) {
+            return new DatabaseClientFactory.DigestAuthContext(cfg.getUser(), cfg.getPassword());
+        }
+        throw new RepositoryConfigException("Unsupported auth for hosts: " + cfg.getAuth());
+    }
 }
\ No newline at end of file
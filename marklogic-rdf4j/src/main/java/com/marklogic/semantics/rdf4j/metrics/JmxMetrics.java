@@ -0,0 +1,354 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.beans.ConstructorProperties;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default {@link MarkLogicMetrics}, keeping counters and latency histograms
+ * readable as a platform MXBean.
+ *
+ */
+public class JmxMetrics implements MarkLogicMetrics, JmxMetricsMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(JmxMetrics.class);
+
+    public static final String DOMAIN = "com.marklogic.semantics.rdf4j";
+
+    // tells apart repositories on the same database
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    private final Map<Operation, OperationCounters> operations = new EnumMap<>(Operation.class);
+    private final Map<Cache, CacheCounters> caches = new EnumMap<>(Cache.class);
+    private final AtomicLong inFlight = new AtomicLong();
+
+    private ObjectName objectName;
+
+    /**
+     * Constructor.
+     */
+    public JmxMetrics() {
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new OperationCounters());
+        }
+        for (Cache cache : Cache.values()) {
+            caches.put(cache, new CacheCounters());
+        }
+    }
+
+    /**
+     * Registers with the platform MBean server, a failure is logged and otherwise ignored.
+     *
+     * @param name identifies the repository, such as host:port/database
+     */
+    public synchronized void register(String name) {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            ObjectName candidate = new ObjectName(DOMAIN + ":type=Metrics,name="
+                    + ObjectName.quote(name + "#" + instances.incrementAndGet()));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, candidate);
+            objectName = candidate;
+        } catch (JMException | SecurityException e) {
+            logger.warn("Could not register metrics MBean for {}: {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * Unregisters from the platform MBean server if registered.
+     */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException | SecurityException e) {
+            logger.warn("Could not unregister metrics MBean {}: {}", objectName, e.getMessage());
+        }
+        objectName = null;
+    }
+
+    /**
+     * getter for objectName, null unless registered
+     *
+     * @return
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public void requestStarted(Operation operation) {
+        inFlight.incrementAndGet();
+        operations.get(operation).inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void requestFinished(Operation operation, long nanos, boolean failed) {
+        inFlight.decrementAndGet();
+        OperationCounters counters = operations.get(operation);
+        counters.inFlight.decrementAndGet();
+        counters.latency.record(nanos);
+        if (failed) {
+            counters.errors.incrementAndGet();
+        }
+    }
+
+    @Override
+    public void resultClosed(Operation operation, long rows, long bytes) {
+        OperationCounters counters = operations.get(operation);
+        counters.results.incrementAndGet();
+        counters.rows.addAndGet(rows);
+        counters.bytes.addAndGet(bytes);
+    }
+
+    @Override
+    public void cacheAdded(Cache cache, int statements) {
+        caches.get(cache).occupancy.addAndGet(statements);
+    }
+
+    @Override
+    public void cacheFlushed(Cache cache, int statements, long nanos, boolean failed) {
+        CacheCounters counters = caches.get(cache);
+        counters.flushTime.record(nanos);
+        if (failed) {
+            counters.failedFlushes.incrementAndGet();
+        } else {
+            counters.occupancy.addAndGet(-statements);
+            counters.statements.addAndGet(statements);
+        }
+    }
+
+    @Override
+    public Map<String, OperationStats> getOperations() {
+        Map<String, OperationStats> stats = new LinkedHashMap<>();
+        for (Map.Entry<Operation, OperationCounters> entry : operations.entrySet()) {
+            OperationCounters c = entry.getValue();
+            LatencyHistogram h = c.latency;
+            stats.put(entry.getKey().name(), new OperationStats(h.getCount(), c.errors.get(), c.inFlight.get(),
+                    h.getMeanMillis(), h.getPercentileMillis(50), h.getPercentileMillis(95),
+                    h.getPercentileMillis(99), h.getMaxMillis(), c.results.get(), c.rows.get(), c.bytes.get()));
+        }
+        return stats;
+    }
+
+    @Override
+    public Map<String, CacheStats> getCaches() {
+        Map<String, CacheStats> stats = new LinkedHashMap<>();
+        for (Map.Entry<Cache, CacheCounters> entry : caches.entrySet()) {
+            CacheCounters c = entry.getValue();
+            LatencyHistogram h = c.flushTime;
+            long flushes = h.getCount() - c.failedFlushes.get();
+            stats.put(entry.getKey().name(), new CacheStats(h.getCount(), c.failedFlushes.get(),
+                    c.statements.get(), c.occupancy.get(),
+                    flushes > 0 ? (double) c.statements.get() / flushes : 0,
+                    h.getMeanMillis(), h.getPercentileMillis(99)));
+        }
+        return stats;
+    }
+
+    @Override
+    public long getInFlightRequests() {
+        return inFlight.get();
+    }
+
+    @Override
+    public void reset() {
+        for (OperationCounters c : operations.values()) {
+            c.latency.reset();
+            c.errors.set(0);
+            c.results.set(0);
+            c.rows.set(0);
+            c.bytes.set(0);
+        }
+        for (CacheCounters c : caches.values()) {
+            c.flushTime.reset();
+            c.failedFlushes.set(0);
+            c.statements.set(0);
+        }
+    }
+
+    /**
+     * Snapshot of the requests of one operation.
+     */
+    public static class OperationStats {
+        private final long count;
+        private final long errors;
+        private final long inFlight;
+        private final double meanMillis;
+        private final double p50Millis;
+        private final double p95Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+        private final long results;
+        private final long rows;
+        private final long bytes;
+
+        @ConstructorProperties({"count", "errors", "inFlight", "meanMillis", "p50Millis", "p95Millis",
+                "p99Millis", "maxMillis", "results", "rows", "bytes"})
+        public OperationStats(long count, long errors, long inFlight, double meanMillis, double p50Millis,
+                              double p95Millis, double p99Millis, double maxMillis, long results, long rows, long bytes) {
+            this.count = count;
+            this.errors = errors;
+            this.inFlight = inFlight;
+            this.meanMillis = meanMillis;
+            this.p50Millis = p50Millis;
+            this.p95Millis = p95Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+            this.results = results;
+            this.rows = rows;
+            this.bytes = bytes;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getInFlight() {
+            return inFlight;
+        }
+
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+
+        public double getP50Millis() {
+            return p50Millis;
+        }
+
+        public double getP95Millis() {
+            return p95Millis;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+
+        public long getResults() {
+            return results;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * Snapshot of the flushes of one cache.
+     */
+    public static class CacheStats {
+        private final long flushes;
+        private final long failedFlushes;
+        private final long statementsFlushed;
+        private final long occupancy;
+        private final double meanFlushSize;
+        private final double meanFlushMillis;
+        private final double p99FlushMillis;
+
+        @ConstructorProperties({"flushes", "failedFlushes", "statementsFlushed", "occupancy", "meanFlushSize",
+                "meanFlushMillis", "p99FlushMillis"})
+        public CacheStats(long flushes, long failedFlushes, long statementsFlushed, long occupancy,
+                          double meanFlushSize, double meanFlushMillis, double p99FlushMillis) {
+            this.flushes = flushes;
+            this.failedFlushes = failedFlushes;
+            this.statementsFlushed = statementsFlushed;
+            this.occupancy = occupancy;
+            this.meanFlushSize = meanFlushSize;
+            this.meanFlushMillis = meanFlushMillis;
+            this.p99FlushMillis = p99FlushMillis;
+        }
+
+        public long getFlushes() {
+            return flushes;
+        }
+
+        public long getFailedFlushes() {
+            return failedFlushes;
+        }
+
+        public long getStatementsFlushed() {
+            return statementsFlushed;
+        }
+
+        public long getOccupancy() {
+            return occupancy;
+        }
+
+        public double getMeanFlushSize() {
+            return meanFlushSize;
+        }
+
+        public double getMeanFlushMillis() {
+            return meanFlushMillis;
+        }
+
+        public double getP99FlushMillis() {
+            return p99FlushMillis;
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private static class OperationCounters {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong inFlight = new AtomicLong();
+        private final AtomicLong results = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+    }
+
+    private static class CacheCounters {
+        private final LatencyHistogram flushTime = new LatencyHistogram();
+        private final AtomicLong failedFlushes = new AtomicLong();
+        private final AtomicLong statements = new AtomicLong();
+        private final AtomicLong occupancy = new AtomicLong();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link JmxMetrics}.
+ *
+ */
+public interface JmxMetricsMXBean {
+
+    /**
+     * Returns request statistics keyed by operation name.
+     *
+     * @return
+     */
+    Map<String, JmxMetrics.OperationStats> getOperations();
+
+    /**
+     * Returns flush statistics keyed by cache name.
+     *
+     * @return
+     */
+    Map<String, JmxMetrics.CacheStats> getCaches();
+
+    /**
+     * getter for number of requests awaiting a response
+     *
+     * @return
+     */
+    long getInFlightRequests();
+
+    /**
+     * Clears all counters and latencies, apart from in flight requests and cache occupancy.
+     */
+    void reset();
+}
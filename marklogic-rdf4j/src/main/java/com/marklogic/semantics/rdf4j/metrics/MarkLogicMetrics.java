@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Receives measurements of the requests and write cache flushes of a repository.
+ *
+ * Implement this to bridge to a metrics library, methods are called on the
+ * request path from many threads and must be fast and thread safe. All methods
+ * do nothing by default. {@link JmxMetrics} is used unless a repository is
+ * given another implementation.
+ *
+ */
+public interface MarkLogicMetrics {
+
+    /**
+     * Kinds of request sent to the server.
+     */
+    enum Operation {
+        SELECT, CONSTRUCT, ASK, UPDATE, ADD, DELETE
+    }
+
+    /**
+     * Client side caches batching single statement writes.
+     */
+    enum Cache {
+        WRITE, DELETE
+    }
+
+    /**
+     * Metrics discarding all measurements.
+     */
+    MarkLogicMetrics NOOP = new MarkLogicMetrics() {
+    };
+
+    /**
+     * Called when a request is sent.
+     *
+     * @param operation
+     */
+    default void requestStarted(Operation operation) {
+    }
+
+    /**
+     * Called when the response to a request started, or the request failed.
+     *
+     * @param operation
+     * @param nanos time since requestStarted
+     * @param failed
+     */
+    default void requestFinished(Operation operation, long nanos, boolean failed) {
+    }
+
+    /**
+     * Called when a streamed SELECT or CONSTRUCT result is closed.
+     *
+     * @param operation
+     * @param rows solutions or statements read
+     * @param bytes response bytes read
+     */
+    default void resultClosed(Operation operation, long rows, long bytes) {
+    }
+
+    /**
+     * Called when statements are added to a cache.
+     *
+     * @param cache
+     * @param statements
+     */
+    default void cacheAdded(Cache cache, int statements) {
+    }
+
+    /**
+     * Called when a cache was flushed, statements stay cached if the flush failed.
+     *
+     * @param cache
+     * @param statements
+     * @param nanos
+     * @param failed
+     */
+    default void cacheFlushed(Cache cache, int statements, long nanos, boolean failed) {
+    }
+
+    /**
+     * Returns metrics passing every measurement to each of metrics, for example to
+     * keep JMX while reporting to a metrics library.
+     *
+     * @param metrics
+     * @return MarkLogicMetrics
+     */
+    static MarkLogicMetrics composite(MarkLogicMetrics... metrics) {
+        List<MarkLogicMetrics> all = Arrays.asList(metrics.clone());
+        return new MarkLogicMetrics() {
+            @Override
+            public void requestStarted(Operation operation) {
+                for (MarkLogicMetrics m : all) {
+                    m.requestStarted(operation);
+                }
+            }
+
+            @Override
+            public void requestFinished(Operation operation, long nanos, boolean failed) {
+                for (MarkLogicMetrics m : all) {
+                    m.requestFinished(operation, nanos, failed);
+                }
+            }
+
+            @Override
+            public void resultClosed(Operation operation, long rows, long bytes) {
+                for (MarkLogicMetrics m : all) {
+                    m.resultClosed(operation, rows, bytes);
+                }
+            }
+
+            @Override
+            public void cacheAdded(Cache cache, int statements) {
+                for (MarkLogicMetrics m : all) {
+                    m.cacheAdded(cache, statements);
+                }
+            }
+
+            @Override
+            public void cacheFlushed(Cache cache, int statements, long nanos, boolean failed) {
+                for (MarkLogicMetrics m : all) {
+                    m.cacheFlushed(cache, statements, nanos, failed);
+                }
+            }
+        };
+    }
+}
@@ -24,6 +24,7 @@ import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
+import com.marklogic.semantics.rdf4j.client.MarkLogicRequestContext;
 import org.eclipse.rdf4j.query.BooleanQuery;
 import org.eclipse.rdf4j.query.MalformedQueryException;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
@@ -33,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * boolean query
@@ -63,9 +65,22 @@ public class MarkLogicBooleanQuery extends MarkLogicQuery implements BooleanQuer
      */
     @Override
     public boolean evaluate() throws QueryEvaluationException {
+        return evaluate(startRequest());
+    }
+
+    /**
+     * Evaluate boolean query on the client's async executor.
+     *
+     * @return future of the answer, cancelling it cancels the request
+     */
+    public CompletableFuture<Boolean> evaluateAsync() {
+        return submit(context -> evaluate(context));
+    }
+
+    private boolean evaluate(MarkLogicRequestContext context) throws QueryEvaluationException {
         try {
             sync();
-            return getMarkLogicClient().sendBooleanQuery(getQueryString(), getBindings(), getIncludeInferred(),getBaseURI());
+            return getMarkLogicClient().sendBooleanQuery(getUnboundQueryString(), getBindings(), getIncludeInferred(),getBaseURI(),context);
         }catch (RepositoryException e) {
             throw new QueryEvaluationException(e.getMessage(), e);
         }catch (MalformedQueryException e) {
@@ -74,6 +89,8 @@ public class MarkLogicBooleanQuery extends MarkLogicQuery implements BooleanQuer
             throw new QueryEvaluationException(e.getMessage(), e);
         }catch(FailedRequestException e){
             throw new QueryEvaluationException(e.getMessage(), e);
+        }finally {
+            context.getRequest().returned();
         }
     }
 
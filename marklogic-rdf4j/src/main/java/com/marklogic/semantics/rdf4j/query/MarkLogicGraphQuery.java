@@ -24,17 +24,21 @@ import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
+import com.marklogic.semantics.rdf4j.client.MarkLogicRequestContext;
+import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.query.GraphQuery;
 import org.eclipse.rdf4j.query.GraphQueryResult;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
 import org.eclipse.rdf4j.query.QueryResults;
 import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
+import org.reactivestreams.Publisher;
 import org.eclipse.rdf4j.rio.RDFHandler;
 import org.eclipse.rdf4j.rio.RDFHandlerException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * graph query
@@ -66,13 +70,41 @@ public class MarkLogicGraphQuery extends MarkLogicQuery implements GraphQuery,Ma
     @Override
     public GraphQueryResult evaluate()
             throws QueryEvaluationException {
+        return evaluate(startRequest());
+    }
+
+    /**
+     * Evaluate graph query on the client's async executor.
+     *
+     * @return future of GraphQueryResult, cancelling it cancels the request
+     */
+    public CompletableFuture<GraphQueryResult> evaluateAsync() {
+        return submit(context -> evaluate(context));
+    }
+
+    /**
+     * Returns publisher of the statements of this query, sending the query once per subscription.
+     *
+     * Statements are parsed only as the subscriber requests them, and cancelling the
+     * subscription closes the response, so results of any size stream in constant memory.
+     *
+     * @return Publisher of Statement
+     */
+    public Publisher<Statement> evaluatePublisher() {
+        return getMarkLogicClient().publishGraphQuery(getUnboundQueryString(), getBindings(), getIncludeInferred(), getBaseURI(), this::syncAndStartRequest);
+    }
+
+    private GraphQueryResult evaluate(MarkLogicRequestContext context)
+            throws QueryEvaluationException {
         try {
             sync();
-            return getMarkLogicClient().sendGraphQuery(getQueryString(),getBindings(),getIncludeInferred(),getBaseURI());
+            return getMarkLogicClient().sendGraphQuery(getUnboundQueryString(),getBindings(),getIncludeInferred(),getBaseURI(),context);
         } catch (IOException e) {
             throw new QueryEvaluationException(e);
         } catch (MarkLogicRdf4jException e) {
             throw new QueryEvaluationException(e);
+        } finally {
+            context.getRequest().returned();
         }
     }
 
@@ -23,8 +23,12 @@ import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
+import com.marklogic.semantics.rdf4j.client.CancellableRequest;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClientDependent;
+import com.marklogic.semantics.rdf4j.client.MarkLogicRequestContext;
+import com.marklogic.semantics.rdf4j.client.RequestTrace;
+import com.marklogic.semantics.rdf4j.client.RequestTraceListener;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.query.Dataset;
@@ -35,6 +39,13 @@ import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
 /**
  * Base query class
  *
@@ -54,6 +65,16 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
 
     private boolean includeInferred;
 
+    // rulesets, graph perms and constraining query of this query only, never written to the shared client
+    private volatile MarkLogicRequestContext requestContext = MarkLogicRequestContext.EMPTY;
+
+    // executions are dropped once their results are no longer referenced
+    private final Map<CancellableRequest, Boolean> activeRequests = new WeakHashMap<>();
+
+    private volatile boolean tracing;
+    private volatile RequestTraceListener traceListener;
+    private volatile RequestTrace lastTrace;
+
     /**
      * Constructor
      *
@@ -95,7 +116,7 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
     }
 
     /**
-     * sets the query string
+     * gets the query string with bindings spliced in
      *
      * @return
      */
@@ -103,6 +124,16 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
         return QueryStringUtil.getQueryString(this.queryString, getBindings());
     }
 
+    /**
+     * gets the query string as prepared, without bindings; bindings are sent
+     * to the server alongside it so that the query text stays the same
+     *
+     * @return
+     */
+    public String getUnboundQueryString() {
+        return this.queryString;
+    }
+
     /**
      * sets the query string
      *
@@ -209,24 +240,6 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
         return null;
     }
 
-    /**
-     * Sets maximum execution time for query.
-     *
-     * @param maxExecTime
-     */
-    @Override
-    public void setMaxExecutionTime(int maxExecTime) {
-    }
-
-    /**
-     * getter for MaxExecutionTime
-     * @return int
-     */
-    @Override
-    public int getMaxExecutionTime() {
-        return 0;
-    }
-
     /**
      * getter for BaseURI.
      * @return
@@ -252,7 +265,7 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
      */
     @Override
     public void setConstrainingQueryDefinition(QueryDefinition constrainingQueryDefinition) {
-        getMarkLogicClient().setConstrainingQueryDefinition(constrainingQueryDefinition);
+        this.requestContext = requestContext.withConstrainingQueryDefinition(constrainingQueryDefinition);
     }
 
     /**
@@ -261,16 +274,17 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
      */
     @Override
     public QueryDefinition getConstrainingQueryDefinition() {
-        return getMarkLogicClient().getConstrainingQueryDefinition();
+        return requestContext.getConstrainingQueryDefinition();
     }
 
     /**
-     * Sets the inference rulesets to be used by query.
+     * Sets the inference rulesets to be used by query, in addition to the
+     * connection's default rulesets.
      *
      * @param ruleset
      */
     public void setRulesets(SPARQLRuleset ... ruleset){
-        getMarkLogicClient().setRulesets(ruleset);
+        this.requestContext = requestContext.withRulesets(getMarkLogicClient().withDefaultRulesets(ruleset));
     }
 
     /**
@@ -278,7 +292,7 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
      * @return
      */
     public SPARQLRuleset[] getRulesets(){
-        return getMarkLogicClient().getRulesets();
+        return requestContext.getRulesets();
     }
 
     /**
@@ -288,7 +302,7 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
      */
     @Override
     public void setGraphPerms(GraphPermissions graphPerms) {
-        getMarkLogicClient().setGraphPerms(graphPerms);
+        this.requestContext = requestContext.withGraphPerms(graphPerms);
     }
 
     /**
@@ -297,10 +311,156 @@ public class MarkLogicQuery extends AbstractQuery implements Query,MarkLogicClie
      */
     @Override
     public GraphPermissions getGraphPerms() {
-        return getMarkLogicClient().getGraphPerms();
+        return requestContext.getGraphPerms();
+    }
+
+    /**
+     * getter for the settings sent with each execution of this query.
+     *
+     * @return
+     */
+    protected MarkLogicRequestContext getRequestContext() {
+        return requestContext;
+    }
+
+    /**
+     * Cancels all running executions of this query, their callers get a QueryInterruptedException.
+     */
+    public void cancel() {
+        List<CancellableRequest> running;
+        synchronized (activeRequests) {
+            running = new ArrayList<>(activeRequests.keySet());
+            activeRequests.clear();
+        }
+        for (CancellableRequest request : running) {
+            request.cancel();
+        }
+    }
+
+    /**
+     * Enables tracing of executions, see {@link RequestTrace}; the trace of a SELECT or CONSTRUCT
+     * is also available from its result, a {@link com.marklogic.semantics.rdf4j.client.TracedQueryResult}.
+     *
+     * @param tracing
+     */
+    public void setTracing(boolean tracing) {
+        this.tracing = tracing;
+    }
+
+    /**
+     * Returns true if executions are traced, by setTracing or a trace listener.
+     *
+     * @return
+     */
+    public boolean isTracing() {
+        return tracing || traceListener != null;
+    }
+
+    /**
+     * Sets listener told of the trace of each execution, which enables tracing.
+     *
+     * @param traceListener null to only trace if setTracing(true)
+     */
+    public void setTraceListener(RequestTraceListener traceListener) {
+        this.traceListener = traceListener;
+    }
+
+    /**
+     * getter for traceListener
+     *
+     * @return
+     */
+    public RequestTraceListener getTraceListener() {
+        return traceListener;
+    }
+
+    /**
+     * Returns trace of the latest execution, which may still be running, or null if not traced.
+     *
+     * @return
+     */
+    public RequestTrace getLastTrace() {
+        return lastTrace;
+    }
+
+    /**
+     * Starts one execution, limited to the maximum execution time and cancellable by {@link #cancel()}.
+     *
+     * @return settings to send with the execution
+     */
+    protected MarkLogicRequestContext startRequest() {
+        CancellableRequest request = new CancellableRequest(getMaxExecutionTime() * 1000L);
+        synchronized (activeRequests) {
+            activeRequests.put(request, Boolean.TRUE);
+        }
+        MarkLogicRequestContext context = requestContext.withRequest(request);
+        if (isTracing()) {
+            RequestTrace trace = new RequestTrace(traceListener);
+            lastTrace = trace;
+            context = context.withTrace(trace);
+        }
+        return context;
+    }
+
+    /**
+     * Starts one execution and runs it on the client's async executor.
+     *
+     * Cancelling the returned future cancels the execution, aborting its HTTP call.
+     *
+     * @param evaluation
+     * @return future of the evaluation's result
+     */
+    protected <T> CompletableFuture<T> submit(Evaluation<T> evaluation) {
+        MarkLogicRequestContext context = startRequest();
+        CancellableRequest request = context.getRequest();
+        CompletableFuture<T> future = new CompletableFuture<T>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                if (cancelled) {
+                    request.cancel();
+                }
+                return cancelled;
+            }
+        };
+        try {
+            getMarkLogicClient().getAsyncExecutor().execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(evaluation.evaluate(context));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            request.cancel();
+            future.completeExceptionally(e);
+        }
+        return future;
     }
 
     protected void sync() throws MarkLogicRdf4jException {
         getMarkLogicClient().sync();
     }
+
+    /**
+     * Flushes pending writes and starts one execution, for each subscription to a result publisher.
+     *
+     * @return settings to send with the execution
+     */
+    protected MarkLogicRequestContext syncAndStartRequest() {
+        sync();
+        return startRequest();
+    }
+
+    /**
+     * One execution of a query, run by {@link #submit(Evaluation)}.
+     *
+     * @param <T>
+     */
+    protected interface Evaluation<T> {
+        T evaluate(MarkLogicRequestContext context) throws Exception;
+    }
 }
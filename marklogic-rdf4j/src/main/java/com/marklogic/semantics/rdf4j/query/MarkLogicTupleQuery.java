@@ -25,12 +25,16 @@ import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.rdf4j.MarkLogicRdf4jException;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
+import com.marklogic.semantics.rdf4j.client.MarkLogicRequestContext;
 import org.eclipse.rdf4j.query.*;
 import org.eclipse.rdf4j.repository.RepositoryException;
 import org.eclipse.rdf4j.repository.sparql.query.SPARQLQueryBindingSet;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Tuple query.
  *
@@ -43,6 +47,11 @@ public class MarkLogicTupleQuery extends MarkLogicQuery implements TupleQuery,Ma
     protected final long start = 1;
     protected final long pageLength=-1; // this value is a flag to not set setPageLength()
 
+    public static final long DEFAULT_PARALLEL_PAGE_LENGTH = 10000;
+
+    private int pageConcurrency = 1; // pages fetched concurrently by evaluate(), 1 fetches everything in one request
+    private long parallelPageLength = DEFAULT_PARALLEL_PAGE_LENGTH;
+
     /**
      * Constructor
      *
@@ -63,7 +72,16 @@ public class MarkLogicTupleQuery extends MarkLogicQuery implements TupleQuery,Ma
      */
     @Override
     public TupleQueryResult evaluate() throws QueryEvaluationException {
-        return evaluate(this.start,this.pageLength);
+        return evaluate(startRequest());
+    }
+
+    /**
+     * Evaluate tuple query on the client's async executor.
+     *
+     * @return future of TupleQueryResult, cancelling it cancels the request
+     */
+    public CompletableFuture<TupleQueryResult> evaluateAsync() {
+        return submit(context -> evaluate(context));
     }
 
     /**
@@ -76,16 +94,95 @@ public class MarkLogicTupleQuery extends MarkLogicQuery implements TupleQuery,Ma
      */
     public TupleQueryResult evaluate(long start, long pageLength)
             throws QueryEvaluationException {
+        return evaluate(start, pageLength, startRequest());
+    }
+
+    /**
+     * Evaluate tuple query with pagination on the client's async executor.
+     *
+     * @param start
+     * @param pageLength
+     * @return future of TupleQueryResult, cancelling it cancels the request
+     */
+    public CompletableFuture<TupleQueryResult> evaluateAsync(long start, long pageLength) {
+        return submit(context -> evaluate(start, pageLength, context));
+    }
+
+    /**
+     * Returns publisher of the solutions of this query, sending the query once per subscription.
+     *
+     * Solutions are parsed only as the subscriber requests them, and cancelling the
+     * subscription closes the response, so results of any size stream in constant memory.
+     *
+     * @return Publisher of BindingSet
+     */
+    public Publisher<BindingSet> evaluatePublisher() {
+        return getMarkLogicClient().publishTupleQuery(getUnboundQueryString(), getBindings(), this.start, this.pageLength, getIncludeInferred(), getBaseURI(), this::syncAndStartRequest);
+    }
+
+    private TupleQueryResult evaluate(MarkLogicRequestContext context) throws QueryEvaluationException {
+        if(pageConcurrency > 1){
+            try {
+                sync();
+                return getMarkLogicClient().sendParallelTupleQuery(getUnboundQueryString(), getBindings(), this.start, this.parallelPageLength, this.pageConcurrency, getIncludeInferred(), getBaseURI(), context);
+            }catch (RepositoryException e) {
+                throw new QueryEvaluationException(e.getMessage(), e);
+            }catch (MalformedQueryException e) {
+                throw new QueryEvaluationException(e.getMessage(), e);
+            }finally {
+                context.getRequest().returned();
+            }
+        }
+        return evaluate(this.start, this.pageLength, context);
+    }
+
+    private TupleQueryResult evaluate(long start, long pageLength, MarkLogicRequestContext context)
+            throws QueryEvaluationException {
         try {
             sync();
-            return getMarkLogicClient().sendTupleQuery(getQueryString(), getBindings(), start, pageLength, getIncludeInferred(), getBaseURI());
+            return getMarkLogicClient().sendTupleQuery(getUnboundQueryString(), getBindings(), start, pageLength, getIncludeInferred(), getBaseURI(), context);
         }catch (RepositoryException e) {
             throw new QueryEvaluationException(e.getMessage(), e);
         }catch (MalformedQueryException e) {
             throw new QueryEvaluationException(e.getMessage(), e);
         }catch(FailedRequestException e){
             throw new QueryEvaluationException(e.getMessage(), e);
+        }finally {
+            context.getRequest().returned();
+        }
+    }
+
+    /**
+     * Fetch results of evaluate() as pages of pageLength, with up to pageConcurrency pages
+     * requested concurrently and returned in order. Only meaningful for queries with an ORDER BY.
+     *
+     * @param pageConcurrency number of pages in flight, 1 disables parallel fetching
+     * @param pageLength number of results per page request
+     */
+    public void setParallelPageFetch(int pageConcurrency, long pageLength) {
+        if(pageConcurrency < 1 || pageLength < 1){
+            throw new IllegalArgumentException("pageConcurrency and pageLength must be positive.");
         }
+        this.pageConcurrency = pageConcurrency;
+        this.parallelPageLength = pageLength;
+    }
+
+    /**
+     * getter for pageConcurrency
+     *
+     * @return int
+     */
+    public int getPageConcurrency() {
+        return this.pageConcurrency;
+    }
+
+    /**
+     * getter for parallel page length
+     *
+     * @return long
+     */
+    public long getParallelPageLength() {
+        return this.parallelPageLength;
     }
 
     /**
@@ -25,7 +25,9 @@ import com.marklogic.client.semantics.GraphPermissions;
 import com.marklogic.client.query.QueryDefinition;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
+import com.marklogic.semantics.rdf4j.client.MarkLogicRequestContext;
 import org.eclipse.rdf4j.query.MalformedQueryException;
+import org.eclipse.rdf4j.query.QueryInterruptedException;
 import org.eclipse.rdf4j.query.Update;
 import org.eclipse.rdf4j.query.UpdateExecutionException;
 import org.eclipse.rdf4j.repository.RepositoryException;
@@ -34,6 +36,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Update query
@@ -63,9 +66,27 @@ public class MarkLogicUpdateQuery extends MarkLogicQuery implements Update,MarkL
      */
     @Override
     public void execute() throws UpdateExecutionException {
+        execute(startRequest());
+    }
+
+    /**
+     * Execute update query on the client's async executor.
+     *
+     * @return future completed once the update is done, cancelling it cancels the request
+     */
+    public CompletableFuture<Void> executeAsync() {
+        return submit(context -> {
+            execute(context);
+            return null;
+        });
+    }
+
+    private void execute(MarkLogicRequestContext context) throws UpdateExecutionException {
         try {
             sync();
-            getMarkLogicClient().sendUpdateQuery(getQueryString(), getBindings(), getIncludeInferred(), getBaseURI());
+            getMarkLogicClient().sendUpdateQuery(getQueryString(), getBindings(), getIncludeInferred(), getBaseURI(), context);
+        }catch(QueryInterruptedException e){
+            throw new UpdateExecutionException(e.getMessage(), e);
         }catch(ForbiddenUserException | FailedRequestException e){
             throw new UpdateExecutionException(e);
         } catch (RepositoryException e) {
@@ -74,6 +95,8 @@ public class MarkLogicUpdateQuery extends MarkLogicQuery implements Update,MarkL
             throw new UpdateExecutionException(e);
         } catch (IOException e) {
             throw new UpdateExecutionException(e);
+        } finally {
+            context.getRequest().returned();
         }
     }
 
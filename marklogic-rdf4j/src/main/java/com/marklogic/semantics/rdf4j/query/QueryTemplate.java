@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.query;
+
+import org.eclipse.rdf4j.query.parser.QueryParserUtil;
+
+import java.util.Locale;
+
+/**
+ * Result of analysing a SPARQL query string once: its query form. Immutable, so one
+ * instance is shared by every query prepared from the same string.
+ *
+ */
+public final class QueryTemplate {
+
+    /**
+     * Query forms, as routed by prepareQuery.
+     */
+    public enum Form {
+        TUPLE,
+        BOOLEAN,
+        GRAPH
+    }
+
+    private final String queryString;
+    private final Form form;
+
+    /**
+     * constructor, analyses queryString
+     *
+     * @param queryString
+     */
+    public QueryTemplate(String queryString) {
+        this.queryString = queryString;
+        String upper = QueryParserUtil.removeSPARQLQueryProlog(queryString).toUpperCase(Locale.ROOT);
+        if (upper.startsWith("SELECT")) {
+            this.form = Form.TUPLE;
+        } else if (upper.startsWith("ASK")) {
+            this.form = Form.BOOLEAN;
+        } else {
+            this.form = Form.GRAPH;
+        }
+    }
+
+    /**
+     * getter for query string
+     *
+     * @return
+     */
+    public String getQueryString() {
+        return queryString;
+    }
+
+    /**
+     * getter for query form
+     *
+     * @return
+     */
+    public Form getForm() {
+        return form;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/**
+ * A library that enables access to a MarkLogic-backed triple-store via the
+ * RDF4J API.
+ */
+package com.marklogic.semantics.rdf4j.query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of {@link QueryTemplate}s keyed by query string, shared by all
+ * connections of a repository. Entries are evicted least recently used once
+ * maxEntries is reached.
+ *
+ */
+public class QueryTemplateCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 500;
+
+    private final int maxEntries;
+
+    private final LinkedHashMap<String, QueryTemplate> templates;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a cache with default bound.
+     */
+    public QueryTemplateCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries maximum number of cached templates
+     */
+    public QueryTemplateCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive.");
+        }
+        this.maxEntries = maxEntries;
+        this.templates = new LinkedHashMap<String, QueryTemplate>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QueryTemplate> eldest) {
+                return size() > QueryTemplateCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the template for queryString, analysing and caching it on first use.
+     *
+     * @param queryString
+     * @return QueryTemplate
+     */
+    public QueryTemplate getTemplate(String queryString) {
+        synchronized (templates) {
+            QueryTemplate template = templates.get(queryString);
+            if (template != null) {
+                hits.incrementAndGet();
+                return template;
+            }
+        }
+        // analyse outside the lock, a concurrent miss on the same string just analyses twice
+        misses.incrementAndGet();
+        QueryTemplate template = new QueryTemplate(queryString);
+        synchronized (templates) {
+            templates.put(queryString, template);
+        }
+        return template;
+    }
+
+    /**
+     * Drops all cached templates.
+     */
+    public void clear() {
+        synchronized (templates) {
+            templates.clear();
+        }
+    }
+
+    /**
+     * getter for number of cached templates
+     *
+     * @return
+     */
+    public int size() {
+        synchronized (templates) {
+            return templates.size();
+        }
+    }
+
+    /**
+     * getter for maxEntries
+     *
+     * @return
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * getter for hit count
+     *
+     * @return
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * getter for miss count
+     *
+     * @return
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.utils;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ValueFactory returning the same instance for IRIs, literals and blank node ids created
+ * again while still in its term table, so values repeated through a parsed query result
+ * share one instance. Other values are created by the delegate.
+ *
+ * The term table is a number of slots, each holding the last term hashed to it, so a
+ * colliding term replaces the one before it. A table given a larger maximum size doubles
+ * once as many terms were added as it has slots, until it reaches the maximum, so a small
+ * result only allocates a small table. Safe for use by many threads.
+ *
+ */
+public class InterningValueFactory implements ValueFactory {
+
+    public static final int DEFAULT_TABLE_SIZE = 4096;
+
+    public static final int DEFAULT_INITIAL_TABLE_SIZE = 64;
+
+    /**
+     * Lifetime of the term table used by {@link com.marklogic.semantics.rdf4j.client.MarkLogicClient} to parse query results.
+     */
+    public enum Scope {
+        /** a table for each query result, dropped with it, growing with the result */
+        RESULT,
+        /** a table shared by the results of a client */
+        CLIENT
+    }
+
+    private final ValueFactory delegate;
+
+    private final int maxTableSize;
+
+    private volatile Table table;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a factory with default table size.
+     *
+     * @param delegate creates values not in the table
+     */
+    public InterningValueFactory(ValueFactory delegate) {
+        this(delegate, DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * Creates a factory with a table of fixed size.
+     *
+     * @param delegate creates values not in the table
+     * @param tableSize number of slots, rounded up to a power of two
+     */
+    public InterningValueFactory(ValueFactory delegate, int tableSize) {
+        this(delegate, tableSize, tableSize);
+    }
+
+    /**
+     * Creates a factory with a table growing from initialTableSize up to maxTableSize slots.
+     *
+     * @param delegate creates values not in the table
+     * @param initialTableSize number of slots to start with, rounded up to a power of two
+     * @param maxTableSize number of slots to grow to, rounded up to a power of two
+     */
+    public InterningValueFactory(ValueFactory delegate, int initialTableSize, int maxTableSize) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate must not be null.");
+        }
+        if (initialTableSize < 1 || maxTableSize > 1 << 30 || initialTableSize > maxTableSize) {
+            throw new IllegalArgumentException("table sizes must be between 1 and 2^30, initial size at most max size.");
+        }
+        this.delegate = delegate;
+        this.maxTableSize = powerOfTwo(maxTableSize);
+        this.table = new Table(powerOfTwo(initialTableSize));
+    }
+
+    @Override
+    public IRI createIRI(String iri) {
+        Table t = table;
+        int slot = t.slot(iriHash(iri));
+        Value value = t.slots.get(slot);
+        if (value instanceof IRI && value.stringValue().equals(iri)) {
+            hits.increment();
+            return (IRI) value;
+        }
+        misses.increment();
+        IRI created = delegate.createIRI(iri);
+        add(t, slot, created);
+        return created;
+    }
+
+    @Override
+    public IRI createIRI(String namespace, String localName) {
+        return createIRI(namespace + localName);
+    }
+
+    @Override
+    public BNode createBNode() {
+        return delegate.createBNode();
+    }
+
+    @Override
+    public BNode createBNode(String nodeID) {
+        Table t = table;
+        int slot = t.slot(bnodeHash(nodeID));
+        Value value = t.slots.get(slot);
+        if (value instanceof BNode && ((BNode) value).getID().equals(nodeID)) {
+            hits.increment();
+            return (BNode) value;
+        }
+        misses.increment();
+        BNode created = delegate.createBNode(nodeID);
+        add(t, slot, created);
+        return created;
+    }
+
+    @Override
+    public Literal createLiteral(String label) {
+        return createLiteral(label, XMLSchema.STRING);
+    }
+
+    @Override
+    public Literal createLiteral(String label, String language) {
+        Table t = table;
+        int slot = t.slot(literalHash(label, language.hashCode()));
+        Value value = t.slots.get(slot);
+        if (value instanceof Literal) {
+            Literal literal = (Literal) value;
+            if (literal.getLabel().equals(label) && language.equals(literal.getLanguage().orElse(null))) {
+                hits.increment();
+                return literal;
+            }
+        }
+        misses.increment();
+        Literal created = delegate.createLiteral(label, language);
+        add(t, slot, created);
+        return created;
+    }
+
+    @Override
+    public Literal createLiteral(String label, IRI datatype) {
+        if (datatype == null || RDF.LANGSTRING.equals(datatype)) {
+            return delegate.createLiteral(label, datatype);
+        }
+        Table t = table;
+        int slot = t.slot(literalHash(label, datatype.hashCode()));
+        Value value = t.slots.get(slot);
+        if (value instanceof Literal) {
+            Literal literal = (Literal) value;
+            if (literal.getLabel().equals(label) && literal.getDatatype().equals(datatype) && !literal.getLanguage().isPresent()) {
+                hits.increment();
+                return literal;
+            }
+        }
+        misses.increment();
+        Literal created = delegate.createLiteral(label, datatype);
+        add(t, slot, created);
+        return created;
+    }
+
+    @Override
+    public Literal createLiteral(boolean value) {
+        return delegate.createLiteral(value);
+    }
+
+    @Override
+    public Literal createLiteral(byte value) {
+        return delegate.createLiteral(value);
+    }
+
+    @Override
+    public Literal createLiteral(short value) {
+        return delegate.createLiteral(value);
+    }
+
+    @Override
+    public Literal createLiteral(int value) {
+        return delegate.createLiteral(value);
+    }
+
+    @Override
+    public Literal createLiteral(long value) {
+        return delegate.createLiteral(value);
+    }
+
+    @Override
+    public Literal createLiteral(float value) {
+        return delegate.createLiteral(value);
+    }
+
+    @Override
+    public Literal createLiteral(double value) {
+        return delegate.createLiteral(value);
+    }
+
+    @Override
+    public Literal createLiteral(BigDecimal bigDecimal) {
+        return delegate.createLiteral(bigDecimal);
+    }
+
+    @Override
+    public Literal createLiteral(BigInteger bigInteger) {
+        return delegate.createLiteral(bigInteger);
+    }
+
+    @Override
+    public Literal createLiteral(XMLGregorianCalendar calendar) {
+        return delegate.createLiteral(calendar);
+    }
+
+    @Override
+    public Literal createLiteral(Date date) {
+        return delegate.createLiteral(date);
+    }
+
+    @Override
+    public Statement createStatement(Resource subject, IRI predicate, Value object) {
+        return delegate.createStatement(subject, predicate, object);
+    }
+
+    @Override
+    public Statement createStatement(Resource subject, IRI predicate, Value object, Resource context) {
+        return delegate.createStatement(subject, predicate, object, context);
+    }
+
+    /**
+     * Drops all terms in the table, keeping its size.
+     */
+    public void clear() {
+        table = new Table(table.slots.length());
+    }
+
+    /**
+     * getter for delegate
+     *
+     * @return
+     */
+    public ValueFactory getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * getter for number of slots in the term table
+     *
+     * @return
+     */
+    public int getTableSize() {
+        return table.slots.length();
+    }
+
+    /**
+     * getter for number of slots the term table grows to
+     *
+     * @return
+     */
+    public int getMaxTableSize() {
+        return maxTableSize;
+    }
+
+    /**
+     * getter for hit count
+     *
+     * @return
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * getter for miss count
+     *
+     * @return
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void add(Table t, int slot, Value value) {
+        t.slots.lazySet(slot, value);
+        // only a growing table counts, the thread adding the last term of its size grows it
+        if (t.slots.length() < maxTableSize && t.added.incrementAndGet() == t.slots.length()) {
+            grow(t);
+        }
+    }
+
+    /**
+     * Replaces full by a table of twice its size holding its terms. Terms added to full
+     * meanwhile may be missed, to be created again.
+     */
+    private synchronized void grow(Table full) {
+        if (table != full) {
+            return;
+        }
+        Table grown = new Table(full.slots.length() << 1);
+        for (int i = 0; i < full.slots.length(); i++) {
+            Value value = full.slots.get(i);
+            if (value != null) {
+                grown.slots.lazySet(grown.slot(hash(value)), value);
+            }
+        }
+        table = grown;
+    }
+
+    private static int hash(Value value) {
+        if (value instanceof IRI) {
+            return iriHash(value.stringValue());
+        }
+        if (value instanceof BNode) {
+            return bnodeHash(((BNode) value).getID());
+        }
+        Literal literal = (Literal) value;
+        return literalHash(literal.getLabel(), literal.getLanguage().isPresent()
+                ? literal.getLanguage().get().hashCode() : literal.getDatatype().hashCode());
+    }
+
+    private static int iriHash(String iri) {
+        return iri.hashCode();
+    }
+
+    private static int bnodeHash(String nodeID) {
+        return nodeID.hashCode() * 31 + 1;
+    }
+
+    private static int literalHash(String label, int qualifierHash) {
+        return label.hashCode() * 31 + qualifierHash;
+    }
+
+    private static int powerOfTwo(int n) {
+        int size = Integer.highestOneBit(n);
+        return size < n ? size << 1 : size;
+    }
+
+    /**
+     * Slots of the term table, with the count of terms added to them.
+     */
+    private static final class Table {
+        final AtomicReferenceArray<Value> slots;
+        final int mask;
+        final AtomicInteger added = new AtomicInteger();
+
+        Table(int size) {
+            this.slots = new AtomicReferenceArray<>(size);
+            this.mask = size - 1;
+        }
+
+        int slot(int hash) {
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2015-2017 MarkLogic Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.marklogic.semantics.rdf4j.utils;
+
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.Binding;
+import org.eclipse.rdf4j.query.BindingSet;
+import org.eclipse.rdf4j.query.impl.MapBindingSet;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded map between blank nodes and the skolem IRIs MarkLogic stores them as, in
+ * both directions, safe for use by many threads.
+ *
+ * Entries are kept in two generations, lookups promoting entries of the old one.
+ * Once the young generation holds half of maxEntries it becomes the old one, dropping
+ * the entries not used since the previous switch.
+ *
+ */
+public class SkolemCache {
+
+    public static final String SKOLEM_PREFIX = "http://marklogic.com/semantics/blank/";
+
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+
+    private static final ValueFactory f = SimpleValueFactory.getInstance();
+
+    private final int maxEntries;
+
+    private volatile Generation young = new Generation();
+    private volatile Generation old = new Generation();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a cache with default bound.
+     */
+    public SkolemCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries maximum number of cached blank nodes
+     */
+    public SkolemCache(int maxEntries) {
+        if (maxEntries < 2) {
+            throw new IllegalArgumentException("maxEntries must be at least 2.");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns the skolem IRI of bnode.
+     *
+     * @param bnode
+     * @return IRI
+     */
+    public IRI skolemize(BNode bnode) {
+        IRI iri = young.iris.get(bnode);
+        if (iri != null) {
+            hits.increment();
+            return iri;
+        }
+        iri = old.iris.get(bnode);
+        if (iri != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            iri = f.createIRI(SKOLEM_PREFIX + bnode.toString());
+        }
+        put(bnode, iri);
+        return iri;
+    }
+
+    /**
+     * Returns whether value is a skolem IRI.
+     *
+     * @param value
+     * @return
+     */
+    public static boolean isSkolemIRI(Value value) {
+        return value instanceof IRI && value.stringValue().startsWith(SKOLEM_PREFIX);
+    }
+
+    /**
+     * Returns the blank node of a skolem IRI, the one skolemized to it if cached,
+     * otherwise a blank node of the id in the IRI. Other values are returned as they are.
+     *
+     * @param value
+     * @return Value
+     */
+    public Value deskolemize(Value value) {
+        if (!isSkolemIRI(value)) {
+            return value;
+        }
+        IRI iri = (IRI) value;
+        BNode bnode = young.bnodes.get(iri);
+        if (bnode != null) {
+            hits.increment();
+            return bnode;
+        }
+        bnode = old.bnodes.get(iri);
+        if (bnode != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            String id = iri.stringValue().substring(SKOLEM_PREFIX.length());
+            bnode = f.createBNode(id.startsWith("_:") ? id.substring(2) : id);
+        }
+        put(bnode, iri);
+        return bnode;
+    }
+
+    /**
+     * Returns bindings with skolem IRIs replaced by blank nodes, bindings itself if it has none.
+     *
+     * @param bindings
+     * @return BindingSet
+     */
+    public BindingSet deskolemize(BindingSet bindings) {
+        boolean skolemized = false;
+        for (Binding binding : bindings) {
+            if (isSkolemIRI(binding.getValue())) {
+                skolemized = true;
+                break;
+            }
+        }
+        if (!skolemized) {
+            return bindings;
+        }
+        MapBindingSet result = new MapBindingSet(bindings.size());
+        for (Binding binding : bindings) {
+            result.addBinding(binding.getName(), deskolemize(binding.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Returns st with skolem IRIs replaced by blank nodes, st itself if it has none.
+     *
+     * @param st
+     * @param vf creates the replacing statement
+     * @return Statement
+     */
+    public Statement deskolemize(Statement st, ValueFactory vf) {
+        Resource context = st.getContext();
+        if (!isSkolemIRI(st.getSubject()) && !isSkolemIRI(st.getObject()) && !isSkolemIRI(context)) {
+            return st;
+        }
+        Resource subject = (Resource) deskolemize(st.getSubject());
+        Value object = deskolemize(st.getObject());
+        return context == null
+                ? vf.createStatement(subject, st.getPredicate(), object)
+                : vf.createStatement(subject, st.getPredicate(), object, (Resource) deskolemize(context));
+    }
+
+    /**
+     * Drops all cached blank nodes.
+     */
+    public synchronized void clear() {
+        old = new Generation();
+        young = new Generation();
+    }
+
+    /**
+     * getter for approximate number of cached blank nodes
+     *
+     * @return
+     */
+    public int size() {
+        return young.size.get() + old.size.get();
+    }
+
+    /**
+     * getter for maxEntries
+     *
+     * @return
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * getter for hit count
+     *
+     * @return
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * getter for miss count
+     *
+     * @return
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    private void put(BNode bnode, IRI iri) {
+        Generation generation = young;
+        if (generation.iris.putIfAbsent(bnode, iri) == null) {
+            generation.bnodes.put(iri, bnode);
+            if (generation.size.incrementAndGet() >= maxEntries / 2) {
+                synchronized (this) {
+                    if (young == generation) {
+                        old = generation;
+                        young = new Generation();
+                    }
+                }
+            }
+        }
+    }
+
+    private static class Generation {
+        private final ConcurrentHashMap<BNode, IRI> iris = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<IRI, BNode> bnodes = new ConcurrentHashMap<>();
+        private final AtomicInteger size = new AtomicInteger();
+    }
+}
@@ -18,12 +18,12 @@ package com.marklogic.semantics.rdf4j.utils;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory;
 import org.eclipse.rdf4j.model.Value;
-import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.rio.RDFFormat;
 
 
 public class Util {
     private static Util util = null;
+    private final SkolemCache skolemCache = new SkolemCache();
     private Util(){
 
     }
@@ -87,12 +87,29 @@ public class Util {
      */
     public Value skolemize(Value s) {
         if (s instanceof org.eclipse.rdf4j.model.BNode) {
-            return SimpleValueFactory.getInstance().createIRI("http://marklogic.com/semantics/blank/" + s.toString());
+            return skolemCache.skolemize((org.eclipse.rdf4j.model.BNode) s);
         } else {
             return s;
         }
     }
 
+    /**
+     * Public utility method that maps skolem IRIs back to blank nodes (BNode).
+     * @param s the value to be deskolemized.
+     * @return for a skolem IRI returns its BNode or else the value itself.
+     */
+    public Value deskolemize(Value s) {
+        return skolemCache.deskolemize(s);
+    }
+
+    /**
+     * getter for the cache of blank nodes and their skolem IRIs used by skolemize and deskolemize
+     * @return SkolemCache
+     */
+    public SkolemCache getSkolemCache() {
+        return skolemCache;
+    }
+
     /**
      * Public utility method to check if the RDF format is supported by MarkLogic database.
      * @param dataFormat the RDF format to check if supported by MarkLogic.
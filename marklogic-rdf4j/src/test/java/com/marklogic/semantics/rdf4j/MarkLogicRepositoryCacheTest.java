@@ -19,7 +19,9 @@
  */
 package com.marklogic.semantics.rdf4j;
 
+import com.marklogic.semantics.rdf4j.client.QueryResultCache;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.QueryResults;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.junit.*;
 import org.junit.rules.ExpectedException;
@@ -168,6 +170,63 @@ public class MarkLogicRepositoryCacheTest extends Rdf4jTestBase {
 //        assertEquals(0L, conn.size());
     }
 
+    @Test
+    public void testResultCacheInvalidatedOnWrite()
+            throws Exception {
+        conn.configureResultCache(10, 60000, 100);
+        QueryResultCache cache = conn.getResultCache();
+
+        ValueFactory f = conn.getValueFactory();
+        IRI alice = f.createIRI("http://example.org/people/alice");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        String ask = "ASK { <http://example.org/people/alice> <http://example.org/ontology/name> ?o }";
+
+        Assert.assertFalse(conn.prepareBooleanQuery(ask).evaluate());
+        Assert.assertFalse(conn.prepareBooleanQuery("ASK  {  <http://example.org/people/alice>\n<http://example.org/ontology/name> ?o }").evaluate());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        long invalidations = cache.getInvalidationCount();
+        conn.add(alice, name, f.createLiteral("Alice"));
+        // the add is only queued, the cache is invalidated once the query flushes it
+        assertEquals(invalidations, cache.getInvalidationCount());
+        Assert.assertTrue(conn.prepareBooleanQuery(ask).evaluate());
+        Assert.assertTrue(cache.getInvalidationCount() > invalidations);
+
+        String select = "SELECT ?o { <http://example.org/people/alice> <http://example.org/ontology/name> ?o }";
+        assertEquals(1, QueryResults.asList(conn.prepareTupleQuery(select).evaluate()).size());
+        assertEquals(1, QueryResults.asList(conn.prepareTupleQuery(select).evaluate()).size());
+        assertEquals(2, cache.getHitCount());
+
+        conn.disableResultCache();
+        Assert.assertNull(conn.getResultCache());
+    }
+
+    @Test
+    public void testResultCacheStreamsLargeResult()
+            throws Exception {
+        conn.configureResultCache(10, 60000, 2);
+        QueryResultCache cache = conn.getResultCache();
+
+        ValueFactory f = conn.getValueFactory();
+        IRI name = f.createIRI("http://example.org/ontology/name");
+        for (int i = 0; i < 5; i++) {
+            conn.add(f.createIRI("http://example.org/people/" + i), name, f.createLiteral("person " + i));
+        }
+        String select = "SELECT ?s ?o { ?s <http://example.org/ontology/name> ?o }";
+        // more rows than maxRows are all returned, but not cached
+        assertEquals(5, QueryResults.asList(conn.prepareTupleQuery(select).evaluate()).size());
+        assertEquals(0, cache.size());
+        assertEquals(5, QueryResults.asList(conn.prepareTupleQuery(select + " LIMIT 7").evaluate()).size());
+        assertEquals(0, cache.size());
+
+        String small = select + " LIMIT 2";
+        assertEquals(2, QueryResults.asList(conn.prepareTupleQuery(small).evaluate()).size());
+        assertEquals(2, QueryResults.asList(conn.prepareTupleQuery(small).evaluate()).size());
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHitCount());
+    }
+
     @Test
     @Ignore
     // This test is very long-running, ignore in general test runs.
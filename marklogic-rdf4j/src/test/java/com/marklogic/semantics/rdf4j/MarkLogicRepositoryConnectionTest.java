@@ -22,10 +22,12 @@ package com.marklogic.semantics.rdf4j;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory;
 import com.marklogic.client.semantics.SPARQLRuleset;
+import com.marklogic.semantics.rdf4j.client.ColumnarTupleResult;
 import com.marklogic.semantics.rdf4j.config.MarkLogicRepositoryConfig;
 import com.marklogic.semantics.rdf4j.config.MarkLogicRepositoryFactory;
 
 import com.marklogic.semantics.rdf4j.query.MarkLogicQuery;
+import com.marklogic.semantics.rdf4j.utils.InterningValueFactory;
 import org.eclipse.rdf4j.RDF4JException;
 import org.eclipse.rdf4j.common.iteration.CloseableIteration;
 import org.eclipse.rdf4j.common.iteration.Iteration;
@@ -35,6 +37,7 @@ import org.junit.*;
 import org.junit.rules.ExpectedException;
 import org.eclipse.rdf4j.model.*;
 import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
 import org.eclipse.rdf4j.query.*;
@@ -50,13 +53,17 @@ import org.eclipse.rdf4j.rio.rdfxml.RDFXMLWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Properties;
 
@@ -652,6 +659,36 @@ public class MarkLogicRepositoryConnectionTest extends Rdf4jTestBase {
         conn.clear(context1);
     }
 
+    @Test
+    public void testHasStatements() throws Exception
+    {
+        Resource context1 = conn.getValueFactory().createIRI("http://marklogic.com/test/context1");
+        ValueFactory f= conn.getValueFactory();
+        IRI alice = f.createIRI("http://example.org/people/alice");
+        IRI bob = f.createIRI("http://example.org/people/bob");
+        IRI name = f.createIRI("http://example.org/ontology/name");
+
+        List<Statement> statements = new ArrayList<>();
+        for (int i = 0; i < 1200; i++) {
+            statements.add(f.createStatement(alice, name, f.createLiteral("Alice" + i)));
+        }
+        statements.add(f.createStatement(bob, name, f.createLiteral("Bob", "en")));
+        statements.add(f.createStatement(bob, name, f.createLiteral("Bob")));
+        statements.add(f.createStatement(bob, null, null));
+        conn.add(statements.subList(0, 600), context1);
+        conn.add(f.createStatement(bob, name, f.createLiteral("Bob", "en")), context1);
+
+        BitSet present = conn.hasStatements(statements, false, context1);
+        assertEquals(602, present.cardinality());
+        assertEquals(600, present.nextClearBit(0));
+        Assert.assertTrue(present.get(1200));
+        Assert.assertFalse(present.get(1201));
+        Assert.assertTrue(present.get(1202));
+        assertEquals(602, conn.hasStatements(statements, false).cardinality());
+        assertEquals(0, conn.hasStatements(statements, false, (Resource) null).cardinality());
+        conn.clear(context1);
+    }
+
     // https://github.com/marklogic/marklogic-sesame/issues/364
     @Test
     public void testHasStatementBNode() throws Exception
@@ -670,6 +707,119 @@ public class MarkLogicRepositoryConnectionTest extends Rdf4jTestBase {
         Assert.assertTrue(conn.hasStatement(null, null, copyOfAliceName, false));
     }
 
+    @Test
+    public void testDeskolemizeResults() throws Exception
+    {
+        ValueFactory vf = conn.getValueFactory();
+        Resource context1 = vf.createIRI("http://marklogic.com/test/context1");
+        IRI alice = vf.createIRI("http://example.org/people/alice");
+        IRI name = vf.createIRI("http://example.org/ontology/name");
+        BNode alicesName = vf.createBNode();
+        conn.add(alice, name, alicesName, context1);
+        conn.sync();
+
+        String query = "SELECT ?o WHERE { GRAPH <http://marklogic.com/test/context1> { <http://example.org/people/alice> ?p ?o } }";
+        try (TupleQueryResult result = conn.prepareTupleQuery(query).evaluate()) {
+            Assert.assertTrue(result.next().getValue("o") instanceof IRI);
+        }
+
+        rep.setDeskolemizeResults(true);
+        try (MarkLogicRepositoryConnection deskolemizing = rep.getConnection()) {
+            try (TupleQueryResult result = deskolemizing.prepareTupleQuery(query).evaluate()) {
+                Assert.assertEquals(alicesName, result.next().getValue("o"));
+            }
+            try (RepositoryResult<Statement> statements = deskolemizing.getStatements(alice, name, null, false, context1)) {
+                Assert.assertEquals(alicesName, statements.next().getObject());
+            }
+        } finally {
+            rep.setDeskolemizeResults(false);
+            conn.clear(context1);
+        }
+    }
+
+    @Test
+    public void testResultInterning() throws Exception
+    {
+        ValueFactory vf = conn.getValueFactory();
+        Resource context1 = vf.createIRI("http://marklogic.com/test/context1");
+        IRI name = vf.createIRI("http://example.org/ontology/name");
+        conn.add(vf.createIRI("http://example.org/people/alice"), name, vf.createLiteral("Alice"), context1);
+        conn.add(vf.createIRI("http://example.org/people/bob"), name, vf.createLiteral("Bob"), context1);
+        conn.sync();
+
+        String query = "SELECT ?s ?p ?o WHERE { GRAPH <http://marklogic.com/test/context1> { ?s ?p ?o } } ORDER BY ?s";
+        rep.setResultInterning(InterningValueFactory.Scope.RESULT);
+        try (MarkLogicRepositoryConnection interning = rep.getConnection()) {
+            try (TupleQueryResult result = interning.prepareTupleQuery(query).evaluate()) {
+                BindingSet alice = result.next();
+                BindingSet bob = result.next();
+                Assert.assertEquals(name, alice.getValue("p"));
+                Assert.assertSame(alice.getValue("p"), bob.getValue("p"));
+                Assert.assertEquals(vf.createLiteral("Bob"), bob.getValue("o"));
+            }
+        } finally {
+            rep.setResultInterning(null);
+            conn.clear(context1);
+        }
+    }
+
+    @Test
+    public void testInterningTableGrows() throws Exception
+    {
+        InterningValueFactory interning = new InterningValueFactory(SimpleValueFactory.getInstance(), 4, 16);
+        Assert.assertEquals(4, interning.getTableSize());
+        for (int i = 0; i < 4; i++) {
+            interning.createIRI("http://example.org/people/" + i);
+        }
+        Assert.assertEquals(8, interning.getTableSize());
+        for (int i = 4; i < 100; i++) {
+            interning.createLiteral("label " + i);
+        }
+        Assert.assertEquals(16, interning.getTableSize());
+        Assert.assertSame(interning.createIRI("http://example.org/people/alice"), interning.createIRI("http://example.org/people/alice"));
+
+        Assert.assertEquals(InterningValueFactory.DEFAULT_TABLE_SIZE, new InterningValueFactory(SimpleValueFactory.getInstance()).getTableSize());
+    }
+
+    @Test
+    public void testColumnarTupleResult() throws Exception
+    {
+        ValueFactory vf = conn.getValueFactory();
+        Resource context1 = vf.createIRI("http://marklogic.com/test/context1");
+        IRI age = vf.createIRI("http://example.org/ontology/age");
+        conn.add(vf.createIRI("http://example.org/people/alice"), age, vf.createLiteral(30), context1);
+        conn.add(vf.createIRI("http://example.org/people/bob"), age, vf.createLiteral(25), context1);
+        conn.add(vf.createIRI("http://example.org/people/carol"), age, vf.createLiteral(35), context1);
+        conn.sync();
+
+        try {
+            String query = "SELECT ?s ?p ?o WHERE { GRAPH <http://marklogic.com/test/context1> { ?s ?p ?o } } ORDER BY ?s";
+            ColumnarTupleResult result = ColumnarTupleResult.of(conn.prepareTupleQuery(query).evaluate());
+            Assert.assertEquals(3, result.size());
+            Assert.assertEquals(Arrays.asList("s", "p", "o"), result.getBindingNames());
+            Assert.assertEquals(1, result.getDistinctValues("p").size());
+
+            List<BindingSet> rows = QueryResults.asList(result);
+            Assert.assertEquals(rows, QueryResults.asList(result.iterate()));
+
+            ColumnarTupleResult byAge = result.sort(false, "o");
+            Assert.assertEquals(vf.createIRI("http://example.org/people/carol"), byAge.get(0).getValue("s"));
+            Assert.assertEquals(vf.createLiteral(25), byAge.getValue(2, "o"));
+            Assert.assertEquals(rows.subList(1, 3), QueryResults.asList(result.slice(1, 3)));
+
+            // rows are serialized as copies, the columns stay behind
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(rows.get(0));
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                Assert.assertEquals(rows.get(0), in.readObject());
+            }
+        } finally {
+            conn.clear(context1);
+        }
+    }
+
     // https://github.com/marklogic/marklogic-sesame/issues/363
     @Test
     public void testMultiContextDelete()
@@ -19,10 +19,23 @@
  */
 package com.marklogic.semantics.rdf4j;
 
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
 import com.marklogic.client.DatabaseClient;
 import com.marklogic.client.DatabaseClientFactory;
+import com.marklogic.semantics.rdf4j.client.DatabaseClientRegistry;
+import com.marklogic.semantics.rdf4j.client.HedgingPolicy;
+import com.marklogic.semantics.rdf4j.client.HostSelectionPolicy;
+import com.marklogic.semantics.rdf4j.client.MarkLogicCluster;
+import com.marklogic.semantics.rdf4j.client.RequestTrace;
+import com.marklogic.semantics.rdf4j.client.SlowOperationLog;
+import com.marklogic.semantics.rdf4j.client.TripleCacheMXBean;
+import com.marklogic.semantics.rdf4j.metrics.JmxMetrics;
 
+import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -36,6 +49,13 @@ import org.eclipse.rdf4j.repository.RepositoryException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * tests MarkLogicRespository
  *
@@ -117,6 +137,229 @@ public class MarkLogicRepositoryTest extends Rdf4jTestBase {
         rep.shutDown();
     }
 
+    @Test
+    public void testReposShareDatabaseClient()
+            throws Exception {
+        DatabaseClientRegistry registry = DatabaseClientRegistry.getInstance();
+        MarkLogicRepository rep1 = new MarkLogicRepository(host, port, new DatabaseClientFactory.DigestAuthContext(user, password));
+        MarkLogicRepository rep2 = new MarkLogicRepository(host, port, new DatabaseClientFactory.DigestAuthContext(user, password));
+        rep1.initialize();
+        rep2.initialize();
+        DatabaseClient shared = rep1.getDatabaseClient();
+        Assert.assertSame(shared, rep2.getDatabaseClient());
+        Assert.assertEquals(2, registry.getReferenceCount(shared));
+
+        MarkLogicRepositoryConnection conn1 = rep1.getConnection();
+        MarkLogicRepositoryConnection conn2 = rep1.getConnection();
+        Assert.assertSame(shared, rep1.getDatabaseClient());
+        Assert.assertEquals(conn1.prepareBooleanQuery("ASK { ?s ?p ?o }").evaluate(), conn2.prepareBooleanQuery("ASK { ?s ?p ?o }").evaluate());
+        conn1.close();
+        conn2.close();
+
+        rep1.shutDown();
+        Assert.assertEquals(1, registry.getReferenceCount(shared));
+        MarkLogicRepositoryConnection conn3 = rep2.getConnection();
+        conn3.prepareBooleanQuery("ASK { ?s ?p ?o }").evaluate();
+        conn3.close();
+        rep2.shutDown();
+        Assert.assertFalse(registry.isRegistered(shared));
+    }
+
+    @Test
+    public void testClusterFailsOverUnreachableHost()
+            throws Exception {
+        MarkLogicRepository clusterRep = new MarkLogicRepository(Arrays.asList("unreachable.invalid", host), port, null,
+                new DatabaseClientFactory.DigestAuthContext(user, password), HostSelectionPolicy.leastOutstandingRequests());
+        clusterRep.initialize();
+        MarkLogicCluster cluster = clusterRep.getCluster();
+        Assert.assertEquals(2, cluster.getHosts().size());
+
+        MarkLogicRepositoryConnection conn = clusterRep.getConnection();
+        for (int i = 0; i < 4; i++) {
+            conn.prepareBooleanQuery("ASK { ?s ?p ?o }").evaluate();
+        }
+        Assert.assertFalse(cluster.getHosts().get(0).isAvailable());
+        Assert.assertTrue(cluster.getHosts().get(1).isAvailable());
+        Assert.assertSame(cluster.getHosts().get(1), cluster.select());
+
+        cluster.checkHealth();
+        Assert.assertFalse(cluster.getHosts().get(0).isAvailable());
+        conn.close();
+        clusterRep.shutDown();
+        Assert.assertNull(clusterRep.getCluster());
+    }
+
+    @Test
+    public void testClusterHedgesReads()
+            throws Exception {
+        MarkLogicRepository clusterRep = new MarkLogicRepository(Arrays.asList(host, host), port, null,
+                new DatabaseClientFactory.DigestAuthContext(user, password));
+        HedgingPolicy hedging = new HedgingPolicy(50, 0.5, 0);
+        clusterRep.setHedgingPolicy(hedging);
+        clusterRep.initialize();
+        Assert.assertSame(hedging, clusterRep.getCluster().getHedgingPolicy());
+
+        MarkLogicRepositoryConnection conn = clusterRep.getConnection();
+        int reads = 100;
+        for (int i = 0; i < reads; i++) {
+            conn.prepareBooleanQuery("ASK { ?s ?p ?o }").evaluate();
+        }
+        Assert.assertTrue(hedging.getDelayMillis() >= 0);
+        Assert.assertTrue(hedging.getHedgedRequests() <= reads * hedging.getMaxExtraLoad() + 10);
+        Assert.assertTrue(hedging.getHedgeWins() <= hedging.getHedgedRequests());
+        conn.close();
+        clusterRep.shutDown();
+    }
+
+    @Test
+    public void testRepoReportsMetrics()
+            throws Exception {
+        MarkLogicRepository metricsRep = new MarkLogicRepository(host, port, new DatabaseClientFactory.DigestAuthContext(user, password));
+        metricsRep.initialize();
+        JmxMetrics metrics = (JmxMetrics) metricsRep.getMetrics();
+        Assert.assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(metrics.getObjectName()));
+
+        MarkLogicRepositoryConnection conn = metricsRep.getConnection();
+        conn.prepareBooleanQuery("ASK { ?s ?p ?o }").evaluate();
+        conn.prepareTupleQuery("SELECT ?s ?p ?o { ?s ?p ?o } LIMIT 2").evaluate().close();
+        conn.close();
+        Assert.assertEquals(1, metrics.getOperations().get("ASK").getCount());
+        Assert.assertEquals(1, metrics.getOperations().get("SELECT").getCount());
+        Assert.assertEquals(1, metrics.getOperations().get("SELECT").getResults());
+        Assert.assertTrue(metrics.getOperations().get("SELECT").getBytes() > 0);
+        Assert.assertEquals(0, metrics.getInFlightRequests());
+
+        metricsRep.shutDown();
+        Assert.assertNull(metrics.getObjectName());
+    }
+
+    @Test
+    public void testRepoAppliesSlowOperationLog()
+            throws Exception {
+        MarkLogicRepository slowRep = new MarkLogicRepository(host, port, new DatabaseClientFactory.DigestAuthContext(user, password));
+        SlowOperationLog slowLog = new SlowOperationLog(0, 100);
+        slowLog.setThresholdMillis(SlowOperationLog.Kind.FLUSH, Long.MAX_VALUE);
+        slowRep.setSlowOperationLog(slowLog);
+        slowRep.initialize();
+        Assert.assertSame(slowLog, slowRep.getMarkLogicClient().getSlowOperationLog());
+        Assert.assertEquals(Long.MAX_VALUE / 1000000, slowLog.getThresholdMillis(SlowOperationLog.Kind.FLUSH));
+
+        ch.qos.logback.classic.Logger slowLogger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.marklogic.semantics.rdf4j.slow");
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        slowLogger.addAppender(appender);
+        try {
+            MarkLogicRepositoryConnection conn = slowRep.getConnection();
+            // every query is logged at a 0 threshold, tracing the query for the log
+            conn.prepareBooleanQuery("ASK { ?s ?p ?o }").evaluate();
+            conn.close();
+
+            Assert.assertEquals(1, appender.list.size());
+            ILoggingEvent event = appender.list.get(0);
+            Assert.assertEquals(Level.WARN, event.getLevel());
+            String message = event.getFormattedMessage();
+            Assert.assertTrue(message, message.startsWith("slow ASK "));
+            Assert.assertTrue(message, message.matches("slow ASK \\d+ ms \\(build \\d+ ms, first byte \\d+ ms, transfer \\d+ ms, parse \\d+ ms\\) .*"));
+            Assert.assertTrue(message, message.endsWith("query: ASK { ?s ?p ?o }"));
+        } finally {
+            slowLogger.detachAppender(appender);
+            slowRep.shutDown();
+        }
+    }
+
+    @Test
+    public void testSlowOperationLogBelowOneLinePerSecond()
+            throws Exception {
+        ch.qos.logback.classic.Logger slowLogger = (ch.qos.logback.classic.Logger) LoggerFactory.getLogger("com.marklogic.semantics.rdf4j.slow");
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        appender.start();
+        slowLogger.addAppender(appender);
+        try {
+            // one line every 2 s, the first one right away
+            SlowOperationLog slowLog = new SlowOperationLog(0, 0.5);
+            for (int i = 0; i < 3; i++) {
+                slowLog.requestCompleted(new RequestTrace(null));
+            }
+            Assert.assertEquals(1, appender.list.size());
+        } finally {
+            slowLogger.detachAppender(appender);
+        }
+    }
+
+    @Test
+    public void testWriteCacheMXBean()
+            throws Exception {
+        MarkLogicRepository cacheRep = new MarkLogicRepository(host, port, new DatabaseClientFactory.DigestAuthContext(user, password));
+        cacheRep.initialize();
+        MarkLogicRepositoryConnection conn = cacheRep.getConnection();
+        TripleCacheMXBean cache = conn.getWriteCacheMXBean();
+        Assert.assertEquals(0, cache.getOccupancy());
+
+        cache.pause();
+        cache.setCacheSize(2);
+        cache.setFlushIntervalMillis(100);
+        SimpleValueFactory vf = SimpleValueFactory.getInstance();
+        IRI context = vf.createIRI("http://marklogic.com/test/cache-mxbean");
+        for (int i = 0; i < 5; i++) {
+            conn.add(vf.createIRI("http://marklogic.com/test/s" + i), RDF.TYPE, vf.createIRI("http://marklogic.com/test/o"), context);
+        }
+        Thread.sleep(300);
+        // paused, so neither the size nor the timer flushed
+        Assert.assertEquals(5, cache.getOccupancy());
+        Assert.assertEquals(0, cache.getFlushCount());
+
+        cache.resume();
+        cache.flush();
+        Assert.assertEquals(0, cache.getOccupancy());
+        Assert.assertEquals(1, cache.getFlushCount());
+        Assert.assertEquals(5, cache.getStatementsFlushed());
+        Assert.assertTrue(cache.getLastFlushTime() > 0);
+        Assert.assertEquals(100, cache.getFlushIntervalMillis());
+
+        conn.clear(context);
+        conn.close();
+        cacheRep.shutDown();
+    }
+
+    @Test
+    public void testConnectionsShareWriteCacheThreads()
+            throws Exception {
+        MarkLogicRepository cacheRep = new MarkLogicRepository(host, port, new DatabaseClientFactory.DigestAuthContext(user, password));
+        cacheRep.initialize();
+        List<MarkLogicRepositoryConnection> conns = new ArrayList<>();
+        try {
+            for (int i = 0; i < 5; i++) {
+                conns.add(cacheRep.getConnection());
+            }
+            // the write caches of all clients are checked by two shared threads
+            Assert.assertTrue(writeCacheThreads() <= 2);
+        } finally {
+            for (MarkLogicRepositoryConnection conn : conns) {
+                conn.close();
+            }
+            cacheRep.shutDown();
+        }
+    }
+
+    @Test
+    public void testShutDownStopsWriteCacheThreads()
+            throws Exception {
+        // every repository of every test starts a write cache on the shared threads, so count caches
+        int caches = writeCaches();
+        MarkLogicRepository cacheRep = new MarkLogicRepository(host, port, new DatabaseClientFactory.DigestAuthContext(user, password));
+        cacheRep.initialize();
+        MarkLogicRepositoryConnection conn = cacheRep.getConnection();
+        conn.close();
+        cacheRep.shutDown();
+        Assert.assertEquals(caches, writeCaches());
+        if (caches == 0) {
+            for (int i = 0; i < 50 && writeCacheThreads() > 0; i++) {
+                Thread.sleep(100);
+            }
+            Assert.assertEquals(0, writeCacheThreads());
+        }
+    }
+
     @Test
     public void testMultipleReposWithDifferentUsers() throws RepositoryException, MalformedQueryException, UpdateExecutionException {
         readerRep.initialize();
@@ -130,4 +373,15 @@ public class MarkLogicRepositoryTest extends Rdf4jTestBase {
         writerRep.shutDown();
         readerRep.shutDown();
     }
+
+    private static int writeCaches() throws MalformedObjectNameException {
+        return ManagementFactory.getPlatformMBeanServer()
+                .queryNames(new ObjectName(JmxMetrics.DOMAIN + ":type=TripleCache,*"), null).size();
+    }
+
+    private static long writeCacheThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.isAlive() && thread.getName().equals("marklogic-rdf4j-write-cache"))
+                .count();
+    }
 }
@@ -21,6 +21,9 @@ package com.marklogic.semantics.rdf4j.config;
 
 import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
 import com.marklogic.semantics.rdf4j.Rdf4jTestBase;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Resource;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
 import org.junit.Assert;
 import org.junit.Rule;
 import org.junit.Test;
@@ -31,6 +34,8 @@ import org.eclipse.rdf4j.repository.config.RepositoryFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+
 import static com.marklogic.semantics.rdf4j.Rdf4jTestBase.*;
 
 /**
@@ -82,4 +87,27 @@ public class MarkLogicRepositoryFactoryTest extends Rdf4jTestBase {
         otherrepo.initialize();
         Assert.assertTrue(otherrepo.getConnection() instanceof RepositoryConnection);
     }
+
+    @Test
+    public void testConfigExportsAndParsesHosts() throws Exception {
+        MarkLogicRepositoryConfig config = new MarkLogicRepositoryConfig("http://" + user + ":" + password + "@" + host + ":" + port + "/v1/graphs/sparql");
+        config.setHosts(Arrays.asList("host-b", "host-a", "host-c"));
+        config.setHostSelectionPolicy("least-outstanding");
+
+        Model model = new LinkedHashModel();
+        Resource implNode = config.export(model);
+
+        MarkLogicRepositoryConfig parsed = new MarkLogicRepositoryConfig();
+        parsed.parse(model, implNode);
+        Assert.assertEquals(Arrays.asList("host-b", "host-a", "host-c"), parsed.getHosts());
+        Assert.assertEquals("least-outstanding", parsed.getHostSelectionPolicy());
+        Assert.assertEquals(config.getQueryEndpointUrl(), parsed.getQueryEndpointUrl());
+
+        Model singleModel = new LinkedHashModel();
+        Resource singleNode = new MarkLogicRepositoryConfig(config.getQueryEndpointUrl()).export(singleModel);
+        MarkLogicRepositoryConfig single = new MarkLogicRepositoryConfig();
+        single.parse(singleModel, singleNode);
+        Assert.assertNull(single.getHosts());
+        Assert.assertNull(single.getHostSelectionPolicy());
+    }
 }
\ No newline at end of file
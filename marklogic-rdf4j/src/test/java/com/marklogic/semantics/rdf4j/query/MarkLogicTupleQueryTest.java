@@ -18,7 +18,19 @@ package com.marklogic.semantics.rdf4j.query;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import com.marklogic.semantics.rdf4j.MarkLogicRepositoryConnection;
 import org.eclipse.rdf4j.common.iteration.ConvertingIteration;
@@ -28,6 +40,8 @@ import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 import org.eclipse.rdf4j.model.Resource;
 import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.ValueFactory;
@@ -36,8 +50,10 @@ import org.eclipse.rdf4j.query.BindingSet;
 import org.eclipse.rdf4j.query.MalformedQueryException;
 import org.eclipse.rdf4j.query.Query;
 import org.eclipse.rdf4j.query.QueryEvaluationException;
+import org.eclipse.rdf4j.query.QueryInterruptedException;
 import org.eclipse.rdf4j.query.QueryLanguage;
 import org.eclipse.rdf4j.query.QueryResultHandlerException;
+import org.eclipse.rdf4j.query.QueryResults;
 import org.eclipse.rdf4j.query.TupleQuery;
 import org.eclipse.rdf4j.query.TupleQueryResult;
 import org.eclipse.rdf4j.query.TupleQueryResultHandler;
@@ -52,6 +68,9 @@ import com.marklogic.client.semantics.GraphManager;
 import com.marklogic.client.semantics.RDFMimeTypes;
 import com.marklogic.client.semantics.SPARQLRuleset;
 import com.marklogic.semantics.rdf4j.Rdf4jTestBase;
+import com.marklogic.semantics.rdf4j.client.MarkLogicClient;
+import com.marklogic.semantics.rdf4j.client.RequestTrace;
+import com.marklogic.semantics.rdf4j.client.TracedQueryResult;
 
 /**
  * test TupleQuery
@@ -123,6 +142,25 @@ public class MarkLogicTupleQueryTest extends Rdf4jTestBase {
 
     }
 
+    @Test
+    public void testPrepareQueryWithTemplateCache()
+            throws Exception {
+        QueryTemplateCache cache = rep.getQueryTemplateCache();
+        cache.clear();
+        String queryString = "PREFIX ex: <http://example.org/?x=1> # select ?commented\n" +
+                "ask { ?s ex:p $o . filter (?s != \"?notAVariable\" && ?o < 3) }";
+        Assert.assertTrue(conn.prepareQuery(queryString) instanceof MarkLogicBooleanQuery);
+        Assert.assertTrue(conn.prepareQuery(queryString) instanceof MarkLogicBooleanQuery);
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(1, cache.getHitCount());
+
+        QueryTemplate template = cache.getTemplate(queryString);
+        Assert.assertEquals(QueryTemplate.Form.BOOLEAN, template.getForm());
+
+        Assert.assertTrue(conn.prepareQuery("select ?s { ?s ?p ?o }") instanceof MarkLogicTupleQuery);
+        Assert.assertTrue(conn.prepareQuery("describe <http://example.org/s>") instanceof MarkLogicGraphQuery);
+    }
+
     @Test
     public void testSPARQLQuery()
             throws Exception {
@@ -290,6 +328,46 @@ public class MarkLogicTupleQueryTest extends Rdf4jTestBase {
         }
     }
 
+    @Test
+    public void testSPARQLQueryWithParallelPageFetch()
+            throws Exception {
+        try{
+            String queryString = "select ?s ?p ?o { ?s ?p ?o } order by ?s ?p ?o limit 100";
+            MarkLogicTupleQuery serialQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+            List<BindingSet> expected = QueryResults.asList(serialQuery.evaluate());
+
+            MarkLogicTupleQuery parallelQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+            parallelQuery.setParallelPageFetch(3, 7);
+            TupleQueryResult results = parallelQuery.evaluate();
+
+            Assert.assertEquals(Arrays.asList("s", "p", "o"), results.getBindingNames());
+            List<BindingSet> actual = QueryResults.asList(results);
+            Assert.assertEquals(expected.size(), actual.size());
+            Assert.assertEquals(expected, actual);
+        }
+        finally {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void testSPARQLQueryWithParallelPageFetchClosedEarly()
+            throws Exception {
+        try{
+            String queryString = "select ?s ?p ?o { ?s ?p ?o } order by ?s ?p ?o";
+            MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+            tupleQuery.setParallelPageFetch(4, 2);
+            TupleQueryResult results = tupleQuery.evaluate();
+            Assert.assertTrue(results.hasNext());
+            results.next();
+            results.close();
+            Assert.assertFalse(results.hasNext());
+        }
+        finally {
+            conn.close();
+        }
+    }
+
     //https://bugtrack.marklogic.com/41543
     @Test
     public void testSPARQLQueryCloseWait()
@@ -341,6 +419,39 @@ public class MarkLogicTupleQueryTest extends Rdf4jTestBase {
         results.close();
     }
 
+    @Test
+    public void testConcurrentQueriesWithDifferentRulesets()
+            throws Exception {
+        String queryString = "select (count(*) as ?ct) { ?s ?p ?o }";
+        MarkLogicTupleQuery inferred = conn.prepareTupleQuery(queryString);
+        inferred.setRulesets(SPARQLRuleset.RDFS_FULL);
+        MarkLogicTupleQuery plain = conn.prepareTupleQuery(queryString);
+        Assert.assertArrayEquals(new SPARQLRuleset[]{SPARQLRuleset.RDFS_FULL}, inferred.getRulesets());
+        Assert.assertNull(plain.getRulesets());
+
+        String inferredCount = inferred.evaluate().next().getValue("ct").stringValue();
+        String plainCount = plain.evaluate().next().getValue("ct").stringValue();
+        Assert.assertNotEquals(inferredCount, plainCount);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Boolean>> checks = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            final boolean useInferred = (i & 1) == 0;
+            checks.add(pool.submit(() -> {
+                MarkLogicTupleQuery q = conn.prepareTupleQuery(queryString);
+                if (useInferred) {
+                    q.setRulesets(SPARQLRuleset.RDFS_FULL);
+                }
+                String count = q.evaluate().next().getValue("ct").stringValue();
+                return count.equals(useInferred ? inferredCount : plainCount);
+            }));
+        }
+        for (Future<Boolean> check : checks) {
+            Assert.assertTrue(check.get());
+        }
+        pool.shutdown();
+    }
+
     // https://github.com/marklogic/marklogic-sesame/issues/111
     @Test
     public void testSPARQLQueryWithMultipleRulesets()
@@ -448,6 +559,30 @@ public class MarkLogicTupleQueryTest extends Rdf4jTestBase {
     }
 
 
+    @Test
+    public void testSPARQLQueryTypedAndLanguageBindings()
+            throws Exception {
+        Resource context = f.createIRI("http://marklogic.com/test/bindings");
+        Resource alice = f.createIRI("http://example.org/people/alice");
+        conn.add(alice, f.createIRI("http://example.org/ontology/name"), f.createLiteral("Alice", "en"), context);
+        conn.add(alice, f.createIRI("http://example.org/ontology/age"), f.createLiteral(42), context);
+        conn.add(alice, f.createIRI("http://example.org/ontology/nick"), f.createLiteral("Al"), context);
+
+        String queryString = "select ?s { ?s ?p ?o }";
+        TupleQuery tupleQuery = conn.prepareTupleQuery(queryString);
+        tupleQuery.setBinding("o", f.createLiteral("Alice", "en"));
+        Assert.assertEquals(1, QueryResults.asList(tupleQuery.evaluate()).size());
+        tupleQuery.setBinding("o", f.createLiteral("Alice"));
+        Assert.assertEquals(0, QueryResults.asList(tupleQuery.evaluate()).size());
+        tupleQuery.setBinding("o", f.createLiteral(42));
+        Assert.assertEquals(1, QueryResults.asList(tupleQuery.evaluate()).size());
+        tupleQuery.setBinding("o", f.createLiteral("Al"));
+        Assert.assertEquals(1, QueryResults.asList(tupleQuery.evaluate()).size());
+        tupleQuery.setBinding("o", f.createLiteral("Al", f.createIRI("http://example.org/datatype")));
+        Assert.assertEquals(0, QueryResults.asList(tupleQuery.evaluate()).size());
+        conn.clear(context);
+    }
+
     @Test
     public void testSPARQLWithWriter()
             throws Exception {
@@ -525,4 +660,187 @@ public class MarkLogicTupleQueryTest extends Rdf4jTestBase {
         Assert.assertFalse(results.hasNext());
         results.close();
     }
-}
\ No newline at end of file
+
+    @Test(expected=QueryInterruptedException.class)
+    public void testSPARQLQueryMaxExecutionTime()
+            throws Exception {
+        String queryString = "select (count(*) as ?ct) { ?a ?b ?c . ?d ?e ?f . ?g ?h ?i }";
+        TupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+        tupleQuery.setMaxExecutionTime(1);
+        TupleQueryResult results = tupleQuery.evaluate();
+        try {
+            results.hasNext();
+        } finally {
+            results.close();
+        }
+    }
+
+    @Test
+    public void testSPARQLQueryCancel()
+            throws Exception {
+        String queryString = "select (count(*) as ?ct) { ?a ?b ?c . ?d ?e ?f . ?g ?h ?i }";
+        MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> running = executor.submit(() -> {
+                TupleQueryResult results = tupleQuery.evaluate();
+                try {
+                    return results.hasNext();
+                } finally {
+                    results.close();
+                }
+            });
+            Thread.sleep(500);
+            tupleQuery.cancel();
+            try {
+                running.get();
+                Assert.fail("cancelled query should not complete");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof QueryInterruptedException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSPARQLQueryEvaluateAsync()
+            throws Exception {
+        String queryString = "select ?s ?p ?o { ?s ?p ?o } limit 10 ";
+        MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+        CompletableFuture<Integer> count = tupleQuery.evaluateAsync().thenApply(results -> {
+            try {
+                return QueryResults.asList(results).size();
+            } finally {
+                results.close();
+            }
+        });
+        Assert.assertEquals(10, count.get().intValue());
+    }
+
+    @Test
+    public void testSPARQLQueryEvaluateAsyncCancel()
+            throws Exception {
+        String queryString = "select (count(*) as ?ct) { ?a ?b ?c . ?d ?e ?f . ?g ?h ?i . ?j ?k ?l }";
+        MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+        LinkedBlockingQueue<RequestTrace> traces = new LinkedBlockingQueue<>();
+        tupleQuery.setTraceListener(traces::add);
+        CompletableFuture<TupleQueryResult> future = tupleQuery.evaluateAsync();
+        // wait for the request to be sent, the query then runs far longer than the test
+        for (int i = 0; i < 100 && (tupleQuery.getLastTrace() == null || tupleQuery.getLastTrace().getOperation() == null); i++) {
+            Thread.sleep(100);
+        }
+        Thread.sleep(500);
+        Assert.assertFalse(future.isDone());
+        Assert.assertTrue(future.cancel(true));
+        Assert.assertTrue(future.isCancelled());
+
+        // the call is aborted before any response, ending the evaluation as failed
+        RequestTrace trace = traces.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(trace);
+        Assert.assertSame(tupleQuery.getLastTrace(), trace);
+        Assert.assertTrue(trace.isComplete());
+        Assert.assertTrue(trace.isFailed());
+        Assert.assertEquals(0, trace.getFirstByteNanos());
+        Assert.assertEquals(0, trace.getRows());
+    }
+
+    @Test
+    public void testSPARQLQueryEvaluateAsyncRejected()
+            throws Exception {
+        String queryString = "select ?s ?p ?o { ?s ?p ?o } limit 10 ";
+        MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+        MarkLogicClient client = tupleQuery.getMarkLogicClient();
+        Executor previous = client.getAsyncExecutor();
+        ExecutorService pool = MarkLogicClient.newAsyncExecutor(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // occupy the only thread and the only queue slot
+            pool.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            pool.execute(() -> { });
+            client.setAsyncExecutor(pool);
+            CompletableFuture<TupleQueryResult> future = tupleQuery.evaluateAsync();
+            Assert.assertTrue(future.isCompletedExceptionally());
+            try {
+                future.get();
+                Assert.fail("expected rejection");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+        } finally {
+            client.setAsyncExecutor(previous);
+            release.countDown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSPARQLQueryPublisher()
+            throws Exception {
+        String queryString = "select ?s ?p ?o { ?s ?p ?o } limit 100 ";
+        MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+        LinkedBlockingQueue<Object> signals = new LinkedBlockingQueue<>();
+        Subscription[] subscription = new Subscription[1];
+        tupleQuery.evaluatePublisher().subscribe(new Subscriber<BindingSet>() {
+            @Override
+            public void onSubscribe(Subscription s) {
+                subscription[0] = s;
+            }
+
+            @Override
+            public void onNext(BindingSet bindingSet) {
+                signals.add(bindingSet);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                signals.add(t);
+            }
+
+            @Override
+            public void onComplete() {
+                signals.add("complete");
+            }
+        });
+        Assert.assertNotNull(subscription[0]);
+        subscription[0].request(3);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(signals.poll(10, TimeUnit.SECONDS) instanceof BindingSet);
+        }
+        // nothing more is parsed until requested
+        Assert.assertNull(signals.poll(500, TimeUnit.MILLISECONDS));
+        subscription[0].cancel();
+        Assert.assertNull(signals.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testSPARQLQueryTrace()
+            throws Exception {
+        String queryString = "select ?s ?p ?o { ?s ?p ?o } limit 10 ";
+        MarkLogicTupleQuery tupleQuery = conn.prepareTupleQuery(QueryLanguage.SPARQL, queryString);
+        LinkedBlockingQueue<RequestTrace> traces = new LinkedBlockingQueue<>();
+        tupleQuery.setTraceListener(traces::add);
+        TupleQueryResult results = tupleQuery.evaluate();
+        RequestTrace trace = ((TracedQueryResult) results).getTrace();
+        Assert.assertSame(trace, tupleQuery.getLastTrace());
+        int count = 0;
+        while (results.hasNext()) {
+            results.next();
+            count++;
+        }
+        results.close();
+        Assert.assertSame(trace, traces.poll(10, TimeUnit.SECONDS));
+        Assert.assertTrue(trace.isComplete());
+        Assert.assertFalse(trace.isFailed());
+        Assert.assertEquals(count, trace.getRows());
+        Assert.assertTrue(trace.getBytes() > 0);
+        Assert.assertTrue(trace.getFirstByteNanos() > 0);
+        Assert.assertTrue(trace.getTotalNanos() >= trace.getFirstByteNanos() + trace.getQueryBuildNanos());
+    }
+}